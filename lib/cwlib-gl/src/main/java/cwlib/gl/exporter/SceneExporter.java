@@ -22,6 +22,7 @@ import cwlib.types.archives.SaveArchive;
 import cwlib.types.data.ResourceDescriptor;
 import cwlib.types.databases.FileDB;
 import cwlib.types.databases.FileEntry;
+import cwlib.types.world.SpatialIndex;
 import de.javagl.jgltf.impl.v2.Image;
 import de.javagl.jgltf.impl.v2.*;
 import de.javagl.jgltf.model.io.v2.GltfAssetV2;
@@ -34,9 +35,12 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.FileOutputStream;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.util.List;
 import java.util.*;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -104,9 +108,35 @@ public class SceneExporter
         }
     }
 
+    /**
+     * Registers only the Things of a level whose bounds overlap a region.
+     *
+     * @param level Level to register
+     * @param min   Minimum corner of the region in world space
+     * @param max   Maximum corner of the region in world space
+     */
+    public void registerLevel(RLevel level, Vector3f min, Vector3f max)
+    {
+        registerLevel(SpatialIndex.fromLevel(level), min, max);
+    }
+
+    /**
+     * Registers only the Things in a spatial index whose bounds overlap a region,
+     * allowing the same index to be reused when exporting several regions of a level.
+     *
+     * @param index Spatial index of the level
+     * @param min   Minimum corner of the region in world space
+     * @param max   Maximum corner of the region in world space
+     */
+    public void registerLevel(SpatialIndex index, Vector3f min, Vector3f max)
+    {
+        for (Thing thing : index.query(min, max))
+            registerThing(thing);
+    }
+
     public void registerPlan(RPlan plan)
     {
-        for (Thing thing : plan.getThings())
+        for (Thing thing : plan.getSharedThings())
         {
             if (thing == null) continue;
             registerThing(thing);
@@ -858,18 +888,28 @@ public class SceneExporter
         {
             meshIndices = new int[meshes.length];
 
-            Vector3f[] normals = model.getNormals();
+            int numVerts = model.getNumVerts();
             int numAttributes = model.getAttributeCount();
             int numMorphs = model.getMorphCount();
 
-            byte[] vertexStream = createStream(model.getVertices());
-            byte[] normalStream = createStream(normals);
-            byte[] tangentStream = createStream(model.getTangents());
-            byte[] weightStream = createStream(model.getWeights());
-            byte[] jointStream = createJointStream(model.getJoints(), skeleton.remap);
+            // Decode straight into the little-endian glTF streams,
+            // rather than through intermediate vectors.
+            byte[] vertexStream = createStream(numVerts * 3,
+                buffer -> model.getVertices(0, numVerts, buffer));
+            byte[] normalStream = createStream(numVerts * 3,
+                buffer -> model.getNormals(0, numVerts, buffer));
+            byte[] tangentStream = createStream(numVerts * 4,
+                buffer -> model.getTangents(0, numVerts, buffer));
+            byte[] weightStream = createStream(numVerts * 4,
+                buffer -> model.getWeights(0, numVerts, buffer));
+            byte[] jointStream = createJointStream(model, skeleton.remap);
             byte[][] textureCoordinateStreams = new byte[numAttributes][];
             for (int i = 0; i < numAttributes; ++i)
-                textureCoordinateStreams[i] = createStream(model.getUVs(i));
+            {
+                int channel = i;
+                textureCoordinateStreams[i] = createStream(numVerts * 2,
+                    buffer -> model.getUVs(0, numVerts, channel, buffer));
+            }
 
             byte[][] morphStreams = new byte[numMorphs][];
             byte[][] morphNormalStreams = new byte[numMorphs][];
@@ -883,12 +923,15 @@ public class SceneExporter
 
 
                 Morph[] morphs = model.getMorphs();
+                FloatBuffer normals = ByteBuffer.wrap(normalStream)
+                    .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
                 for (int i = 0; i < numMorphs; ++i)
                 {
                     Morph morph = morphs[i];
                     morphStreams[i] = createStream(morph.offsets);
-                    for (int j = 0; j < model.getNumVerts(); ++j)
-                        morph.normals[i].sub(normals[i]);
+                    for (int j = 0; j < numVerts; ++j)
+                        morph.normals[j].sub(normals.get(j * 3), normals.get((j * 3) + 1),
+                            normals.get((j * 3) + 2));
                     morphNormalStreams[i] = createStream(morph.normals);
                 }
             }
@@ -1272,27 +1315,20 @@ public class SceneExporter
         return stream.getBuffer();
     }
 
-    private byte[] createJointStream(byte[][] values, int[] remap)
+    private byte[] createJointStream(RMesh model, int[] remap)
     {
-        byte[] stream = new byte[values.length * 4];
-        for (int i = 0; i < values.length; ++i)
-        {
-            byte[] value = values[i];
-            int offset = (i * 4);
-            stream[offset] = (byte) remap[value[0]];
-            stream[offset + 1] = (byte) remap[value[1]];
-            stream[offset + 2] = (byte) remap[value[2]];
-            stream[offset + 3] = (byte) remap[value[3]];
-        }
+        byte[] stream = new byte[model.getNumVerts() * 4];
+        model.getJoints(0, model.getNumVerts(), ByteBuffer.wrap(stream));
+        for (int i = 0; i < stream.length; ++i)
+            stream[i] = (byte) remap[stream[i] & 0xFF];
         return stream;
     }
 
-    private byte[] createStream(Vector2f[] values)
+    private byte[] createStream(int numFloats, Consumer<FloatBuffer> decoder)
     {
-        MemoryOutputStream stream = new MemoryOutputStream(values.length * 8);
-        stream.setLittleEndian(true);
-        for (Vector2f value : values) stream.v2(value);
-        return stream.getBuffer();
+        ByteBuffer stream = ByteBuffer.allocate(numFloats * 4).order(ByteOrder.LITTLE_ENDIAN);
+        decoder.accept(stream.asFloatBuffer());
+        return stream.array();
     }
 
     private byte[] createStream(Vector3f[] values)
@@ -1303,14 +1339,6 @@ public class SceneExporter
         return stream.getBuffer();
     }
 
-    private byte[] createStream(Vector4f[] values)
-    {
-        MemoryOutputStream stream = new MemoryOutputStream(values.length * 16);
-        stream.setLittleEndian(true);
-        for (Vector4f value : values) stream.v4(value);
-        return stream.getBuffer();
-    }
-
     private Node createChildNode(String name, Node parent)
     {
         Node node = new Node();
@@ -47,6 +47,12 @@ public class CwlibConfiguration
         new File(JAR_DIRECTORY, "sce/orbis-wave-psslc.exe");
 
 
+    /**
+     * Directory used for caching snapshots of loaded databases.
+     */
+    public static File SNAPSHOT_DIRECTORY =
+        new File(JAR_DIRECTORY, "cache/snapshots");
+
     /**
      * Whether Toolkit can compile PS3 shaders, requires
      * SCE_CGC_EXECUTABLE to be set.
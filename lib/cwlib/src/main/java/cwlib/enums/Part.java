@@ -2,6 +2,7 @@ package cwlib.enums;
 
 import cwlib.io.Serializable;
 import cwlib.io.serializer.Serializer;
+import cwlib.structs.things.Thing;
 import cwlib.structs.things.parts.*;
 
 import java.util.ArrayList;
@@ -75,6 +76,17 @@ public enum Part
     STREAMING_DATA(0x34, PartHistory.STREAMING_DATA, PStreamingData.class),
     STREAMING_HINT(0x35, PartHistory.STREAMING_HINT, PStreamingHint.class);
 
+    /**
+     * Parts indexed by their part index.
+     */
+    private static final Part[] LOOKUP = new Part[0x40];
+
+    static
+    {
+        for (Part part : Part.values())
+            LOOKUP[part.index] = part;
+    }
+
     /**
      * Minimum version required for this part
      * to be serialized.
@@ -105,6 +117,18 @@ public enum Part
         this.serializable = serializable;
     }
 
+    /**
+     * Gets a part from its part index.
+     *
+     * @param index Part index
+     * @return Part, or null if no part has this index
+     */
+    public static Part fromIndex(int index)
+    {
+        if (index < 0 || index >= LOOKUP.length) return null;
+        return LOOKUP[index];
+    }
+
     public int getIndex()
     {
         return this.index;
@@ -207,14 +231,14 @@ public enum Part
      * @return Whether or not the operation succeeded
      */
     @SuppressWarnings("unchecked")
-    public <T extends Serializable> boolean serialize(Serializable[] parts, int version,
+    public <T extends Serializable> boolean serialize(Thing thing, int version,
                                                       long flags, Serializer serializer)
     {
         /* The Thing doesn't have this part, so it's "successful" */
         if (!this.hasPart(serializer.getRevision().getHead(), flags, version))
             return true;
 
-        T part = (T) parts[this.index];
+        T part = thing.getPart(this);
 
         if (this.serializable == null)
         {
@@ -234,7 +258,7 @@ public enum Part
             return false;
         }
 
-        parts[this.index] = serializer.reference(part, (Class<T>) this.serializable);
+        thing.setPart(this, serializer.reference(part, (Class<T>) this.serializable));
 
         return true;
     }
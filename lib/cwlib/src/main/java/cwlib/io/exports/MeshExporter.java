@@ -10,16 +10,15 @@ import cwlib.structs.gmat.MaterialBox;
 import cwlib.structs.gmat.MaterialWire;
 import cwlib.structs.mesh.Bone;
 import cwlib.structs.mesh.Morph;
+import cwlib.structs.mesh.SparseMorph;
 import cwlib.structs.staticmesh.StaticPrimitive;
 import cwlib.types.SerializedResource;
 import cwlib.types.data.ResourceDescriptor;
 import cwlib.types.databases.FileEntry;
-import cwlib.util.Bytes;
 import cwlib.util.FileIO;
 import de.javagl.jgltf.impl.v2.Image;
 import de.javagl.jgltf.impl.v2.*;
-import de.javagl.jgltf.model.io.v2.GltfAssetV2;
-import de.javagl.jgltf.model.io.v2.GltfAssetWriterV2;
+import de.javagl.jgltf.model.io.GltfWriter;
 import org.joml.*;
 
 import javax.imageio.ImageIO;
@@ -27,14 +26,19 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.lang.Math;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -52,12 +56,19 @@ public class MeshExporter
             int numVerts = mesh.getNumVerts();
             StringBuilder builder =
                 new StringBuilder((numVerts * 82) + (numVerts * 42) + (mesh.getNumIndices() * 40));
-            for (Vector3f vertex : mesh.getVertices())
-                builder.append("v " + vertex.x + " " + vertex.y + " " + vertex.z + '\n');
-            for (Vector3f vertex : mesh.getNormals())
-                builder.append("vn " + vertex.x + " " + vertex.y + " " + vertex.z + '\n');
-            for (Vector2f vertex : mesh.getUVs(channel))
-                builder.append("vt " + vertex.x + " " + (1.0f - vertex.y) + '\n');
+            float[] values = new float[numVerts * 3];
+            mesh.getVertices(0, numVerts, FloatBuffer.wrap(values));
+            for (int i = 0; i < values.length; i += 3)
+                builder.append("v ").append(values[i]).append(' ').append(values[i + 1])
+                    .append(' ').append(values[i + 2]).append('\n');
+            mesh.getNormals(0, numVerts, FloatBuffer.wrap(values));
+            for (int i = 0; i < values.length; i += 3)
+                builder.append("vn ").append(values[i]).append(' ').append(values[i + 1])
+                    .append(' ').append(values[i + 2]).append('\n');
+            mesh.getUVs(0, numVerts, channel, FloatBuffer.wrap(values));
+            for (int i = 0; i < numVerts * 2; i += 2)
+                builder.append("vt ").append(values[i]).append(' ')
+                    .append(1.0f - values[i + 1]).append('\n');
             int[] indices = mesh.getTriangles();
             // NOTE(Aidan): Wavefront OBJ has 1-based indices.
             for (int i = 0; i < indices.length; ++i)
@@ -73,10 +84,122 @@ public class MeshExporter
         }
     }
 
+    /**
+     * Materials and textures shared between exports, so exporting many meshes
+     * only loads and converts each of them once. Safe to share between threads.
+     */
+    public static class ResourceCache
+    {
+        private final ConcurrentHashMap<ResourceDescriptor, Optional<RGfxMaterial>> materials =
+            new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<ResourceDescriptor, Optional<byte[]>> textures =
+            new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<ResourceDescriptor, Optional<byte[]>> bumpTextures =
+            new ConcurrentHashMap<>();
+
+        /**
+         * Gets a material, loading it if it hasn't been already.
+         *
+         * @param descriptor Descriptor of the material
+         * @param entry      Entry to load the material from
+         * @return Material, or null if it couldn't be loaded
+         */
+        public RGfxMaterial getMaterial(ResourceDescriptor descriptor, FileEntry entry)
+        {
+            return this.materials.computeIfAbsent(descriptor, key ->
+            {
+                try { return Optional.ofNullable(GLB.loadMaterial(entry)); }
+                catch (Exception ex) { return Optional.empty(); }
+            }).orElse(null);
+        }
+
+        /**
+         * Gets a texture as PNG data, converting it if it hasn't been already.
+         *
+         * @param descriptor Descriptor of the texture
+         * @return PNG data, or null if the texture couldn't be converted
+         */
+        public byte[] getTexture(ResourceDescriptor descriptor)
+        {
+            return this.textures.computeIfAbsent(descriptor,
+                key -> Optional.ofNullable(GLB.loadTexture(key))).orElse(null);
+        }
+
+        /**
+         * Gets a bump map converted to a normal map, converting it if it hasn't been already.
+         *
+         * @param descriptor Descriptor of the bump map
+         * @param texture    PNG data of the bump map
+         * @return PNG data of the normal map, or null if it couldn't be converted
+         */
+        public byte[] getBumpTexture(ResourceDescriptor descriptor, byte[] texture)
+        {
+            return this.bumpTextures.computeIfAbsent(descriptor,
+                key -> Optional.ofNullable(GLB.convertBumpTexture(texture))).orElse(null);
+        }
+
+        /**
+         * Gets the number of materials and textures in this cache.
+         *
+         * @return Number of cached resources
+         */
+        public int size()
+        {
+            return this.materials.size() + this.textures.size() + this.bumpTextures.size();
+        }
+    }
+
     public static class GLB
     {
+        /**
+         * Writes a buffer view's data into the binary chunk.
+         */
+        @FunctionalInterface
+        private interface SegmentWriter
+        {
+            void write(ChunkWriter out) throws IOException;
+        }
+
+        /**
+         * Decodes a range of vertices into a buffer.
+         */
+        @FunctionalInterface
+        private interface VertexDecoder
+        {
+            void decode(int start, int count, FloatBuffer buffer);
+        }
+
+        /**
+         * Part of the binary chunk, the length is fixed when it's laid out,
+         * but the data isn't produced until the GLB is written.
+         */
+        private static final class Segment
+        {
+            private final int length;
+            private final SegmentWriter writer;
+
+            private Segment(int length, SegmentWriter writer)
+            {
+                this.length = length;
+                this.writer = writer;
+            }
+        }
+
+        private static final int GLB_MAGIC = 0x46546C67;
+        private static final int GLB_VERSION = 2;
+        private static final int CHUNK_TYPE_JSON = 0x4E4F534A;
+        private static final int CHUNK_TYPE_BIN = 0x004E4942;
+
+        /**
+         * Number of vertices decoded at once when streaming vertex data.
+         */
+        private static final int VERTEX_CHUNK = 0x4000;
+
         GlTF gltf = new GlTF();
-        byte[] buffer = null;
+        ResourceCache cache;
+
+        ArrayList<Segment> segments = new ArrayList<>();
+        int byteLength = 0;
 
         HashMap<String, Integer> bufferViews = new HashMap<String, Integer>();
         HashMap<String, Integer> materials = new HashMap<String, Integer>();
@@ -90,11 +213,7 @@ public class MeshExporter
             if (mesh == null)
             {
                 glb = new GLB();
-                byte[] dataBuffer = glb.getBufferFromAnimation(animation);
-                Buffer buffer = new Buffer();
-                buffer.setByteLength(dataBuffer.length);
-                glb.gltf.addBuffers(buffer);
-                glb.buffer = dataBuffer;
+                glb.addData(glb.getBufferFromAnimation(animation));
 
                 glb.setAsset("CRAFTWORLD", "2.0");
 
@@ -136,9 +255,7 @@ public class MeshExporter
             else
             {
                 glb = GLB.FromMesh(mesh);
-                byte[] dataBuffer = glb.getBufferFromAnimation(animation);
-                glb.buffer = Bytes.combine(glb.buffer, dataBuffer);
-                glb.gltf.getBuffers().get(0).setByteLength(glb.buffer.length);
+                glb.addData(glb.getBufferFromAnimation(animation));
                 for (AnimBone bone : animation.bones)
                 {
                     String name = Bone.getNameFromHash(mesh.getBones(), bone.animHash);
@@ -279,11 +396,7 @@ public class MeshExporter
         public static GLB FromMesh(RStaticMesh mesh)
         {
             GLB glb = new GLB();
-            byte[] dataBuffer = glb.getBufferFromMesh(mesh);
-            Buffer buffer = new Buffer();
-            buffer.setByteLength(dataBuffer.length);
-            glb.gltf.addBuffers(buffer);
-            glb.buffer = dataBuffer;
+            glb.addData(glb.getBufferFromMesh(mesh));
             glb.setAsset("CRAFTWORLD", "2.0");
 
             Mesh glMesh = new Mesh();
@@ -384,15 +497,25 @@ public class MeshExporter
         }
 
         public static GLB FromMesh(RMesh mesh)
+        {
+            return GLB.FromMesh(mesh, null);
+        }
+
+        /**
+         * Creates a GLB from a skinned mesh.
+         *
+         * @param mesh  Mesh to export
+         * @param cache Cache to share materials and textures through, or null to load them
+         *              for this export only
+         * @return GLB of the mesh
+         */
+        public static GLB FromMesh(RMesh mesh, ResourceCache cache)
         {
             GLB glb = new GLB();
+            glb.cache = cache;
 
 
-            byte[] dataBuffer = glb.getBufferFromMesh(mesh);
-            Buffer buffer = new Buffer();
-            buffer.setByteLength(dataBuffer.length);
-            glb.gltf.addBuffers(buffer);
-            glb.buffer = dataBuffer;
+            glb.addMeshData(mesh);
 
             glb.setAsset("CRAFTWORLD", "2.0");
 
@@ -448,20 +571,25 @@ public class MeshExporter
                     {
                         for (int j = 0; j < mesh.getMorphCount(); ++j)
                         {
+                            SparseMorph morph = mesh.getSparseMorph(j);
+                            int first = morph.find(primitive.getMinVert());
+                            int count = morph.find(primitive.getMaxVert() + 1) - first;
+                            String indices = "MORPH_INDICES_" + m + "_" + i + "_" + j;
+
                             HashMap<String, Integer> target = new HashMap<String,
                                 Integer>();
-                            target.put("POSITION", glb.createAccessor(
+                            target.put("POSITION", glb.createSparseAccessor(
                                 "MORPH_" + j,
-                                5126,
-                                "VEC3",
-                                primitive.getMinVert() * 0xC,
+                                indices,
+                                first,
+                                count,
                                 primitive.getMaxVert() - primitive.getMinVert() + 1)
                             );
-                            target.put("NORMAL", glb.createAccessor(
+                            target.put("NORMAL", glb.createSparseAccessor(
                                 "MORPH_NORMAL_" + j,
-                                5126,
-                                "VEC3",
-                                primitive.getMinVert() * 0xC,
+                                indices,
+                                first,
+                                count,
                                 primitive.getMaxVert() - primitive.getMinVert() + 1)
                             );
                             glPrimitive.addTargets(target);
@@ -519,10 +647,11 @@ public class MeshExporter
                                     "[.][^.]+$", "");
                             try
                             {
-                                byte[] data = ResourceSystem.extract(entry);
-                                if (data != null)
+                                RGfxMaterial gmat = glb.getMaterial(primitive.getMaterial(),
+                                    entry);
+                                if (gmat != null)
                                     glPrimitive.setMaterial(glb.createMaterial(materialName,
-                                        new SerializedResource(data).loadResource(RGfxMaterial.class)));
+                                        gmat));
                                 else
                                     glPrimitive.setMaterial(glb.createMaterial(materialName));
                             }
@@ -590,8 +719,7 @@ public class MeshExporter
             image.setBufferView(createBufferView("TEXTURE_" + name, 0, buffer.length));
             image.setMimeType("image/png");
             image.setName(name);
-            this.buffer = Bytes.combine(this.buffer, buffer);
-            this.gltf.getBuffers().get(0).setByteLength(this.buffer.length);
+            this.addData(buffer);
             de.javagl.jgltf.impl.v2.Texture texture = new de.javagl.jgltf.impl.v2.Texture();
             this.gltf.addImages(image);
             texture.setSource(this.gltf.getImages().size() - 1);
@@ -670,6 +798,25 @@ public class MeshExporter
         {
             ResourceDescriptor descriptor = gfx.textures[index];
             if (descriptor == null) return null;
+            if (this.cache != null) return this.cache.getTexture(descriptor);
+            return GLB.loadTexture(descriptor);
+        }
+
+        private RGfxMaterial getMaterial(ResourceDescriptor descriptor, FileEntry entry)
+        {
+            if (this.cache != null) return this.cache.getMaterial(descriptor, entry);
+            return GLB.loadMaterial(entry);
+        }
+
+        private static RGfxMaterial loadMaterial(FileEntry entry)
+        {
+            byte[] data = ResourceSystem.extract(entry);
+            if (data == null) return null;
+            return new SerializedResource(data).loadResource(RGfxMaterial.class);
+        }
+
+        private static byte[] loadTexture(ResourceDescriptor descriptor)
+        {
             byte[] data = ResourceSystem.extract(descriptor);
             if (data == null) return null;
             RTexture texture = null;
@@ -685,6 +832,58 @@ public class MeshExporter
             catch (Exception ex) { return null; }
         }
 
+        private static BufferedImage readImage(byte[] texture)
+        {
+            try
+            {
+                return ImageIO.read(new ByteArrayInputStream(texture));
+            }
+            catch (IOException ex)
+            {
+                Logger.getLogger(MeshExporter.class.getName()).log(Level.SEVERE, null, ex);
+            }
+            return null;
+        }
+
+        /**
+         * Converts a bump map into a tangent space normal map.
+         *
+         * @param texture PNG data of the bump map
+         * @return PNG data of the normal map, or null if the texture couldn't be read
+         */
+        private static byte[] convertBumpTexture(byte[] texture)
+        {
+            BufferedImage image = GLB.readImage(texture);
+            if (image == null) return null;
+
+            for (int x = 0; x < image.getWidth(); ++x)
+            {
+                for (int y = 0; y < image.getHeight(); ++y)
+                {
+                    Color c = new Color(image.getRGB(x,
+                        y), true);
+
+                    Color output =
+                        new Color(255 - c.getAlpha(),
+                            c.getGreen()
+                            , 255, 255);
+
+                    image.setRGB(x, y, output.getRGB());
+                }
+            }
+            ByteArrayOutputStream baos =
+                new ByteArrayOutputStream();
+            try
+            {
+                ImageIO.write(image, "png", baos);
+            }
+            catch (IOException ex)
+            {
+                Logger.getLogger(RGfxMaterial.class.getName()).log(Level.SEVERE, null, ex);
+            }
+            return baos.toByteArray();
+        }
+
         public static class KHRTextureTransform
         {
             public float[] offset;
@@ -770,17 +969,6 @@ public class MeshExporter
                     int source =
                         addTexture(Paths.get(entry.getPath()).getFileName().toString().replaceFirst("[.][^.]+$", ""), texture);
 
-                    ByteArrayInputStream png = new ByteArrayInputStream(texture);
-                    BufferedImage image = null;
-                    try
-                    {
-                        image = ImageIO.read(png);
-                    }
-                    catch (IOException ex)
-                    {
-                        Logger.getLogger(MeshExporter.class.getName()).log(Level.SEVERE, null, ex);
-                    }
-
                     KHRTextureTransform transforms = new KHRTextureTransform();
                     transforms.offset = textureOffset;
                     transforms.scale = textureScale;
@@ -810,9 +998,6 @@ public class MeshExporter
                                 continue;
                             }
                             if (foundDiffuse) continue;
-                            System.out.printf("%s:%d%n",
-                                Paths.get(entry.getPath()).getFileName().toString().replaceFirst(
-                                    "[.][^.]+$", ""), image.getTransparency());
                             if (name.toLowerCase().contains("decal"))
                                 material.setAlphaMode("BLEND");
                             foundDiffuse = true;
@@ -840,36 +1025,13 @@ public class MeshExporter
                             if (foundBump) continue;
                             foundBump = true;
 
-                            if (image != null)
+                            byte[] converted = (this.cache != null) ?
+                                this.cache.getBumpTexture(gmat.textures[textureIndex], texture) :
+                                GLB.convertBumpTexture(texture);
+                            if (converted != null)
                             {
-                                for (int x = 0; x < image.getWidth(); ++x)
-                                {
-                                    for (int y = 0; y < image.getHeight(); ++y)
-                                    {
-                                        Color c = new Color(image.getRGB(x,
-                                            y), true);
-
-                                        Color output =
-                                            new Color(255 - c.getAlpha(),
-                                                c.getGreen()
-                                                , 255, 255);
-
-                                        image.setRGB(x, y, output.getRGB());
-                                    }
-                                }
-                                ByteArrayOutputStream baos =
-                                    new ByteArrayOutputStream();
-                                try
-                                {
-                                    ImageIO.write(image, "png", baos);
-                                }
-                                catch (IOException ex)
-                                {
-                                    Logger.getLogger(RGfxMaterial.class.getName()).log(Level.SEVERE, null, ex);
-                                }
-
                                 source =
-                                    addTexture(Paths.get(entry.getPath()).getFileName().toString().replaceFirst("[.][^.]+$", "") + "_converted", baos.toByteArray());
+                                    addTexture(Paths.get(entry.getPath()).getFileName().toString().replaceFirst("[.][^.]+$", "") + "_converted", converted);
                             }
 
                             MaterialNormalTextureInfo normal =
@@ -979,10 +1141,47 @@ public class MeshExporter
             return this.accessorCount - 1;
         }
 
+        /**
+         * Creates a VEC3 float accessor that's zero other than the values it replaces.
+         *
+         * @param values  Buffer view of the replacement values
+         * @param indices Buffer view of the unsigned short indices of the replaced elements
+         * @param first   First replacement value used by this accessor
+         * @param count   Number of replaced elements, if none, no views are referenced
+         * @param length  Number of elements in the accessor
+         * @return Index of the accessor
+         */
+        private int createSparseAccessor(String values, String indices, int first, int count,
+                                         int length)
+        {
+            Accessor accessor = new Accessor();
+            accessor.setComponentType(5126);
+            accessor.setType("VEC3");
+            accessor.setCount(length);
+            if (count != 0)
+            {
+                AccessorSparseIndices sparseIndices = new AccessorSparseIndices();
+                sparseIndices.setBufferView(getBufferView(indices));
+                sparseIndices.setComponentType(5123);
+
+                AccessorSparseValues sparseValues = new AccessorSparseValues();
+                sparseValues.setBufferView(getBufferView(values));
+                sparseValues.setByteOffset(first * 0xC);
+
+                AccessorSparse sparse = new AccessorSparse();
+                sparse.setCount(count);
+                sparse.setIndices(sparseIndices);
+                sparse.setValues(sparseValues);
+                accessor.setSparse(sparse);
+            }
+            this.accessorCount++;
+            this.gltf.addAccessors(accessor);
+            return this.accessorCount - 1;
+        }
+
         private int createBufferView(String name, int offset, int length)
         {
-            if (this.buffer != null)
-                offset += this.buffer.length;
+            offset += this.byteLength;
             BufferView view = new BufferView();
             view.setBuffer(0);
             view.setByteOffset(offset);
@@ -1144,26 +1343,23 @@ public class MeshExporter
             return output.getBuffer();
         }
 
-        private byte[] getBufferFromMesh(RMesh mesh)
+        /**
+         * Lays out the buffer views of a skinned mesh, the data of each view
+         * is streamed from the mesh's vertex streams when the GLB is written.
+         *
+         * @param mesh Mesh to lay out
+         */
+        private void addMeshData(RMesh mesh)
         {
-            MemoryOutputStream output =
-                new MemoryOutputStream((mesh.getNumVerts() * 0x50) + ((mesh.getNumVerts() - 1) * 8) + (mesh.getAttributeCount() * mesh.getNumVerts() * 8) + (mesh.getMorphCount() * mesh.getNumVerts() * 0x18) + (mesh.getBones().length * 0x40));
-            output.setLittleEndian(true);
+            int numVerts = mesh.getNumVerts();
 
-            for (Vector3f vertex : mesh.getVertices())
-            {
-                output.f32(vertex.x);
-                output.f32(vertex.y);
-                output.f32(vertex.z);
-            }
-            createBufferView("VERTICES", 0, output.getOffset());
+            this.addVertexView("VERTICES", numVerts, 3, mesh::getVertices);
 
             cwlib.structs.mesh.Primitive[][] subMeshes = mesh.getSubmeshes();
             for (int i = 0; i < subMeshes.length; ++i)
             {
                 for (int j = 0; j < subMeshes[i].length; ++j)
                 {
-                    int triangleStart = output.getOffset();
                     cwlib.structs.mesh.Primitive primitive
                         = subMeshes[i][j];
                     int[] triangles = mesh.getTriangles(primitive);
@@ -1173,109 +1369,160 @@ public class MeshExporter
                         getMax(triangles)
                     );
 
-                    for (int triangle : triangles)
-                        output.u16((short) (triangle - primitive.getMinVert()));
-                    createBufferView("INDICES_" + i + "_" + j,
-                        triangleStart, output.getOffset() - triangleStart);
+                    int minVert = primitive.getMinVert();
+                    this.addView("INDICES_" + i + "_" + j, triangles.length * 2, out ->
+                    {
+                        for (int triangle : mesh.getTriangles(primitive))
+                            out.putShort((short) (triangle - minVert));
+                    });
                 }
             }
 
-            int normalStart = output.getOffset();
-            Vector3f[] normals = mesh.getNormals();
-            for (Vector3f normal : normals)
-            {
-                output.f32(normal.x);
-                output.f32(normal.y);
-                output.f32(normal.z);
-            }
-            createBufferView("NORMAL", normalStart, output.getOffset() - normalStart);
+            // Keep the float views after the indices aligned.
+            this.align(4);
+
+            this.addVertexView("NORMAL", numVerts, 3, mesh::getNormals);
             for (int i = 0; i < mesh.getAttributeCount(); ++i)
             {
-                int uvStart = output.getOffset();
-                for (Vector2f texCoord : mesh.getUVs(i))
-                {
-                    output.f32(texCoord.x);
-                    output.f32(texCoord.y);
-                }
-                createBufferView("TEXCOORD_" + i, uvStart,
-                    output.getOffset() - uvStart);
+                int channel = i;
+                this.addVertexView("TEXCOORD_" + i, numVerts, 2,
+                    (start, count, buffer) -> mesh.getUVs(start, count, channel, buffer));
             }
-            if (mesh.getMorphCount() != 0)
+            // Morphs only store the vertices they affect, and are
+            // referenced through sparse accessors.
+            for (int i = 0; i < mesh.getMorphCount(); ++i)
             {
-                Morph[] morphs = mesh.getMorphs();
-                for (int i = 0; i < mesh.getMorphCount(); ++i)
+                SparseMorph morph = mesh.getSparseMorph(i);
+                int count = morph.getCount();
+                if (count == 0) continue;
+
+                int[] indices = morph.getIndices();
+                float[] offsets = morph.getOffsets();
+                float[] normals = morph.getNormals();
+                this.addView("MORPH_" + i, count * 0xC, out ->
                 {
-                    int morphStart = output.getOffset();
-                    Morph morph = morphs[i];
-                    for (Vector3f vertex : morph.getOffsets())
+                    for (int start = 0; start < count; start += VERTEX_CHUNK)
                     {
-                        output.f32(vertex.x);
-                        output.f32(vertex.y);
-                        output.f32(vertex.z);
+                        int size = Math.min(VERTEX_CHUNK, count - start);
+                        out.floats(size * 3).put(offsets, start * 3, size * 3);
                     }
-                    createBufferView("MORPH_" + i, morphStart,
-                        output.getOffset() - morphStart);
-                }
+                });
 
-                for (int i = 0; i < mesh.getMorphCount(); ++i)
+                this.addView("MORPH_NORMAL_" + i, count * 0xC, out ->
                 {
-                    int morphStart = output.getOffset();
-                    Morph morph = morphs[i];
-                    for (int j = 0; j < mesh.getNumVerts(); ++j)
+                    for (int start = 0; start < count; start += VERTEX_CHUNK)
                     {
-                        Vector3f vertex = morph.getNormals()[j];
-                        output.f32(vertex.x - normals[j].x);
-                        output.f32(vertex.y - normals[j].y);
-                        output.f32(vertex.z - normals[j].z);
+                        int size = Math.min(VERTEX_CHUNK, count - start);
+                        FloatBuffer buffer = out.floats(size * 3);
+                        for (int k = 0; k < size; ++k)
+                            mesh.getNormals(indices[start + k], 1, buffer);
+                        for (int k = 0; k < size * 3; ++k)
+                            buffer.put(k, normals[(start * 3) + k] - buffer.get(k));
                     }
+                });
+            }
 
-                    createBufferView("MORPH_NORMAL_" + i, morphStart,
-                        output.getOffset() - morphStart);
+            for (int i = 0; i < mesh.getMorphCount(); ++i)
+            {
+                SparseMorph morph = mesh.getSparseMorph(i);
+                int[] indices = morph.getIndices();
+                for (int j = 0; j < subMeshes.length; ++j)
+                {
+                    for (int k = 0; k < subMeshes[j].length; ++k)
+                    {
+                        cwlib.structs.mesh.Primitive primitive = subMeshes[j][k];
+                        int minVert = primitive.getMinVert();
+                        int first = morph.find(minVert);
+                        int last = morph.find(primitive.getMaxVert() + 1);
+                        if (first == last) continue;
+                        this.addView("MORPH_INDICES_" + j + "_" + k + "_" + i,
+                            (last - first) * 2, out ->
+                            {
+                                for (int index = first; index < last; ++index)
+                                    out.putShort((short) (indices[index] - minVert));
+                            });
+                    }
                 }
             }
 
-            if (output.getOffset() % 0x40 != 0)
-                output.seek((0x40 - (output.getOffset() % 0x40)));
-            int matrixStart = output.getOffset();
-            for (int i = 0; i < mesh.getBones().length; ++i)
+            this.align(0x40);
+            Bone[] bones = mesh.getBones();
+            this.addView("MATRIX", bones.length * 0x40, out ->
             {
-                for (float v : mesh.getBones()[i].invSkinPoseMatrix.get(new float[16]))
-                    output.f32(v);
-            }
-            createBufferView("MATRIX", matrixStart, output.getOffset() - matrixStart);
+                float[] matrix = new float[16];
+                for (Bone bone : bones)
+                    out.floats(16).put(bone.invSkinPoseMatrix.get(matrix));
+            });
 
-            int jointStart = output.getOffset();
-            for (byte[] joints : mesh.getJoints())
-                for (int i = 0; i < 4; ++i)
-                    output.i8(joints[i]);
+            this.addView("JOINTS", numVerts * 4, out ->
+            {
+                for (int start = 0; start < numVerts; start += VERTEX_CHUNK)
+                {
+                    int count = Math.min(VERTEX_CHUNK, numVerts - start);
+                    mesh.getJoints(start, count, out.bytes(count * 4));
+                }
+            });
 
-            createBufferView("JOINTS", jointStart, output.getOffset() - jointStart);
+            this.addVertexView("WEIGHTS", numVerts, 4, mesh::getWeights);
 
-            int weightStart = output.getOffset();
-            for (Vector4f weight : mesh.getWeights())
+            this.addView("COLOR", numVerts * 8, out ->
             {
-                output.f32(weight.x);
-                output.f32(weight.y);
-                output.f32(weight.z);
-                output.f32(weight.w);
-            }
-
-            createBufferView("WEIGHTS", weightStart, output.getOffset() - weightStart);
+                float[] weights = new float[VERTEX_CHUNK];
+                for (int start = 0; start < numVerts; start += VERTEX_CHUNK)
+                {
+                    int count = Math.min(VERTEX_CHUNK, numVerts - start);
+                    mesh.getSoftbodyWeights(start, count, FloatBuffer.wrap(weights));
+                    for (int k = 0; k < count; ++k)
+                    {
+                        short c = (short) Math.round(weights[k] * 0xFFFF);
+                        out.putShort(c);
+                        out.putShort(c);
+                        out.putShort(c);
+                        out.putShort((short) 0xFFFF);
+                    }
+                }
+            });
+        }
 
-            int colorStart = output.getOffset();
-            for (float weight : mesh.getSoftbodyWeights(0, mesh.getNumVerts()))
+        private int addVertexView(String name, int numVerts, int components,
+                                  VertexDecoder decoder)
+        {
+            return this.addView(name, numVerts * components * 4, out ->
             {
-                short c = (short) Math.round(weight * 0xFFFF);
-                output.i16(c);
-                output.i16(c);
-                output.i16(c);
-                output.i16((short) 0xFFFF);
-            }
-            createBufferView("COLOR", colorStart, output.getOffset() - colorStart);
+                for (int start = 0; start < numVerts; start += VERTEX_CHUNK)
+                {
+                    int count = Math.min(VERTEX_CHUNK, numVerts - start);
+                    decoder.decode(start, count, out.floats(count * components));
+                }
+            });
+        }
 
-            output.shrink();
+        private int addView(String name, int length, SegmentWriter writer)
+        {
+            int view = this.createBufferView(name, 0, length);
+            this.addSegment(length, writer);
+            return view;
+        }
 
-            return output.getBuffer();
+        private void addData(byte[] data)
+        {
+            this.addSegment(data.length, out -> out.put(data));
+        }
+
+        private void align(int alignment)
+        {
+            int padding = (-this.byteLength) & (alignment - 1);
+            if (padding != 0)
+                this.addSegment(padding, out -> out.pad(padding));
+        }
+
+        private void addSegment(int length, SegmentWriter writer)
+        {
+            this.segments.add(new Segment(length, writer));
+            this.byteLength += length;
+            if (this.gltf.getBuffers() == null || this.gltf.getBuffers().isEmpty())
+                this.gltf.addBuffers(new Buffer());
+            this.gltf.getBuffers().get(0).setByteLength(this.byteLength);
         }
 
         public static int getMin(int[] triangles)
@@ -1298,24 +1545,190 @@ public class MeshExporter
 
         public void export(String path)
         {
-
-            ByteBuffer buffer = null;
-            if (this.buffer != null)
-                buffer = ByteBuffer.wrap(this.buffer);
-
-            GltfAssetV2 gltfAssetV2 = new GltfAssetV2(this.gltf, buffer);
-            GltfAssetWriterV2 writer = new GltfAssetWriterV2();
-
-            try
+            try (FileChannel channel = FileChannel.open(Paths.get(path),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
             {
-                FileOutputStream stream = new FileOutputStream(path);
-                writer.writeBinary(gltfAssetV2, stream);
-                stream.close();
+                this.write(channel);
             }
             catch (IOException ex)
             {
                 Logger.getLogger(MeshExporter.class.getName()).log(Level.SEVERE, null, ex);
             }
         }
+
+        /**
+         * Writes this GLB to a channel. Every buffer view is already laid out,
+         * so the JSON chunk goes first, then the binary chunk is streamed one
+         * segment at a time, and the length fields are patched once it's done.
+         *
+         * @param channel Channel to write to, starting at its current position
+         * @throws IOException If an I/O error occurs
+         */
+        public void write(FileChannel channel) throws IOException
+        {
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            GltfWriter writer = new GltfWriter();
+            writer.setIndenting(false);
+            writer.write(this.gltf, stream);
+            byte[] json = stream.toByteArray();
+            int jsonPadding = (-json.length) & 3;
+
+            long start = channel.position();
+            ChunkWriter out = new ChunkWriter(channel);
+            out.putInt(GLB_MAGIC);
+            out.putInt(GLB_VERSION);
+            out.putInt(0);
+
+            out.putInt(json.length + jsonPadding);
+            out.putInt(CHUNK_TYPE_JSON);
+            out.put(json);
+            for (int i = 0; i < jsonPadding; ++i)
+                out.put((byte) 0x20);
+
+            long binStart = -1;
+            if (!this.segments.isEmpty())
+            {
+                out.putInt(0);
+                out.putInt(CHUNK_TYPE_BIN);
+                binStart = out.getPosition();
+                for (Segment segment : this.segments)
+                {
+                    long segmentStart = out.getPosition();
+                    segment.writer.write(out);
+                    if (out.getPosition() - segmentStart != segment.length)
+                        throw new IOException("Buffer data doesn't match its layout!");
+                }
+                out.pad((int) ((-(out.getPosition() - binStart)) & 3));
+            }
+            out.flush();
+
+            long length = out.getPosition();
+            if (length > 0xFFFFFFFFL)
+                throw new IOException("GLB is too large to be written!");
+
+            ByteBuffer field = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            ChunkWriter.write(channel, field.putInt(0, (int) length), start + 8);
+            if (binStart != -1)
+                ChunkWriter.write(channel, field.putInt(0, (int) (length - binStart)),
+                    start + binStart - 8);
+        }
+    }
+
+    /**
+     * Buffers little-endian writes to a channel through a fixed scratch buffer.
+     */
+    private static final class ChunkWriter
+    {
+        private static final int SCRATCH_SIZE = 0x100000;
+
+        private final FileChannel channel;
+        private final ByteBuffer scratch =
+            ByteBuffer.allocateDirect(SCRATCH_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long flushed;
+
+        private ChunkWriter(FileChannel channel)
+        {
+            this.channel = channel;
+        }
+
+        /**
+         * Reserves space for floats in the scratch buffer.
+         *
+         * @param count Number of floats
+         * @return Little-endian view to put the floats into
+         * @throws IOException If an I/O error occurs
+         */
+        private FloatBuffer floats(int count) throws IOException
+        {
+            return this.bytes(count * 4).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        }
+
+        /**
+         * Reserves space for bytes in the scratch buffer.
+         *
+         * @param count Number of bytes
+         * @return View to put the bytes into
+         * @throws IOException If an I/O error occurs
+         */
+        private ByteBuffer bytes(int count) throws IOException
+        {
+            this.ensure(count);
+            ByteBuffer slice = this.scratch.slice();
+            slice.limit(count);
+            this.scratch.position(this.scratch.position() + count);
+            return slice;
+        }
+
+        private void putShort(short value) throws IOException
+        {
+            this.ensure(2);
+            this.scratch.putShort(value);
+        }
+
+        private void putInt(int value) throws IOException
+        {
+            this.ensure(4);
+            this.scratch.putInt(value);
+        }
+
+        private void put(byte value) throws IOException
+        {
+            this.ensure(1);
+            this.scratch.put(value);
+        }
+
+        private void put(byte[] data) throws IOException
+        {
+            if (data.length <= this.scratch.remaining())
+            {
+                this.scratch.put(data);
+                return;
+            }
+            this.flush();
+            this.flushed += ChunkWriter.write(this.channel, ByteBuffer.wrap(data));
+        }
+
+        private void pad(int count) throws IOException
+        {
+            for (int i = 0; i < count; ++i)
+                this.put((byte) 0);
+        }
+
+        private long getPosition()
+        {
+            return this.flushed + this.scratch.position();
+        }
+
+        private void ensure(int size) throws IOException
+        {
+            if (size > SCRATCH_SIZE)
+                throw new IllegalArgumentException("Write is larger than the scratch buffer!");
+            if (this.scratch.remaining() < size)
+                this.flush();
+        }
+
+        private void flush() throws IOException
+        {
+            this.scratch.flip();
+            this.flushed += ChunkWriter.write(this.channel, this.scratch);
+            this.scratch.clear();
+        }
+
+        private static long write(FileChannel channel, ByteBuffer buffer) throws IOException
+        {
+            long written = 0;
+            while (buffer.hasRemaining())
+                written += channel.write(buffer);
+            return written;
+        }
+
+        private static void write(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException
+        {
+            buffer.clear();
+            while (buffer.hasRemaining())
+                position += channel.write(buffer, position);
+        }
     }
-}
\ No newline at end of file
+}
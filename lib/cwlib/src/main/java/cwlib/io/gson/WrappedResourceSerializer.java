@@ -106,7 +106,7 @@ public class WrappedResourceSerializer implements JsonSerializer<WrappedResource
             PlanWrapper wrapper = new PlanWrapper();
             RPlan plan = (RPlan) resource.resource;
             wrapper.isUsedForStreaming = plan.isUsedForStreaming;
-            wrapper.things = plan.getThings();
+            wrapper.things = plan.getSharedThings();
             wrapper.inventoryData = plan.inventoryData;
             object.add("resource", jsc.serialize(wrapper));
         }
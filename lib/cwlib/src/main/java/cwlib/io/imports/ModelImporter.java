@@ -4,8 +4,6 @@ import cwlib.enums.CostumePieceCategory;
 import cwlib.enums.HairMorph;
 import cwlib.enums.ResourceType;
 import cwlib.enums.SkeletonType;
-import cwlib.io.streams.MemoryInputStream.SeekMode;
-import cwlib.io.streams.MemoryOutputStream;
 import cwlib.resources.RMesh;
 import cwlib.resources.custom.RBoneSet;
 import cwlib.singleton.ResourceSystem;
@@ -26,9 +24,10 @@ import org.joml.Vector3f;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.ShortBuffer;
+import java.nio.ByteOrder;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.stream.IntStream;
 
 public class ModelImporter
 {
@@ -53,6 +52,79 @@ public class ModelImporter
         public SkeletonType skeleton = SkeletonType.SACKBOY;
     }
 
+    /**
+     * Accessor data read in place from its buffer view.
+     */
+    private static class AccessorView
+    {
+        private final ByteBuffer buffer;
+        private final int offset;
+        private final int stride;
+        private final int componentSize;
+
+        private AccessorView(AccessorModel accessor)
+        {
+            this.buffer =
+                accessor.getBufferViewModel().getBufferViewData().order(ByteOrder.LITTLE_ENDIAN);
+            this.offset = accessor.getByteOffset();
+            this.componentSize = accessor.getComponentSizeInBytes();
+            this.stride = (accessor.getByteStride() > 0) ? accessor.getByteStride() :
+                accessor.getElementSizeInBytes();
+        }
+
+        private static AccessorView of(AccessorModel accessor)
+        {
+            if (accessor == null) return null;
+            return new AccessorView(accessor);
+        }
+
+        private float getFloat(int element, int component)
+        {
+            return this.buffer.getFloat(this.offset + (element * this.stride) + (component * 4));
+        }
+
+        private int getUnsigned(int element, int component)
+        {
+            int index = this.offset + (element * this.stride) + (component * this.componentSize);
+            switch (this.componentSize)
+            {
+                case 1:
+                    return this.buffer.get(index) & 0xff;
+                case 2:
+                    return this.buffer.getShort(index) & 0xffff;
+                default:
+                    return this.buffer.getInt(index);
+            }
+        }
+    }
+
+    /**
+     * A glTF primitive, along with where its data goes in the mesh streams.
+     */
+    private static class PrimitiveData
+    {
+        private int minVert, numVertices;
+        private int firstIndex, numIndices;
+
+        private AccessorView vertices, color, weights, joints, normals, tangents, indices;
+        private AccessorView[] attributes;
+        private AccessorView[] targetPositions, targetNormals;
+        private int[] targetStreams;
+
+        /**
+         * Bone index of each joint in the primitive's skin, null if it has no skin.
+         */
+        private int[] jointRemap;
+
+        /**
+         * Min and max of the UVs in the primitive.
+         */
+        private final float[] uvBounds = {
+            Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+            Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY
+        };
+    }
+
     private final ModelImportConfig config;
     private final GltfModel gltf;
 
@@ -65,16 +137,14 @@ public class ModelImporter
 
     private int attributeCount, morphCount;
     private int vertexOffset, indexOffset;
-    private final MemoryOutputStream[] vertexStreams = new MemoryOutputStream[35];
-    private MemoryOutputStream attributeStream = null;
-    private MemoryOutputStream indexStream = null;
+    private final byte[][] vertexStreams = new byte[35][];
+    private byte[] attributeStream = null;
+    private byte[] indexStream = null;
+    private final ArrayList<PrimitiveData> primitiveData = new ArrayList<>();
 
     private final Vector2f minUV = new Vector2f(Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY);
     private final Vector2f maxUV = new Vector2f(Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY);
 
-    private final HashMap<Bone, Vector3f> minVert = new HashMap<>();
-    private final HashMap<Bone, Vector3f> maxVert = new HashMap<>();
-
     private final HashMap<MaterialModel, Primitive> gltfMaterials = new HashMap<>();
 
     public ModelImporter(ModelImportConfig config)
@@ -215,15 +285,30 @@ public class ModelImporter
         return true;
     }
 
-    private ByteBuffer getAttributeBuffer(MeshPrimitiveModel primitive, String attribute)
+    private AccessorView getAttributeView(MeshPrimitiveModel primitive, String attribute)
     {
-        AccessorModel accessor = primitive.getAttributes().get(attribute);
-        if (accessor == null) return null;
-        return accessor.getAccessorData().createByteBuffer();
+        return AccessorView.of(primitive.getAttributes().get(attribute));
     }
 
+    /**
+     * Lays out the primitives of a mesh in the mesh streams, their data is
+     * packed afterwards in {@link #packPrimitive(PrimitiveData)}.
+     *
+     * @param mesh        Mesh to add
+     * @param skin        Skin of the mesh, or null if it has none
+     * @param targetNames Names of the mesh's morph targets
+     */
     private void addMesh(MeshModel mesh, SkinModel skin, ArrayList<String> targetNames)
     {
+        int[] jointRemap = null;
+        if (skin != null)
+        {
+            List<NodeModel> joints = skin.getJoints();
+            jointRemap = new int[joints.size()];
+            for (int i = 0; i < jointRemap.length; ++i)
+                jointRemap[i] = this.getJointIndex(joints.get(i));
+        }
+
         for (MeshPrimitiveModel meshPrimitive : mesh.getMeshPrimitiveModels())
         {
             int numVertices = meshPrimitive.getAttributes().get("POSITION").getCount();
@@ -236,225 +321,196 @@ public class ModelImporter
             this.indexOffset += numIndices;
             this.vertexOffset += numVertices;
 
-            ByteBuffer vertices = this.getAttributeBuffer(meshPrimitive, "POSITION");
-            ByteBuffer color = this.getAttributeBuffer(meshPrimitive, "COLOR_0");
-            MemoryOutputStream vertexStream =
-                this.vertexStreams[RMesh.STREAM_POS_BONEINDICES];
-            Vector3f[] vertexCache = new Vector3f[numVertices];
-            for (int i = 0; i < numVertices; ++i)
-            {
-                Vector3f vertex = new Vector3f(
-                    vertices.getFloat(),
-                    vertices.getFloat(),
-                    vertices.getFloat()
-                );
-
-                vertex.mul(this.config.vertexScale);
-                vertex.add(this.config.vertexOffset);
-
-                vertexCache[i] = vertex;
-
-                vertexStream.v3(vertex);
-
-                int c = 0xff;
-                if (color != null)
-                {
-                    c = Math.round(((float) (color.getShort() & 0xffff) / (float) 0xffff) * 0xFF);
-                    color.getShort();
-                    color.getShort();
-                    color.getShort();
-                }
-                vertexStream.i32(c, true);
-            }
-
-            MemoryOutputStream skinningStream =
-                this.vertexStreams[RMesh.STREAM_BONEWEIGHTS_NORM_TANGENT_SMOOTH_NORM];
-
-            ByteBuffer weights = this.getAttributeBuffer(meshPrimitive, "WEIGHTS_0");
-            ByteBuffer joints = this.getAttributeBuffer(meshPrimitive, "JOINTS_0");
-            ByteBuffer normals = this.getAttributeBuffer(meshPrimitive, "NORMAL");
-            ByteBuffer tangents = this.getAttributeBuffer(meshPrimitive, "TANGENT");
-
-            boolean isShortBuffer = false;
-            AccessorModel jointAccessorModel = meshPrimitive.getAttributes().get("JOINTS_0");
-            isShortBuffer =
-                jointAccessorModel != null &&
-                jointAccessorModel.getComponentDataType().toString().equals("short");
-
-            ByteBuffer[] attributes = new ByteBuffer[] {
-                this.getAttributeBuffer(meshPrimitive, "TEXCOORD_0"),
-                this.getAttributeBuffer(meshPrimitive, "TEXCOORD_1"),
-                this.getAttributeBuffer(meshPrimitive, "TEXCOORD_2")
+            // Buffer views are resolved up front, since jgltf applies
+            // sparse accessors the first time a view is requested.
+            PrimitiveData data = new PrimitiveData();
+            data.minVert = minVert;
+            data.numVertices = numVertices;
+            data.firstIndex = firstIndex;
+            data.numIndices = numIndices;
+            data.vertices = this.getAttributeView(meshPrimitive, "POSITION");
+            data.color = this.getAttributeView(meshPrimitive, "COLOR_0");
+            data.weights = this.getAttributeView(meshPrimitive, "WEIGHTS_0");
+            data.joints = this.getAttributeView(meshPrimitive, "JOINTS_0");
+            data.normals = this.getAttributeView(meshPrimitive, "NORMAL");
+            data.tangents = this.getAttributeView(meshPrimitive, "TANGENT");
+            data.indices = AccessorView.of(meshPrimitive.getIndices());
+            data.jointRemap = jointRemap;
+
+            data.attributes = new AccessorView[] {
+                this.getAttributeView(meshPrimitive, "TEXCOORD_0"),
+                this.getAttributeView(meshPrimitive, "TEXCOORD_1"),
+                this.getAttributeView(meshPrimitive, "TEXCOORD_2")
             };
 
             List<Map<String, AccessorModel>> targets = meshPrimitive.getTargets();
-            ByteBuffer[] targetPositions = new ByteBuffer[this.morphCount];
-            ByteBuffer[] targetNormals = new ByteBuffer[this.morphCount];
+            data.targetPositions = new AccessorView[this.morphCount];
+            data.targetNormals = new AccessorView[this.morphCount];
+            data.targetStreams = new int[this.morphCount];
             for (int i = 0; i < targets.size(); ++i)
             {
                 Map<String, AccessorModel> target = targets.get(i);
-                if (target.containsKey("POSITION"))
-                    targetPositions[i] =
-                        target.get("POSITION").getAccessorData().createByteBuffer();
-                if (target.containsKey("NORMAL"))
-                    targetNormals[i] =
-                        target.get("NORMAL").getAccessorData().createByteBuffer();
+                data.targetPositions[i] = AccessorView.of(target.get("POSITION"));
+                data.targetNormals[i] = AccessorView.of(target.get("NORMAL"));
+                if (data.targetPositions[i] != null && numVertices != 0)
+                    data.targetStreams[i] =
+                        RMesh.STREAM_MORPHS0 + this.getTargetIndex(targetNames.get(i));
             }
 
-            int[] jointCache = new int[4];
-            float[] weightCache = new float[4];
-            for (int i = 0; i < numVertices; ++i)
-            {
-                weightCache[0] = 1.0f;
-                weightCache[1] = 0.0f;
-                weightCache[2] = 0.0f;
-                weightCache[3] = 0.0f;
-
-                if (weights != null)
-                {
-                    for (int j = 0; j < 4; ++j)
-                        weightCache[j] = weights.getFloat();
-                }
-
+            this.primitiveData.add(data);
 
-                if (skin == null)
-                {
-                    for (int j = 0; j < 4; ++j)
-                        jointCache[j] = 0;
-                }
-                else
-                {
-                    for (int j = 0; j < 4; ++j)
-                    {
-                        int joint =
-                            (isShortBuffer ? joints.getShort() : joints.get()) & 0xff;
-                        jointCache[j] = this.getJointIndex(skin.getJoints().get(joint));
-                    }
-                }
-
-                // Update min/max for bones
-                for (int j = 0; j < 4; ++j)
-                {
-                    if (weightCache[j] == 0.0f) continue;
-                    Vector3f max = this.maxVert.get(this.bones[jointCache[j]]);
-                    Vector3f min = this.minVert.get(this.bones[jointCache[j]]);
-                    Vector3f v = vertexCache[i];
-
-                    if (v.x > max.x) max.x = v.x;
-                    if (v.y > max.y) max.y = v.y;
-                    if (v.z > max.z) max.z = v.z;
-
-                    if (v.x < min.x) min.x = v.x;
-                    if (v.y < min.y) min.y = v.y;
-                    if (v.z < min.z) min.z = v.z;
-                }
+            String materialName = meshPrimitive.getMaterialModel().getName();
+            System.out.println(materialName);
+            ResourceDescriptor descriptor = null;
+            if (this.config.materialOverrides != null && this.config.materialOverrides.containsKey(materialName))
+                descriptor = this.config.materialOverrides.get(materialName);
+            else
+                descriptor = new ResourceDescriptor(10803, ResourceType.GFX_MATERIAL);
 
-                int scale = (weightCache[1] != 0.0f) ? 0xFE : 0xFF;
-                skinningStream.u8(Math.round(weightCache[2] * scale));
-                skinningStream.u8(Math.round(weightCache[1] * scale));
-                skinningStream.u8(Math.round(weightCache[0] * scale));
+            Primitive primitive = new Primitive(descriptor, minVert, maxVert, firstIndex,
+                numIndices);
+            this.primitives.add(primitive);
+            this.gltfMaterials.put(meshPrimitive.getMaterialModel(), primitive);
 
-                skinningStream.u8(jointCache[0]);
+        }
+    }
 
-                Vector3f normal = new Vector3f(
-                    normals.getFloat(),
-                    normals.getFloat(),
-                    normals.getFloat()
-                );
+    /**
+     * Packs the vertex, attribute, and index data of a primitive into the mesh streams.
+     * Each primitive writes to its own range of the streams, so they can be packed in parallel.
+     *
+     * @param data Primitive to pack
+     */
+    private void packPrimitive(PrimitiveData data)
+    {
+        ByteBuffer vertexStream = ByteBuffer.wrap(this.vertexStreams[RMesh.STREAM_POS_BONEINDICES]);
+        ByteBuffer skinningStream =
+            ByteBuffer.wrap(this.vertexStreams[RMesh.STREAM_BONEWEIGHTS_NORM_TANGENT_SMOOTH_NORM]);
+        ByteBuffer attributeStream = ByteBuffer.wrap(this.attributeStream);
+        ByteBuffer indexStream = ByteBuffer.wrap(this.indexStream);
+        ByteBuffer[] targetStreams = new ByteBuffer[this.morphCount];
+        for (int j = 0; j < this.morphCount; ++j)
+        {
+            if (data.targetPositions[j] != null)
+                targetStreams[j] = ByteBuffer.wrap(this.vertexStreams[data.targetStreams[j]]);
+        }
 
-                skinningStream.u24(Bytes.packNormal24(normal));
+        float scale = this.config.vertexScale;
+        Vector3f translation = this.config.vertexOffset;
 
-                skinningStream.u8(jointCache[1]);
+        float[] uvBounds = data.uvBounds;
 
-                if (tangents != null)
-                {
-                    skinningStream.u24(Bytes.packNormal24(new Vector3f(
-                        tangents.getFloat(),
-                        tangents.getFloat(),
-                        tangents.getFloat()
-                    )));
-                    tangents.getFloat();
-                }
-                else skinningStream.u24(0);
+        int[] joints = new int[4];
+        float[] weights = new float[4];
+        for (int i = 0; i < data.numVertices; ++i)
+        {
+            int offset = (data.minVert + i) * 0x10;
+
+            float x = (data.vertices.getFloat(i, 0) * scale) + translation.x;
+            float y = (data.vertices.getFloat(i, 1) * scale) + translation.y;
+            float z = (data.vertices.getFloat(i, 2) * scale) + translation.z;
+
+            vertexStream.putInt(offset, Float.floatToIntBits(x));
+            vertexStream.putInt(offset + 0x4, Float.floatToIntBits(y));
+            vertexStream.putInt(offset + 0x8, Float.floatToIntBits(z));
+
+            int c = 0xff;
+            if (data.color != null)
+                c = Math.round(((float) data.color.getUnsigned(i, 0) / (float) 0xffff) * 0xFF);
+            vertexStream.putInt(offset + 0xC, c);
+
+            weights[0] = 1.0f;
+            weights[1] = 0.0f;
+            weights[2] = 0.0f;
+            weights[3] = 0.0f;
+            if (data.weights != null)
+            {
+                for (int j = 0; j < 4; ++j)
+                    weights[j] = data.weights.getFloat(i, j);
+            }
 
-                skinningStream.u8(jointCache[2]);
+            for (int j = 0; j < 4; ++j)
+            {
+                joints[j] = (data.jointRemap == null) ? 0 :
+                    data.jointRemap[data.joints.getUnsigned(i, j) & 0xff];
+            }
 
-                skinningStream.u24(0); // Don't know what a smooth normal is
+            int weightScale = (weights[1] != 0.0f) ? 0xFE : 0xFF;
+            float nx = data.normals.getFloat(i, 0);
+            float ny = data.normals.getFloat(i, 1);
+            float nz = data.normals.getFloat(i, 2);
 
-                skinningStream.u8(jointCache[3]);
+            int tangent = 0;
+            if (data.tangents != null)
+            {
+                tangent = Bytes.packNormal24(
+                    data.tangents.getFloat(i, 0),
+                    data.tangents.getFloat(i, 1),
+                    data.tangents.getFloat(i, 2)
+                );
+            }
 
-                // Attributes
+            skinningStream.putInt(offset,
+                (Math.round(weights[2] * weightScale) & 0xff) << 24 |
+                (Math.round(weights[1] * weightScale) & 0xff) << 16 |
+                (Math.round(weights[0] * weightScale) & 0xff) << 8 |
+                (joints[0] & 0xff));
+            skinningStream.putInt(offset + 0x4,
+                (Bytes.packNormal24(nx, ny, nz) << 8) | (joints[1] & 0xff));
+            skinningStream.putInt(offset + 0x8, (tangent << 8) | (joints[2] & 0xff));
+            // Don't know what a smooth normal is
+            skinningStream.putInt(offset + 0xC, joints[3] & 0xff);
 
-                for (int j = 0; j < this.attributeCount; ++j)
-                {
-                    ByteBuffer buffer = attributes[j];
-                    if (buffer == null)
-                        this.attributeStream.pad(0x8);
-                    Vector2f uv = new Vector2f(buffer.getFloat(), buffer.getFloat());
+            // Attributes
 
-                    if (uv.x > this.maxUV.x) this.maxUV.x = uv.x;
-                    if (uv.y > this.maxUV.y) this.maxUV.y = uv.y;
+            for (int j = 0; j < this.attributeCount; ++j)
+            {
+                AccessorView buffer = data.attributes[j];
+                if (buffer == null) continue;
 
-                    if (uv.x < this.minUV.x) this.minUV.x = uv.x;
-                    if (uv.y < this.minUV.y) this.minUV.y = uv.y;
+                float u = buffer.getFloat(i, 0);
+                float v = buffer.getFloat(i, 1);
 
-                    this.attributeStream.v2(uv);
-                }
+                if (u < uvBounds[0]) uvBounds[0] = u;
+                if (v < uvBounds[1]) uvBounds[1] = v;
+                if (u > uvBounds[2]) uvBounds[2] = u;
+                if (v > uvBounds[3]) uvBounds[3] = v;
 
-                // Targets
-                // This one might not necessarily be in order
-                // so we'll have to seek
-                for (int j = 0; j < this.morphCount; ++j)
-                {
-                    ByteBuffer targetPosition = targetPositions[j];
-                    if (targetPosition == null) continue;
-                    ByteBuffer targetNormal = targetNormals[j];
-                    MemoryOutputStream targetStream =
-                        this.vertexStreams[RMesh.STREAM_MORPHS0 + this.getTargetIndex(targetNames.get(j))];
-                    targetStream.seek((i + minVert) * 0x10, SeekMode.Begin);
-                    Vector3f vertex = new Vector3f(
-                        targetPosition.getFloat(),
-                        targetPosition.getFloat(),
-                        targetPosition.getFloat()
-                    );
-
-                    vertex.mul(this.config.vertexScale);
-                    vertex.add(this.config.vertexOffset);
-
-                    targetStream.v3(vertex);
-
-                    if (targetNormal != null)
-                    {
-                        normal.add(targetNormal.getFloat(), targetNormal.getFloat(),
-                            targetNormal.getFloat());
-                        targetStream.i32(Bytes.packNormal32(normal));
-                    }
-                }
+                int attribute = (((data.minVert + i) * this.attributeCount) + j) * 0x8;
+                attributeStream.putInt(attribute, Float.floatToIntBits(u));
+                attributeStream.putInt(attribute + 0x4, Float.floatToIntBits(v));
             }
 
-            ShortBuffer indexAccessor =
-                meshPrimitive.getIndices().getAccessorData().createByteBuffer().asShortBuffer();
-            int[] triCache = new int[numIndices];
-            for (int i = 0; i < numIndices; ++i)
+            // Targets
+            for (int j = 0; j < this.morphCount; ++j)
             {
-                int index = (indexAccessor.get() & 0xffff) + minVert;
-                triCache[i] = index;
-                this.indexStream.u16(index);
+                AccessorView targetPosition = data.targetPositions[j];
+                if (targetPosition == null) continue;
+                ByteBuffer targetStream = targetStreams[j];
+
+                targetStream.putInt(offset,
+                    Float.floatToIntBits(targetPosition.getFloat(i, 0) * scale));
+                targetStream.putInt(offset + 0x4,
+                    Float.floatToIntBits(targetPosition.getFloat(i, 1) * scale));
+                targetStream.putInt(offset + 0x8,
+                    Float.floatToIntBits(targetPosition.getFloat(i, 2) * scale));
+
+                AccessorView targetNormal = data.targetNormals[j];
+                if (targetNormal != null)
+                {
+                    targetStream.putInt(offset + 0xC, Bytes.packNormal32(
+                        nx + targetNormal.getFloat(i, 0),
+                        ny + targetNormal.getFloat(i, 1),
+                        nz + targetNormal.getFloat(i, 2)
+                    ));
+                }
             }
+        }
 
-            String materialName = meshPrimitive.getMaterialModel().getName();
-            System.out.println(materialName);
-            ResourceDescriptor descriptor = null;
-            if (this.config.materialOverrides != null && this.config.materialOverrides.containsKey(materialName))
-                descriptor = this.config.materialOverrides.get(materialName);
-            else
-                descriptor = new ResourceDescriptor(10803, ResourceType.GFX_MATERIAL);
-
-            Primitive primitive = new Primitive(descriptor, minVert, maxVert, firstIndex,
-                numIndices);
-            this.primitives.add(primitive);
-            this.gltfMaterials.put(meshPrimitive.getMaterialModel(), primitive);
-
+        for (int i = 0; i < data.numIndices; ++i)
+        {
+            int index = data.indices.getUnsigned(i, 0) + data.minVert;
+            indexStream.putShort((data.firstIndex + i) * 0x2, (short) index);
         }
     }
 
@@ -563,16 +619,6 @@ public class ModelImporter
         }
         else this.getCustomSkeleton();
 
-        for (Bone bone : this.bones)
-        {
-            this.minVert.put(bone, new Vector3f(Float.POSITIVE_INFINITY,
-                Float.POSITIVE_INFINITY,
-                Float.POSITIVE_INFINITY));
-            this.maxVert.put(bone, new Vector3f(Float.NEGATIVE_INFINITY,
-                Float.NEGATIVE_INFINITY,
-                Float.NEGATIVE_INFINITY));
-        }
-
         for (int i = 0; i < this.bones.length; ++i)
             this.jointLookup.put(this.bones[i].getName(), i);
 
@@ -596,16 +642,13 @@ public class ModelImporter
             return null;
         }
 
-        this.vertexStreams[RMesh.STREAM_POS_BONEINDICES] =
-            new MemoryOutputStream(totalVertCount * 0x10);
+        this.vertexStreams[RMesh.STREAM_POS_BONEINDICES] = new byte[totalVertCount * 0x10];
         this.vertexStreams[RMesh.STREAM_BONEWEIGHTS_NORM_TANGENT_SMOOTH_NORM] =
-            new MemoryOutputStream(totalVertCount * 0x10);
+            new byte[totalVertCount * 0x10];
         for (int i = 0; i < this.morphCount; ++i)
-            this.vertexStreams[RMesh.STREAM_MORPHS0 + i] =
-                new MemoryOutputStream(totalVertCount * 0x10);
-        this.attributeStream =
-            new MemoryOutputStream(totalVertCount * (this.attributeCount * 0x8));
-        this.indexStream = new MemoryOutputStream(this.getTotalIndexCount() * 0x2);
+            this.vertexStreams[RMesh.STREAM_MORPHS0 + i] = new byte[totalVertCount * 0x10];
+        this.attributeStream = new byte[totalVertCount * (this.attributeCount * 0x8)];
+        this.indexStream = new byte[this.getTotalIndexCount() * 0x2];
 
         for (NodeModel node : gltf.getNodeModels())
         {
@@ -628,14 +671,27 @@ public class ModelImporter
             }
         }
 
+        // Primitives are laid out in order, but each one writes to its own
+        // range of the streams, so the actual packing can be done in parallel.
+        IntStream.range(0, this.primitiveData.size()).parallel().forEach(i ->
+            this.packPrimitive(this.primitiveData.get(i)));
+
+        for (PrimitiveData data : this.primitiveData)
+        {
+            float[] uvBounds = data.uvBounds;
+            if (uvBounds[0] < this.minUV.x) this.minUV.x = uvBounds[0];
+            if (uvBounds[1] < this.minUV.y) this.minUV.y = uvBounds[1];
+            if (uvBounds[2] > this.maxUV.x) this.maxUV.x = uvBounds[2];
+            if (uvBounds[3] > this.maxUV.y) this.maxUV.y = uvBounds[3];
+        }
+
         byte[][] streams = new byte[2 + this.morphCount][];
-        for (int i = 0; i < streams.length; ++i)
-            streams[i] = this.vertexStreams[i].getBuffer();
+        System.arraycopy(this.vertexStreams, 0, streams, 0, streams.length);
 
         RMesh mesh = new RMesh(
             streams,
-            this.attributeStream.getBuffer(),
-            this.indexStream.getBuffer(),
+            this.attributeStream,
+            this.indexStream,
             this.bones
         );
 
@@ -1,8 +1,13 @@
 package cwlib.resources;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.stream.IntStream;
 
 import org.joml.Matrix4f;
 
@@ -19,6 +24,7 @@ import cwlib.types.data.GUID;
 import cwlib.types.data.ResourceDescriptor;
 import cwlib.types.data.Revision;
 import cwlib.types.data.SHA1;
+import cwlib.types.world.ThingIndex;
 import cwlib.io.Resource;
 import cwlib.io.gson.GsonRevision;
 import cwlib.io.serializer.SerializationData;
@@ -30,8 +36,6 @@ import cwlib.structs.level.CachedInventoryData;
 import cwlib.structs.level.PlayerRecord;
 import cwlib.structs.profile.InventoryItem;
 import cwlib.structs.things.Thing;
-import cwlib.structs.things.components.switches.SwitchOutput;
-import cwlib.structs.things.components.switches.SwitchTarget;
 import cwlib.structs.things.parts.PAudioWorld;
 import cwlib.structs.things.parts.PBody;
 import cwlib.structs.things.parts.PCreature;
@@ -45,7 +49,6 @@ import cwlib.structs.things.parts.PMetadata;
 import cwlib.structs.things.parts.PPos;
 import cwlib.structs.things.parts.PRef;
 import cwlib.structs.things.parts.PScript;
-import cwlib.structs.things.parts.PSwitch;
 import cwlib.structs.things.parts.PTrigger;
 import cwlib.structs.things.parts.PWorld;
 
@@ -304,6 +307,10 @@ public class RLevel implements Resource
             GUID gunScriptKey = new GUID(66090);
             GUID speechBubbleScriptKey = new GUID(18420);
 
+            // Switch connections are looked up for every sound object,
+            // so gather them once up front.
+            ThingIndex index = new ThingIndex(world.things);
+
             for (Thing thing : world.things)
             {
                 if (thing == null) continue;
@@ -407,7 +414,7 @@ public class RLevel implements Resource
                     if (thing.hasPart(Part.AUDIO_WORLD))
                     {
                         PAudioWorld sfx = thing.getPart(Part.AUDIO_WORLD);
-                        sfx.triggerBySwitch = hasSwitchInput(thing);
+                        sfx.triggerBySwitch = index.hasSwitchInput(thing);
                         PScript script = new PScript(soundObjectScript);
                         if (sfx.soundNames != null)
                             script.instance.addField("SoundNames", sfx.soundNames);
@@ -507,70 +514,133 @@ public class RLevel implements Resource
         }
     }
 
+    /**
+     * Checks whether any switch in the level has an output connected to a Thing.
+     * <p>
+     * This indexes the whole level, when checking many Things, build a
+     * ThingIndex once and use ThingIndex.hasSwitchInput instead.
+     *
+     * @param target Target Thing
+     * @return Whether the Thing is targeted by a switch
+     */
     public boolean hasSwitchInput(Thing target)
     {
         if (!this.isValidLevel()) return false;
-        PWorld world = worldThing.getPart(Part.WORLD);
-        for (Thing thing : world.things)
-        {
-            if (thing == null || !thing.hasPart(Part.SWITCH)) continue;
-            PSwitch switchBase = thing.getPart(Part.SWITCH);
-            if (switchBase.outputs == null) continue;
-            for (SwitchOutput output : switchBase.outputs)
-            {
-                if (output.targetList == null) continue;
-                for (SwitchTarget switchTarget : output.targetList)
-                {
-                    if (switchTarget.thing == target) 
-                        return true;
-                }
-            }
-        }
-
-        return false;
+        return ThingIndex.fromLevel(this).hasSwitchInput(target);
     }
 
-    private ArrayList<Thing> getAllReferences(ArrayList<Thing> things, Thing thing)
+    /**
+     * Gathers a Thing and everything attached to it, either by being parented to it
+     * or by sharing its group head, in depth-first order.
+     *
+     * @param index     Index of the world's Things
+     * @param positions Position of each Thing in the world
+     * @param root      Thing to start from
+     * @return Root Thing followed by its references
+     */
+    private static ArrayList<Thing> getAllReferences(ThingIndex index,
+                                                     IdentityHashMap<Thing, Integer> positions,
+                                                     Thing root)
     {
-        PWorld world = (this.worldThing.getPart(Part.WORLD));
-        if (!things.contains(thing)) things.add(thing);
-        for (Thing worldThing : world.things)
+        ArrayList<Thing> things = new ArrayList<>();
+        IdentityHashMap<Thing, Boolean> visited = new IdentityHashMap<>();
+        things.add(root);
+        visited.put(root, true);
+
+        // Each frame walks the children and group members of a Thing together,
+        // in world order, the same order a scan over the world would find them.
+        ArrayList<Thing> stack = new ArrayList<>();
+        int[] childCursor = new int[16], groupCursor = new int[16];
+        stack.add(root);
+        while (!stack.isEmpty())
         {
-            if (worldThing == null || worldThing == thing) continue;
-            if (worldThing.getPart(Part.WORLD) != null || things.contains(worldThing))
+            int top = stack.size() - 1;
+            Thing thing = stack.get(top);
+            List<Thing> children = index.getChildren(thing);
+            List<Thing> group = (thing.groupHead != null) ? index.getGroup(thing.groupHead) :
+                Collections.emptyList();
+
+            Thing next = null;
+            int c = childCursor[top], g = groupCursor[top];
+            if (c < children.size() && (g >= group.size() ||
+                positions.get(children.get(c)) <= positions.get(group.get(g))))
+            {
+                next = children.get(c);
+                childCursor[top]++;
+            }
+            else if (g < group.size())
+            {
+                next = group.get(g);
+                groupCursor[top]++;
+            }
+
+            if (next == null)
+            {
+                stack.remove(top);
                 continue;
-            if (worldThing.parent == thing || (thing.groupHead != null && (worldThing.groupHead == thing.groupHead)))
-                this.getAllReferences(things, worldThing);
+            }
+
+            if (next.hasPart(Part.WORLD) || visited.put(next, true) != null) continue;
+            things.add(next);
+
+            if (stack.size() == childCursor.length)
+            {
+                childCursor = Arrays.copyOf(childCursor, childCursor.length * 2);
+                groupCursor = Arrays.copyOf(groupCursor, groupCursor.length * 2);
+            }
+            childCursor[stack.size()] = 0;
+            groupCursor[stack.size()] = 0;
+            stack.add(next);
         }
+
         return things;
     }
 
     public HashMap<String, RPlan> getPalettes(String name, Revision revision,
                                               byte compressionFlags, boolean includeChildren)
     {
-        HashMap<String, RPlan> plans = new HashMap<>();
         PWorld world = this.worldThing.getPart(Part.WORLD);
-        Thing.SERIALIZE_WORLD_THING = false;
+
+        ArrayList<Thing> palettes = new ArrayList<>();
         for (Thing thing : world.things)
         {
-            if (thing == null || thing.getPart(Part.WORLD) != null) continue;
-            PMetadata metadata = thing.getPart(Part.METADATA);
-            if (metadata == null) continue;
-            if (includeChildren)
+            if (thing == null || thing.hasPart(Part.WORLD)) continue;
+            if (thing.hasPart(Part.METADATA)) palettes.add(thing);
+        }
+
+        ThingIndex index = includeChildren ? new ThingIndex(world.things) : null;
+        IdentityHashMap<Thing, Integer> positions = new IdentityHashMap<>();
+        if (includeChildren)
+        {
+            List<Thing> things = index.getThings();
+            for (int i = 0; i < things.size(); ++i)
+                positions.putIfAbsent(things.get(i), i);
+        }
+
+        // Each plan serializes its own copy of the Things, so they can be built independently.
+        RPlan[] plans = new RPlan[palettes.size()];
+        Thing.SERIALIZE_WORLD_THING = false;
+        try
+        {
+            IntStream.range(0, plans.length).parallel().forEach(i ->
             {
-                Thing[] things =
-                    this.getAllReferences(new ArrayList<>(), thing).toArray(Thing[]::new);
-                plans.put(name + "_" + thing.UID + ".plan", new RPlan(revision,
-                    compressionFlags,
-                    things, metadata));
-            }
-            else
-                plans.put(name + "_" + thing.UID + ".plan", new RPlan(revision,
-                    compressionFlags,
-                    thing, metadata));
+                Thing thing = palettes.get(i);
+                PMetadata metadata = thing.getPart(Part.METADATA);
+                if (includeChildren)
+                {
+                    Thing[] things =
+                        getAllReferences(index, positions, thing).toArray(Thing[]::new);
+                    plans[i] = new RPlan(revision, compressionFlags, things, metadata);
+                }
+                else plans[i] = new RPlan(revision, compressionFlags, thing, metadata);
+            });
         }
-        Thing.SERIALIZE_WORLD_THING = true;
-        return plans;
+        finally { Thing.SERIALIZE_WORLD_THING = true; }
+
+        HashMap<String, RPlan> results = new HashMap<>();
+        for (int i = 0; i < plans.length; ++i)
+            results.put(name + "_" + palettes.get(i).UID + ".plan", plans[i]);
+        return results;
     }
 
     public int getNextUID()
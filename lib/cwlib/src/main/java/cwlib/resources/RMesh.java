@@ -1,5 +1,7 @@
 package cwlib.resources;
 
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -22,7 +24,6 @@ import cwlib.io.Resource;
 import cwlib.io.serializer.SerializationData;
 import cwlib.io.serializer.Serializer;
 import cwlib.io.streams.MemoryInputStream;
-import cwlib.io.streams.MemoryInputStream.SeekMode;
 import cwlib.io.streams.MemoryOutputStream;
 import cwlib.structs.custom.Skeleton;
 import cwlib.structs.mesh.Bone;
@@ -34,6 +35,7 @@ import cwlib.structs.mesh.Primitive;
 import cwlib.structs.mesh.SoftbodyClusterData;
 import cwlib.structs.mesh.SoftbodySpring;
 import cwlib.structs.mesh.SoftbodyVertEquivalence;
+import cwlib.structs.mesh.SparseMorph;
 import cwlib.structs.mesh.Submesh;
 import cwlib.types.data.ResourceDescriptor;
 import cwlib.types.data.Revision;
@@ -53,6 +55,17 @@ public class RMesh implements Resource
     private static final int BASE_ALLOCATION_SIZE =
         0x400 + SoftbodyClusterData.BASE_ALLOCATION_SIZE;
 
+    /**
+     * Vertices that a morph doesn't move are still treated as affected if the
+     * angle between their morph and base normals has a cosine below this.
+     * It allows two steps of the coarsest component of either normal encoding,
+     * the 9-bit z of the 11/11/10 morph normals, one for rounding and one for
+     * the bias negative components get when unpacked. Normals that only differ
+     * because of the 12/11/1 base encoding reconstructing z can still end up
+     * affected, which only costs some sparsity.
+     */
+    private static final float SPARSE_MORPH_NORMAL_COS = (float) Math.cos(2.0 / 0x1ff);
+
     /**
      * The number of vertices this mesh has.
      */
@@ -220,6 +233,11 @@ public class RMesh implements Resource
      */
     private HairMorph hairMorphs = HairMorph.HAT;
 
+    /**
+     * Sparse morphs that have been decoded so far, indexed by morph.
+     */
+    private SparseMorph[] sparseMorphs;
+
     private int bevelVertexCount;
     private boolean implicitBevelSprings;
 
@@ -401,6 +419,7 @@ public class RMesh implements Resource
             this.streams = new byte[this.streamCount][];
             for (int i = 0; i < this.streamCount; ++i)
                 this.streams[i] = stream.bytes(this.numVerts * 0x10);
+            this.sparseMorphs = null;
         }
 
         this.attributes = serializer.bytearray(this.attributes);
@@ -1112,31 +1131,84 @@ public class RMesh implements Resource
     }
 
     /**
-     * Gets all the vertices in a specified range
+     * Gets a view of the main vertex stream without copying it.
+     * Each vertex is 4 big-endian floats, the position followed by
+     * packed softbody data that isn't a float and should be ignored.
      *
-     * @param start First vertex
-     * @param count Number of vertices
-     * @return Vertices of range
+     * @return Read-only view of the vertex stream
      */
-    public Vector3f[] getVertices(int start, int count)
+    public FloatBuffer getVertexBuffer()
     {
-        MemoryInputStream stream = new MemoryInputStream(this.getVertexStream());
-        stream.seek(start * 0x10);
-        Vector3f[] vertices = new Vector3f[count];
-        for (int i = 0; i < count; ++i)
+        return ByteBuffer.wrap(this.getVertexStream()).asReadOnlyBuffer().asFloatBuffer();
+    }
+
+    /**
+     * Gets a view of the attribute stream without copying it.
+     * Each vertex is 2 big-endian floats per UV channel.
+     *
+     * @return Read-only view of the attribute stream
+     */
+    public FloatBuffer getAttributeBuffer()
+    {
+        if (this.attributes == null)
+            throw new IllegalStateException("This mesh doesn't have texture coordinates!");
+        return ByteBuffer.wrap(this.attributes).asReadOnlyBuffer().asFloatBuffer();
+    }
+
+    /**
+     * Decodes the vertices in a specified range into a buffer.
+     *
+     * @param start  First vertex
+     * @param count  Number of vertices
+     * @param buffer Buffer to put 3 floats per vertex into, starting at its current position
+     */
+    public void getVertices(int start, int count, FloatBuffer buffer)
+    {
+        byte[] stream = this.getVertexStream();
+        for (int i = 0, offset = start * 0x10; i < count; ++i, offset += 0x10)
         {
-            vertices[i] = stream.v3();
+            buffer.put(RMesh.getFloat(stream, offset));
+            buffer.put(RMesh.getFloat(stream, offset + 0x4));
+            buffer.put(RMesh.getFloat(stream, offset + 0x8));
 
             // stream.i8(cluster_index * 2);
             // stream.i8(0)
             // stream.i8(0)
             // stream.i8(vertex_weight)
-
-            stream.i32(true);
         }
+    }
+
+    /**
+     * Gets all the vertices in a specified range
+     *
+     * @param start First vertex
+     * @param count Number of vertices
+     * @return Vertices of range
+     */
+    public Vector3f[] getVertices(int start, int count)
+    {
+        float[] values = new float[count * 3];
+        this.getVertices(start, count, FloatBuffer.wrap(values));
+        Vector3f[] vertices = new Vector3f[count];
+        for (int i = 0; i < count; ++i)
+            vertices[i] = new Vector3f(values[i * 3], values[(i * 3) + 1], values[(i * 3) + 2]);
         return vertices;
     }
 
+    /**
+     * Decodes the softbody weights in a specified range into a buffer.
+     *
+     * @param start  First vertex
+     * @param count  Number of vertices
+     * @param buffer Buffer to put 1 float per vertex into, starting at its current position
+     */
+    public void getSoftbodyWeights(int start, int count, FloatBuffer buffer)
+    {
+        byte[] stream = this.getVertexStream();
+        for (int i = 0, offset = (start * 0x10) + 0xF; i < count; ++i, offset += 0x10)
+            buffer.put(((float) (stream[offset] & 0xFF)) / ((float) 0xff));
+    }
+
     /**
      * Gets all the softbody weights in a specified range
      *
@@ -1146,15 +1218,8 @@ public class RMesh implements Resource
      */
     public float[] getSoftbodyWeights(int start, int count)
     {
-        MemoryInputStream stream = new MemoryInputStream(this.getVertexStream());
-        stream.seek(start * 0x10);
         float[] weights = new float[count];
-        for (int i = 0; i < count; ++i)
-        {
-            stream.seek(0xC + 0x3);
-            float c = ((float) stream.u8()) / ((float) 0xff);
-            weights[i] = c;
-        }
+        this.getSoftbodyWeights(start, count, FloatBuffer.wrap(weights));
         return weights;
     }
 
@@ -1213,27 +1278,43 @@ public class RMesh implements Resource
     }
 
     /**
-     * Gets the UVs in a specified range.
+     * Decodes the UVs in a specified range into a buffer.
      *
      * @param start   First vertex to get UVs of
      * @param count   Number of UVs
      * @param channel UV channel
-     * @return UVs
+     * @param buffer  Buffer to put 2 floats per vertex into, starting at its current position
      */
-    public Vector2f[] getUVs(int start, int count, int channel)
+    public void getUVs(int start, int count, int channel, FloatBuffer buffer)
     {
         if (this.attributes == null)
             throw new IllegalStateException("This mesh doesn't have texture coordinates!");
         if (channel < 0 || (channel + 1 > this.attributeCount))
             throw new IllegalArgumentException("Invalid UV channel!");
-        MemoryInputStream stream = new MemoryInputStream(this.attributes);
-        Vector2f[] UVs = new Vector2f[count];
-        for (int i = 0; i < count; ++i)
+        int stride = this.attributeCount * 0x8;
+        for (int i = 0, offset = (start * stride) + (0x8 * channel); i < count; ++i,
+            offset += stride)
         {
-            stream.seek(start + (this.attributeCount * 0x8 * i) + (0x8 * channel),
-                SeekMode.Begin);
-            UVs[i] = stream.v2();
+            buffer.put(RMesh.getFloat(this.attributes, offset));
+            buffer.put(RMesh.getFloat(this.attributes, offset + 0x4));
         }
+    }
+
+    /**
+     * Gets the UVs in a specified range.
+     *
+     * @param start   First vertex to get UVs of
+     * @param count   Number of UVs
+     * @param channel UV channel
+     * @return UVs
+     */
+    public Vector2f[] getUVs(int start, int count, int channel)
+    {
+        float[] values = new float[count * 2];
+        this.getUVs(start, count, channel, FloatBuffer.wrap(values));
+        Vector2f[] UVs = new Vector2f[count];
+        for (int i = 0; i < count; ++i)
+            UVs[i] = new Vector2f(values[i * 2], values[(i * 2) + 1]);
         return UVs;
     }
 
@@ -1265,6 +1346,18 @@ public class RMesh implements Resource
         return this.getUVs(0, this.numVerts, channel);
     }
 
+    /**
+     * Decodes the vertex normals in a specified range into a buffer.
+     *
+     * @param start  First vertex to get normals of
+     * @param count  Number of vertices
+     * @param buffer Buffer to put 3 floats per vertex into, starting at its current position
+     */
+    public void getNormals(int start, int count, FloatBuffer buffer)
+    {
+        this.unpackSkinningNormals(start, count, 0x4, buffer);
+    }
+
     /**
      * Gets the vertex normals in a specified range.
      *
@@ -1274,13 +1367,11 @@ public class RMesh implements Resource
      */
     public Vector3f[] getNormals(int start, int count)
     {
-        MemoryInputStream stream = new MemoryInputStream(this.getSkinningStream());
+        float[] values = new float[count * 3];
+        this.getNormals(start, count, FloatBuffer.wrap(values));
         Vector3f[] normals = new Vector3f[count];
         for (int i = 0; i < count; ++i)
-        {
-            stream.seek((start * 0x10) + (i * 0x10) + 0x4, SeekMode.Begin);
-            normals[i] = Bytes.unpackNormal24(stream.u24());
-        }
+            normals[i] = new Vector3f(values[i * 3], values[(i * 3) + 1], values[(i * 3) + 2]);
         return normals;
     }
 
@@ -1318,6 +1409,23 @@ public class RMesh implements Resource
         return this.getTangents(0, this.numVerts);
     }
 
+    /**
+     * Decodes the vertex tangents in a specified range into a buffer.
+     *
+     * @param start  First vertex to get tangents of
+     * @param count  Number of vertices
+     * @param buffer Buffer to put 4 floats per vertex into, starting at its current position
+     */
+    public void getTangents(int start, int count, FloatBuffer buffer)
+    {
+        byte[] stream = this.getSkinningStream();
+        for (int i = 0, offset = (start * 0x10) + 0x8; i < count; ++i, offset += 0x10)
+        {
+            Bytes.unpackNormal24(RMesh.getU24(stream, offset), buffer);
+            buffer.put(1.0f);
+        }
+    }
+
     /**
      * Gets the vertex tangents in a specified range.
      *
@@ -1327,14 +1435,12 @@ public class RMesh implements Resource
      */
     public Vector4f[] getTangents(int start, int count)
     {
-        MemoryInputStream stream = new MemoryInputStream(this.getSkinningStream());
+        float[] values = new float[count * 4];
+        this.getTangents(start, count, FloatBuffer.wrap(values));
         Vector4f[] tangents = new Vector4f[count];
         for (int i = 0; i < count; ++i)
-        {
-            stream.seek((start * 0x10) + (i * 0x10) + 0x8, SeekMode.Begin);
-            Vector3f tangent = Bytes.unpackNormal24(stream.u24());
-            tangents[i] = new Vector4f(tangent, 1.0f);
-        }
+            tangents[i] = new Vector4f(values[i * 4], values[(i * 4) + 1],
+                values[(i * 4) + 2], values[(i * 4) + 3]);
         return tangents;
     }
 
@@ -1352,6 +1458,18 @@ public class RMesh implements Resource
         );
     }
 
+    /**
+     * Decodes the smooth vertex normals in a specified range into a buffer.
+     *
+     * @param start  First vertex to get smooth normals of
+     * @param count  Number of vertices
+     * @param buffer Buffer to put 3 floats per vertex into, starting at its current position
+     */
+    public void getSmoothNormals(int start, int count, FloatBuffer buffer)
+    {
+        this.unpackSkinningNormals(start, count, 0xC, buffer);
+    }
+
     /**
      * Gets the smooth vertex normals in a specified range.
      *
@@ -1361,13 +1479,11 @@ public class RMesh implements Resource
      */
     public Vector3f[] getSmoothNormals(int start, int count)
     {
-        MemoryInputStream stream = new MemoryInputStream(this.getSkinningStream());
+        float[] values = new float[count * 3];
+        this.getSmoothNormals(start, count, FloatBuffer.wrap(values));
         Vector3f[] normals = new Vector3f[count];
         for (int i = 0; i < count; ++i)
-        {
-            stream.seek((start * 0x10) + (i * 0x10) + 0xC, SeekMode.Begin);
-            normals[i] = Bytes.unpackNormal24(stream.u24());
-        }
+            normals[i] = new Vector3f(values[i * 3], values[(i * 3) + 1], values[(i * 3) + 2]);
         return normals;
     }
 
@@ -1395,6 +1511,25 @@ public class RMesh implements Resource
         );
     }
 
+    /**
+     * Decodes the joints that have an influence on each vertex in a range into a buffer.
+     *
+     * @param start  First vertex to get joints of
+     * @param count  Number of vertices
+     * @param buffer Buffer to put 4 joint indices per vertex into, starting at its current position
+     */
+    public void getJoints(int start, int count, ByteBuffer buffer)
+    {
+        byte[] stream = this.getSkinningStream();
+        for (int i = 0, offset = start * 0x10; i < count; ++i, offset += 0x10)
+        {
+            buffer.put(stream[offset + 0x3]);
+            buffer.put(stream[offset + 0x7]);
+            buffer.put(stream[offset + 0xB]);
+            buffer.put(stream[offset + 0xF]);
+        }
+    }
+
     /**
      * Gets the joints that have an influence on each vertex in a range.
      *
@@ -1404,16 +1539,11 @@ public class RMesh implements Resource
      */
     public byte[][] getJoints(int start, int count)
     {
-        MemoryInputStream stream = new MemoryInputStream(this.getSkinningStream());
-        stream.seek(start * 0x10);
+        byte[] buffer = new byte[count * 4];
+        this.getJoints(start, count, ByteBuffer.wrap(buffer));
         byte[][] joints = new byte[count][];
         for (int i = 0; i < count; ++i)
-        {
-            byte[] buffer = stream.bytes(0x10);
-            joints[i] = new byte[] {
-                buffer[3], buffer[7], buffer[0xB], buffer[0xF]
-            };
-        }
+            joints[i] = Arrays.copyOfRange(buffer, i * 4, (i * 4) + 4);
         return joints;
     }
 
@@ -1442,43 +1572,49 @@ public class RMesh implements Resource
     }
 
     /**
-     * Gets a number of weight influences from this skinned mesh,
+     * Decodes a number of weight influences from this skinned mesh into a buffer,
      * starting from a certain position
      *
-     * @param start First vertex to get weights of
-     * @param count Number of vertices to get weights of
-     * @return Weight influences of vertex range
+     * @param start  First vertex to get weights of
+     * @param count  Number of vertices to get weights of
+     * @param buffer Buffer to put 4 floats per vertex into, starting at its current position
      */
-    public Vector4f[] getWeights(int start, int count)
+    public void getWeights(int start, int count, FloatBuffer buffer)
     {
-        MemoryInputStream stream =
-            new MemoryInputStream(this.getSkinningStream());
-        stream.seek(start * 0x10);
-        Vector4f[] weights = new Vector4f[count];
-        for (int i = 0; i < count; ++i)
+        byte[] stream = this.getSkinningStream();
+        for (int i = 0, offset = start * 0x10; i < count; ++i, offset += 0x10)
         {
-            byte[] buffer = stream.bytes(0x10);
-            float[] rawWeights = {
-                (float) ((int) buffer[2] & 0xFF),
-                (float) ((int) buffer[1] & 0xFF),
-                (float) ((int) buffer[0] & 0xFF),
-                0
-            };
+            float x = (float) ((int) stream[offset + 2] & 0xFF);
+            float y = (float) ((int) stream[offset + 1] & 0xFF);
+            float z = (float) ((int) stream[offset] & 0xFF);
 
             // If this vertex isn't weighted against a single bone,
             // we'll need to calculate the last weight.
-            if (rawWeights[0] != 0xFF)
+            if (x != 0xFF)
             {
-                rawWeights[3] = 0xFF - rawWeights[2] - rawWeights[1] - rawWeights[0];
-                weights[i] = new Vector4f(
-                    rawWeights[0] / 0xFF,
-                    rawWeights[1] / 0xFF,
-                    rawWeights[2] / 0xFF,
-                    rawWeights[3] / 0xFF
-                );
+                float w = 0xFF - z - y - x;
+                buffer.put(x / 0xFF).put(y / 0xFF).put(z / 0xFF).put(w / 0xFF);
             }
-            else weights[i] = new Vector4f(1.0f, 0.0f, 0.0f, 0.0f);
+            else buffer.put(1.0f).put(0.0f).put(0.0f).put(0.0f);
         }
+    }
+
+    /**
+     * Gets a number of weight influences from this skinned mesh,
+     * starting from a certain position
+     *
+     * @param start First vertex to get weights of
+     * @param count Number of vertices to get weights of
+     * @return Weight influences of vertex range
+     */
+    public Vector4f[] getWeights(int start, int count)
+    {
+        float[] values = new float[count * 4];
+        this.getWeights(start, count, FloatBuffer.wrap(values));
+        Vector4f[] weights = new Vector4f[count];
+        for (int i = 0; i < count; ++i)
+            weights[i] = new Vector4f(values[i * 4], values[(i * 4) + 1],
+                values[(i * 4) + 2], values[(i * 4) + 3]);
         return weights;
     }
 
@@ -1506,6 +1642,30 @@ public class RMesh implements Resource
         return this.getWeights(0, this.numVerts);
     }
 
+    private void unpackSkinningNormals(int start, int count, int field, FloatBuffer buffer)
+    {
+        byte[] stream = this.getSkinningStream();
+        for (int i = 0, offset = (start * 0x10) + field; i < count; ++i, offset += 0x10)
+            Bytes.unpackNormal24(RMesh.getU24(stream, offset), buffer);
+    }
+
+    private static float getFloat(byte[] stream, int offset)
+    {
+        return Float.intBitsToFloat(
+            (stream[offset] & 0xFF) << 24 |
+            (stream[offset + 1] & 0xFF) << 16 |
+            (stream[offset + 2] & 0xFF) << 8 |
+            (stream[offset + 3] & 0xFF)
+        );
+    }
+
+    private static int getU24(byte[] stream, int offset)
+    {
+        return (stream[offset] & 0xFF) << 16 |
+               (stream[offset + 1] & 0xFF) << 8 |
+               (stream[offset + 2] & 0xFF);
+    }
+
     /**
      * Parses all morphs from the morph streams.
      *
@@ -1517,21 +1677,129 @@ public class RMesh implements Resource
             throw new IllegalStateException("Can't get morphs from mesh that has no morph " +
                                             "data!");
         Morph[] morphs = new Morph[this.morphCount];
+        float[] values = new float[this.numVerts * 3];
         for (int i = 0; i < this.morphCount; ++i)
         {
-            MemoryInputStream stream = new MemoryInputStream(this.streams[i + 2]);
             Vector3f[] offsets = new Vector3f[this.numVerts];
             Vector3f[] normals = new Vector3f[this.numVerts];
+            this.getMorphOffsets(i, 0, this.numVerts, FloatBuffer.wrap(values));
             for (int j = 0; j < this.numVerts; ++j)
-            {
-                offsets[j] = stream.v3();
-                normals[j] = Bytes.unpackNormal32(stream.u32(true));
-            }
+                offsets[j] = new Vector3f(values[j * 3], values[(j * 3) + 1],
+                    values[(j * 3) + 2]);
+            this.getMorphNormals(i, 0, this.numVerts, FloatBuffer.wrap(values));
+            for (int j = 0; j < this.numVerts; ++j)
+                normals[j] = new Vector3f(values[j * 3], values[(j * 3) + 1],
+                    values[(j * 3) + 2]);
             morphs[i] = new Morph(offsets, normals);
         }
         return morphs;
     }
 
+    /**
+     * Decodes the vertex offsets of a morph in a specified range into a buffer.
+     *
+     * @param morph  Index of the morph
+     * @param start  First vertex to get offsets of
+     * @param count  Number of vertices
+     * @param buffer Buffer to put 3 floats per vertex into, starting at its current position
+     */
+    public void getMorphOffsets(int morph, int start, int count, FloatBuffer buffer)
+    {
+        byte[] stream = this.getMorphStream(morph);
+        for (int i = 0, offset = start * 0x10; i < count; ++i, offset += 0x10)
+        {
+            buffer.put(RMesh.getFloat(stream, offset));
+            buffer.put(RMesh.getFloat(stream, offset + 0x4));
+            buffer.put(RMesh.getFloat(stream, offset + 0x8));
+        }
+    }
+
+    /**
+     * Decodes the vertex normals of a morph in a specified range into a buffer.
+     *
+     * @param morph  Index of the morph
+     * @param start  First vertex to get normals of
+     * @param count  Number of vertices
+     * @param buffer Buffer to put 3 floats per vertex into, starting at its current position
+     */
+    public void getMorphNormals(int morph, int start, int count, FloatBuffer buffer)
+    {
+        byte[] stream = this.getMorphStream(morph);
+        for (int i = 0, offset = (start * 0x10) + 0xC; i < count; ++i, offset += 0x10)
+            Bytes.unpackNormal32(((long) RMesh.getU24(stream, offset) << 8) |
+                                 (stream[offset + 3] & 0xFF), buffer);
+    }
+
+    /**
+     * Gets a morph as only the vertices it affects, a vertex is affected
+     * if the morph moves it or noticeably changes its normal.
+     * The morph is decoded the first time it's requested, and cached after that,
+     * so later changes to the morph streams aren't reflected.
+     *
+     * @param morph Index of the morph
+     * @return Sparse morph
+     */
+    public SparseMorph getSparseMorph(int morph)
+    {
+        byte[] stream = this.getMorphStream(morph);
+        SparseMorph[] morphs = this.sparseMorphs;
+        if (morphs == null || morphs.length != this.morphCount)
+            this.sparseMorphs = morphs = new SparseMorph[this.morphCount];
+        SparseMorph sparse = morphs[morph];
+        if (sparse != null) return sparse;
+
+        int[] indices = new int[this.numVerts];
+        float[] offsets = new float[this.numVerts * 3];
+        float[] normals = new float[this.numVerts * 3];
+        float[] baseNormals = new float[this.numVerts * 3];
+        this.getNormals(0, this.numVerts, FloatBuffer.wrap(baseNormals));
+        FloatBuffer normal = FloatBuffer.allocate(3);
+
+        int count = 0;
+        for (int i = 0, offset = 0; i < this.numVerts; ++i, offset += 0x10)
+        {
+            float x = RMesh.getFloat(stream, offset);
+            float y = RMesh.getFloat(stream, offset + 0x4);
+            float z = RMesh.getFloat(stream, offset + 0x8);
+
+            normal.clear();
+            Bytes.unpackNormal32(((long) RMesh.getU24(stream, offset + 0xC) << 8) |
+                                 (stream[offset + 0xF] & 0xFF), normal);
+            float nx = normal.get(0), ny = normal.get(1), nz = normal.get(2);
+
+            if (x == 0.0f && y == 0.0f && z == 0.0f)
+            {
+                float bx = baseNormals[i * 3], by = baseNormals[(i * 3) + 1],
+                    bz = baseNormals[(i * 3) + 2];
+                float dot = (nx * bx) + (ny * by) + (nz * bz);
+                float length = (float) Math.sqrt(((nx * nx) + (ny * ny) + (nz * nz)) *
+                                                 ((bx * bx) + (by * by) + (bz * bz)));
+                if (dot >= length * SPARSE_MORPH_NORMAL_COS) continue;
+            }
+
+            indices[count] = i;
+            offsets[count * 3] = x;
+            offsets[(count * 3) + 1] = y;
+            offsets[(count * 3) + 2] = z;
+            normals[count * 3] = nx;
+            normals[(count * 3) + 1] = ny;
+            normals[(count * 3) + 2] = nz;
+            count++;
+        }
+
+        sparse = new SparseMorph(Arrays.copyOf(indices, count),
+            Arrays.copyOf(offsets, count * 3), Arrays.copyOf(normals, count * 3));
+        morphs[morph] = sparse;
+        return sparse;
+    }
+
+    private byte[] getMorphStream(int morph)
+    {
+        if (morph < 0 || morph >= this.morphCount)
+            throw new IllegalArgumentException("Invalid morph index!");
+        return this.streams[STREAM_MORPHS0 + morph];
+    }
+
     /**
      * Calculates a triangle list from a given range in the index buffer.
      *
@@ -1717,49 +1985,47 @@ public class RMesh implements Resource
      */
     public void calculateBoundBoxes(boolean setOBB)
     {
-        Vector3f[] vertices = this.getVertices();
-        Vector4f[] weights = this.getWeights();
-        byte[][] joints = this.getJoints();
+        float[] vertices = new float[this.numVerts * 3];
+        float[] weights = new float[this.numVerts * 4];
+        byte[] joints = new byte[this.numVerts * 4];
+        this.getVertices(0, this.numVerts, FloatBuffer.wrap(vertices));
+        this.getWeights(0, this.numVerts, FloatBuffer.wrap(weights));
+        this.getJoints(0, this.numVerts, ByteBuffer.wrap(joints));
 
-        HashMap<Bone, Vector3f> minVert = new HashMap<>();
-        HashMap<Bone, Vector3f> maxVert = new HashMap<>();
-
-        for (Bone bone : this.bones)
+        // Min and max of the vertices influenced by each bone, 6 floats per bone.
+        float[] bounds = new float[this.bones.length * 6];
+        for (int i = 0; i < bounds.length; i += 6)
         {
-            minVert.put(bone, new Vector3f(Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
-                Float.POSITIVE_INFINITY));
-            maxVert.put(bone, new Vector3f(Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY,
-                Float.NEGATIVE_INFINITY));
+            Arrays.fill(bounds, i, i + 3, Float.POSITIVE_INFINITY);
+            Arrays.fill(bounds, i + 3, i + 6, Float.NEGATIVE_INFINITY);
         }
 
-        for (int i = 0; i < vertices.length; ++i)
+        for (int i = 0; i < this.numVerts; ++i)
         {
-            Vector3f v = vertices[i];
-            Vector4f weightCache = weights[i];
-            byte[] jointCache = joints[i];
-
+            float x = vertices[i * 3], y = vertices[(i * 3) + 1], z = vertices[(i * 3) + 2];
             for (int j = 0; j < 4; ++j)
             {
-                if (weightCache.get(j) == 0.0f) continue;
-                Vector3f max = maxVert.get(this.bones[jointCache[j]]);
-                Vector3f min = minVert.get(this.bones[jointCache[j]]);
-
+                if (weights[(i * 4) + j] == 0.0f) continue;
+                int bone = (joints[(i * 4) + j] & 0xFF) * 6;
 
-                if (v.x > max.x) max.x = v.x;
-                if (v.y > max.y) max.y = v.y;
-                if (v.z > max.z) max.z = v.z;
+                if (x > bounds[bone + 3]) bounds[bone + 3] = x;
+                if (y > bounds[bone + 4]) bounds[bone + 4] = y;
+                if (z > bounds[bone + 5]) bounds[bone + 5] = z;
 
-                if (v.x < min.x) min.x = v.x;
-                if (v.y < min.y) min.y = v.y;
-                if (v.z < min.z) min.z = v.z;
+                if (x < bounds[bone]) bounds[bone] = x;
+                if (y < bounds[bone + 1]) bounds[bone + 1] = y;
+                if (z < bounds[bone + 2]) bounds[bone + 2] = z;
             }
         }
 
         int index = 0;
         for (Bone bone : this.bones)
         {
-            Vector4f max = new Vector4f(maxVert.get(bone), 1.0f);
-            Vector4f min = new Vector4f(minVert.get(bone), 1.0f);
+            int offset = index * 6;
+            Vector4f max = new Vector4f(bounds[offset + 3], bounds[offset + 4],
+                bounds[offset + 5], 1.0f);
+            Vector4f min = new Vector4f(bounds[offset], bounds[offset + 1],
+                bounds[offset + 2], 1.0f);
 
             if (min.x == Float.POSITIVE_INFINITY) min = new Vector4f(0.0f, 0.0f, 0.0f, 1.0f);
             else min.mul(bone.invSkinPoseMatrix);
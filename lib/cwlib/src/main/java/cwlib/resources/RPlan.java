@@ -44,6 +44,30 @@ public class RPlan implements Resource
      */
     public byte compressionFlags = CompressionFlags.USE_ALL_COMPRESSION;
 
+    /**
+     * Initial size of the buffer used to serialize thing data,
+     * it's doubled until the Things fit.
+     */
+    private static final int THING_BUFFER_SIZE = 0x10000;
+
+    /**
+     * Things decoded from the thing data, or the Things passed to setThings
+     * that haven't been written to the thing data yet.
+     */
+    private transient Thing[] things;
+
+    /**
+     * Thing data buffer the cached Things were decoded from,
+     * used to notice when the thing data gets replaced.
+     */
+    private transient byte[] thingsSource;
+
+    /**
+     * Whether the cached Things were set with setThings and
+     * haven't been written to the thing data yet.
+     */
+    private transient boolean dirty;
+
     public RPlan() { }
 
     public RPlan(Revision revision, byte compressionFlags, Thing thing, PMetadata metadata)
@@ -100,6 +124,9 @@ public class RPlan implements Resource
             this.revision = revision;
         }
 
+        if (serializer.isWriting())
+            this.flush();
+
         if (revision.getSubVersion() >= Revisions.STREAMING_PLAN)
             isUsedForStreaming = serializer.bool(isUsedForStreaming);
 
@@ -160,6 +187,7 @@ public class RPlan implements Resource
     @Override
     public SerializationData build(Revision revision, byte compressionFlags)
     {
+        this.flush();
         Serializer serializer = new Serializer(this.getAllocatedSize() + 0x8000, revision,
             compressionFlags);
         serializer.struct(this, RPlan.class);
@@ -175,12 +203,43 @@ public class RPlan implements Resource
         );
     }
 
+    /**
+     * Parses the thing data buffer, every call returns a new
+     * set of Things that the caller is free to modify.
+     *
+     * @return Things
+     */
+    public synchronized Thing[] getThings()
+    {
+        this.flush();
+        return this.parse();
+    }
+
+    /**
+     * Gets the Things in this plan for read-only access, the thing data buffer
+     * is only parsed the first time. The returned Things are shared with every
+     * other caller and must not be modified, use getThings for editing.
+     *
+     * @return Things
+     */
+    public synchronized Thing[] getSharedThings()
+    {
+        if (this.things != null && this.thingsSource == this.thingData)
+            return this.things;
+
+        this.things = this.parse();
+        this.thingsSource = this.thingData;
+        this.dirty = false;
+
+        return this.things;
+    }
+
     /**
      * Parses the thing data buffer.
      *
      * @return Things
      */
-    public Thing[] getThings()
+    private Thing[] parse()
     {
         Serializer serializer = new Serializer(this.thingData, this.revision,
             this.compressionFlags);
@@ -210,45 +269,104 @@ public class RPlan implements Resource
         return things;
     }
 
+    /**
+     * Checks whether Things have been set on this plan
+     * since the thing data was last written.
+     *
+     * @return Whether the thing data will be regenerated on build
+     */
+    public synchronized boolean isDirty()
+    {
+        return this.dirty && this.things != null && this.thingsSource == this.thingData;
+    }
+
     /**
      * Sets the ThingData buffer from an array of things,
      * serializer uses RPlan's current revision and compressionFlags.
+     * <p>
+     * Serialization is deferred until the plan is built, so the plan takes
+     * over the array, and the Things shouldn't be modified afterwards
+     * unless they're set again.
      *
      * @param things Thing array to set
      */
-    public void setThings(Thing[] things)
-    {
-        // {
-        //     // This is terribly inefficient, but whatever
-        //     Serializer serializer = new Serializer(0x800000, this.revision, this
-        //     .compressionFlags);
-        //     serializer.array(things, Thing.class, true);
-        //     things = serializer.getThings();
-        // }
-
-        Serializer serializer = new Serializer(0x800000, this.revision, this.compressionFlags);
-        serializer.array(things, Thing.class, true);
-        this.thingData = serializer.getBuffer();
+    public synchronized void setThings(Thing[] things)
+    {
+        if (things == null)
+        {
+            this.setThingData(this.write(null, true));
+            return;
+        }
 
-        ResourceDescriptor[] dependencies = serializer.getDependencies();
-        this.dependencyCache.clear();
-        Collections.addAll(this.dependencyCache, dependencies);
+        this.things = things;
+        this.thingsSource = this.thingData;
+        this.dirty = true;
     }
 
-    public void setThing(Thing thing)
+    public synchronized void setThing(Thing thing)
     {
-        // This is terribly inefficient, but whatever
-        Serializer serializer = new Serializer(0x800000, this.revision, this.compressionFlags);
-        serializer.reference(thing, Thing.class);
-        Thing[] things = serializer.getThings();
+        // Collect every Thing reachable from the root, then write them as the thing array.
+        Serializer serializer = this.write(new Thing[] { thing }, false);
+        this.setThingData(this.write(serializer.getThings(), true));
+    }
 
-        serializer = new Serializer(0x800000, this.revision, this.compressionFlags);
-        serializer.array(things, Thing.class, true);
+    /**
+     * Writes the cached Things back to the thing data if they may have changed.
+     */
+    private synchronized void flush()
+    {
+        // If the thing data was replaced directly, it takes priority over the cache.
+        if (!this.dirty || this.things == null || this.thingsSource != this.thingData) return;
+
+        // Setting the thing data drops the cache, but these Things are
+        // exactly what was just written, so they can be kept.
+        Thing[] things = this.things;
+        this.setThingData(this.write(things, true));
+        this.things = things;
+        this.thingsSource = this.thingData;
+    }
 
+    private void setThingData(Serializer serializer)
+    {
         this.thingData = serializer.getBuffer();
+        this.things = null;
+        this.thingsSource = null;
+        this.dirty = false;
 
         ResourceDescriptor[] dependencies = serializer.getDependencies();
         this.dependencyCache.clear();
         Collections.addAll(this.dependencyCache, dependencies);
     }
+
+    /**
+     * Serializes Things with this plan's revision and compression flags,
+     * growing the buffer until they fit.
+     *
+     * @param things  Things to serialize
+     * @param asArray Whether to write the Things as the thing array, or only
+     *                serialize the first Thing by reference
+     * @return Serializer containing the written Things
+     */
+    private Serializer write(Thing[] things, boolean asArray)
+    {
+        int size = THING_BUFFER_SIZE;
+        if (this.thingData != null)
+            size = Math.max(size, Integer.highestOneBit(this.thingData.length) << 1);
+
+        while (true)
+        {
+            Serializer serializer = new Serializer(size, this.revision, this.compressionFlags);
+            try
+            {
+                if (asArray) serializer.array(things, Thing.class, true);
+                else serializer.reference(things[0], Thing.class);
+                return serializer;
+            }
+            catch (IndexOutOfBoundsException ex)
+            {
+                if (size >= (1 << 30)) throw ex;
+                size <<= 1;
+            }
+        }
+    }
 }
@@ -58,12 +58,14 @@ public class RStaticMesh
         this.uv1 = new Vector2f[vertexCount];
 
         MemoryInputStream vertexStream = new MemoryInputStream(vertexBuffer);
+        Vector3f tangent = new Vector3f();
         for (int i = 0; i < vertexCount; ++i)
         {
             this.vertices[i] = vertexStream.v3();
             this.normals[i] = Bytes.unpackNormal32(vertexStream.u32());
             this.uv0[i] = new Vector2f(vertexStream.f16(), vertexStream.f16());
-            this.tangents[i] = new Vector4f(Bytes.unpackNormal32(vertexStream.u32()), 1.0f);
+            this.tangents[i] = new Vector4f(Bytes.unpackNormal32(vertexStream.u32(), tangent),
+                1.0f);
             this.uv1[i] = new Vector2f(vertexStream.f16(), vertexStream.f16());
             this.smoothNormals[i] = Bytes.unpackNormal32(vertexStream.u32());
         }
@@ -1,7 +1,9 @@
 package cwlib.resources;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -15,13 +17,13 @@ import cwlib.io.streams.MemoryOutputStream;
 import cwlib.util.Bytes;
 import cwlib.util.FileIO;
 import cwlib.util.GsonUtils;
+import cwlib.util.LongMap;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.file.Path;
-import java.util.ArrayList;
 
 /**
  * Resource that holds all translations
@@ -66,7 +68,7 @@ public class RTranslationTable
     /**
      * LAMS -> Text pairs
      */
-    private HashMap<Long, String> lookup = new HashMap<>();
+    private LongMap<String> lookup = new LongMap<>();
 
     public RTranslationTable() { }
 
@@ -108,7 +110,7 @@ public class RTranslationTable
         int count = stream.i32();
 
         int tableOffset = 0x4 + (count * 0x8);
-        this.lookup = new HashMap<>(count);
+        this.lookup = new LongMap<>(count);
         for (int i = 0; i < count; ++i)
         {
             long key = stream.u32();
@@ -165,9 +167,7 @@ public class RTranslationTable
      */
     public String translate(long key)
     {
-        if (this.lookup.containsKey(key))
-            return this.lookup.get(key);
-        return null;
+        return this.lookup.get(key);
     }
 
     /**
@@ -199,8 +199,10 @@ public class RTranslationTable
      */
     public void export(String path)
     {
+        LinkedHashMap<Long, String> pairs = new LinkedHashMap<>(this.lookup.size());
+        this.lookup.forEach(pairs::put);
         Gson gson = new GsonBuilder().setPrettyPrinting().create();
-        FileIO.write(gson.toJson(this.lookup).getBytes(StandardCharsets.UTF_8), path);
+        FileIO.write(gson.toJson(pairs).getBytes(StandardCharsets.UTF_8), path);
     }
 
     /**
@@ -218,11 +220,11 @@ public class RTranslationTable
 
     public void patch(RTranslationTable patch)
     {
-        for (long key : patch.lookup.keySet())
+        patch.lookup.forEach((key, value) ->
         {
-            if (lookup.containsKey(key)) continue;
-            lookup.put(key, patch.lookup.get(key));
-        }
+            if (lookup.containsKey(key)) return;
+            lookup.put(key, value);
+        });
     }
 
     /**
@@ -232,19 +234,19 @@ public class RTranslationTable
      */
     public byte[] build()
     {
-        int stringTableSize = this.lookup.values()
-                                  .stream()
-                                  .mapToInt(element -> (element.getBytes(StandardCharsets.UTF_16BE).length + 1) * 2)
-                                  .reduce(0, (total, element) -> total + element) - 2;
+        int stringTableSize = -2;
+        for (String element : this.lookup)
+            stringTableSize += (element.getBytes(StandardCharsets.UTF_16BE).length + 1) * 2;
 
         HashMap<String, Integer> offsets = new HashMap<>();
         MemoryOutputStream stringTable = new MemoryOutputStream(stringTableSize);
         MemoryOutputStream keyTable = new MemoryOutputStream((this.lookup.size() * 8) + 4);
         keyTable.i32(this.lookup.size());
 
-        ArrayList<Long> keys = new ArrayList<>(this.lookup.keySet());
-        keys.sort((a, z) -> Long.compareUnsigned(a, z));
-        for (Long key : keys)
+        // Keys are all u32, so a signed sort is the same as an unsigned one.
+        long[] keys = this.lookup.keys();
+        Arrays.sort(keys);
+        for (long key : keys)
         {
             String value = this.lookup.get(key);
             keyTable.u32(key);
@@ -0,0 +1,82 @@
+package cwlib.structs.mesh;
+
+/**
+ * Mesh deformation that only stores the vertices it affects.
+ */
+public class SparseMorph
+{
+    /**
+     * Indices of the affected vertices, in ascending order.
+     */
+    private final int[] indices;
+
+    /**
+     * Relative offset of each affected vertex, 3 floats per vertex.
+     */
+    private final float[] offsets;
+
+    /**
+     * New normal of each affected vertex, 3 floats per vertex.
+     */
+    private final float[] normals;
+
+    /**
+     * Creates a sparse morph from the data of its affected vertices.
+     *
+     * @param indices Indices of the affected vertices, in ascending order
+     * @param offsets Relative offsets of the affected vertices
+     * @param normals New normals of the affected vertices
+     */
+    public SparseMorph(int[] indices, float[] offsets, float[] normals)
+    {
+        if (offsets.length != indices.length * 3 || normals.length != indices.length * 3)
+            throw new IllegalArgumentException("Morph data must have 3 floats per vertex!");
+        this.indices = indices;
+        this.offsets = offsets;
+        this.normals = normals;
+    }
+
+    /**
+     * Gets the number of vertices affected by this morph.
+     *
+     * @return Number of affected vertices
+     */
+    public int getCount()
+    {
+        return this.indices.length;
+    }
+
+    /**
+     * Finds the first affected vertex at or after a vertex index.
+     *
+     * @param vertex Vertex index to search from
+     * @return Position of the first affected vertex with an index of at least
+     * the given one, or the affected vertex count if there is none
+     */
+    public int find(int vertex)
+    {
+        int low = 0, high = this.indices.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (this.indices[mid] < vertex) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    public int[] getIndices()
+    {
+        return this.indices;
+    }
+
+    public float[] getOffsets()
+    {
+        return this.offsets;
+    }
+
+    public float[] getNormals()
+    {
+        return this.normals;
+    }
+}
@@ -47,7 +47,17 @@ public class Thing implements Serializable
     public short flags;
     public byte extraFlags;
 
-    private final Serializable[] parts = new Serializable[0x3f];
+    /**
+     * Bitmask of the part indices present on this Thing.
+     */
+    private long partMask;
+
+    /**
+     * Parts present on this Thing, densely packed in order of part index.
+     */
+    private Serializable[] parts = EMPTY_PARTS;
+
+    private static final Serializable[] EMPTY_PARTS = new Serializable[0];
 
     public Thing() { }
 
@@ -155,31 +165,27 @@ public class Thing implements Serializable
             serializer.log("GENERATING FLAGS");
             Part lastPart = null;
             if (isCompressed) flags = 0;
-            for (Part part : Part.values())
+            for (long mask = this.partMask; mask != 0; mask &= (mask - 1))
             {
-                int index = part.getIndex();
+                int index = Long.numberOfTrailingZeros(mask);
+                Part part = Part.fromIndex(index);
+                if (part == null) continue;
                 if (version >= 0x13c && (index >= 0x36 && index <= 0x3c)) continue;
                 if (version >= 0x18c && index == 0x3d) continue;
                 if (subVersion >= 0x107 && index == 0x3e) continue;
                 else if (index == 0x3e)
-                {
-                    if (parts[index] != null)
-                    {
-                        flags |= (1L << 0x29);
-                        lastPart = part;
-                    }
-                    continue;
-                }
-
-                if (parts[index] != null)
+                    flags |= (1L << 0x29);
+                else
                 {
                     // Offset due to PCreatorAnim
                     if (subVersion < 0x107 && index > 0x28) index++;
-
                     flags |= (1L << index);
+                }
 
+                // Part history follows the order parts were added to the game,
+                // so the last part is whichever has the highest version.
+                if (lastPart == null || part.getVersion() > lastPart.getVersion())
                     lastPart = part;
-                }
             }
             partsRevision = (lastPart == null) ? 0 : lastPart.getVersion();
         }
@@ -206,7 +212,7 @@ public class Thing implements Serializable
         for (Part part : partsToSerialize)
         {
             serializer.log(part.name() + " [START]");
-            if (!part.serialize(this.parts, partsRevision, flags, serializer))
+            if (!part.serialize(this, partsRevision, flags, serializer))
             {
                 serializer.log(part.name() + " FAILED");
                 throw new SerializationException(part.name() + " failed to serialize!");
@@ -339,17 +345,77 @@ public class Thing implements Serializable
     @SuppressWarnings("unchecked")
     public <T extends Serializable> T getPart(Part part)
     {
-        return (T) this.parts[part.getIndex()];
+        int index = part.getIndex();
+        if ((this.partMask & (1L << index)) == 0) return null;
+        return (T) this.parts[this.getSlot(index)];
     }
 
     public <T extends Serializable> void setPart(Part part, T value)
     {
-        this.parts[part.getIndex()] = value;
+        int index = part.getIndex();
+        long bit = 1L << index;
+        int slot = this.getSlot(index);
+
+        if ((this.partMask & bit) != 0)
+        {
+            if (value != null)
+            {
+                this.parts[slot] = value;
+                return;
+            }
+
+            Serializable[] parts = new Serializable[this.parts.length - 1];
+            System.arraycopy(this.parts, 0, parts, 0, slot);
+            System.arraycopy(this.parts, slot + 1, parts, slot, parts.length - slot);
+            this.parts = (parts.length == 0) ? EMPTY_PARTS : parts;
+            this.partMask &= ~bit;
+            return;
+        }
+
+        if (value == null) return;
+
+        Serializable[] parts = new Serializable[this.parts.length + 1];
+        System.arraycopy(this.parts, 0, parts, 0, slot);
+        System.arraycopy(this.parts, slot, parts, slot + 1, this.parts.length - slot);
+        parts[slot] = value;
+        this.parts = parts;
+        this.partMask |= bit;
     }
 
     public boolean hasPart(Part part)
     {
-        return this.parts[part.getIndex()] != null;
+        return (this.partMask & (1L << part.getIndex())) != 0;
+    }
+
+    /**
+     * Gets the bitmask of part indices present on this Thing.
+     *
+     * @return Part presence mask, bit N is set if the part with index N exists
+     */
+    public long getPartMask()
+    {
+        return this.partMask;
+    }
+
+    /**
+     * Gets the number of parts present on this Thing.
+     *
+     * @return Part count
+     */
+    public int getPartCount()
+    {
+        return this.parts.length;
+    }
+
+    /**
+     * Gets the position of a part in the dense part array.
+     *
+     * @param index Part index
+     * @return Slot in the dense part array
+     */
+    private int getSlot(int index)
+    {
+        return Long.bitCount(this.partMask & ((1L << index) - 1));
     }
 
     @Override
@@ -143,6 +143,22 @@ public abstract class Fart implements Iterable<Fat>
         return sha1;
     }
 
+    /**
+     * Adds a buffer that's already been hashed to the archive.
+     *
+     * @param sha1 SHA1 hash of data, must match the data
+     * @param data Data to add
+     */
+    public void add(SHA1 sha1, byte[] data)
+    {
+        if (sha1 == null)
+            throw new NullPointerException("Can't add buffer with null hash to archive!");
+        if (data == null)
+            throw new NullPointerException("Can't add null buffer to archive!");
+        if (this.exists(sha1)) return;
+        this.queue.put(sha1, data);
+    }
+
     /**
      * Adds the contents of another archive to this one.
      *
@@ -5,19 +5,33 @@ import cwlib.enums.ResourceType;
 import cwlib.enums.SerializationType;
 import cwlib.ex.SerializationException;
 import cwlib.io.streams.MemoryInputStream;
-import cwlib.io.streams.MemoryInputStream.SeekMode;
 import cwlib.io.streams.MemoryOutputStream;
+import cwlib.singleton.ResourceSystem;
 import cwlib.types.data.Revision;
 import cwlib.types.data.SHA1;
 import cwlib.util.Bytes;
 import cwlib.util.Crypto;
 import cwlib.util.FileIO;
 
+import javax.crypto.Mac;
+
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * The archive used for save files
@@ -82,9 +96,28 @@ public class SaveArchive extends Fart
     private int[] fragmentIDs = new int[0];
 
     /**
-     * Storage of all resources in-memory.
+     * Other fragments of a split archive whose entries are indexed
+     * by this archive, resources stay in the fragment they were read from
+     * until this archive is saved, which writes every reachable one into it.
+     */
+    private final ArrayList<SaveArchive> fragments = new ArrayList<>();
+
+    /**
+     * Backing data of the archive, either the archive buffer itself or
+     * a read-only mapping of the file, resources are sliced out on demand.
+     */
+    private ByteBuffer data;
+
+    /**
+     * Size of the staging buffer used when streaming a build to a channel.
+     */
+    private static final int STREAM_BUFFER_SIZE = 0x10000;
+
+    /**
+     * Minimum number of resources in a frontier before their
+     * dependency tables get parsed in parallel.
      */
-    private HashMap<Fat, byte[]> buffers = new HashMap<>();
+    private static final int PARALLEL_FRONTIER_SIZE = 0x40;
 
     /**
      * Creates empty save archive.
@@ -107,31 +140,69 @@ public class SaveArchive extends Fart
 
     public SaveArchive(byte[] data)
     {
-        this(data, null);
+        this(ByteBuffer.wrap(data), null);
     }
 
     public SaveArchive(File file)
     {
-        this(FileIO.read(file.getAbsolutePath()), file);
+        this(file, false);
     }
 
-
-    private SaveArchive(byte[] data, File file)
+    /**
+     * Reads a save archive from a file.
+     * <p>
+     * Mapped archives only parse the save key and FAT up front, and resources
+     * are read from the mapping as they're extracted. The mapping is released
+     * once the archive is rebuilt, but the file stays open until it's collected,
+     * so on Windows mapped archives should be saved to a different file.
+     *
+     * @param file   Save archive file
+     * @param mapped Whether to map the file instead of reading it into memory
+     */
+    public SaveArchive(File file, boolean mapped)
     {
-        super(file, ArchiveType.SAVE);
+        this(SaveArchive.read(file, mapped), file);
+    }
 
-        if (file != null && !file.exists())
+    private static ByteBuffer read(File file, boolean mapped)
+    {
+        if (file == null)
+            throw new NullPointerException("Save archive file cannot be null!");
+        if (!file.exists())
             throw new SerializationException("Save archive specified doesn't exist!");
 
-        MemoryInputStream stream = new MemoryInputStream(data);
-        if (stream.getLength() < 0x8)
+        if (!mapped)
+        {
+            byte[] data = FileIO.read(file.getAbsolutePath());
+            if (data == null)
+                throw new SerializationException("An I/O error occurred while reading the " +
+                                                 "save archive.");
+            return ByteBuffer.wrap(data);
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        catch (IOException ex)
+        {
+            throw new SerializationException("An I/O error occurred while mapping the save " +
+                                             "archive.");
+        }
+    }
+
+    private SaveArchive(ByteBuffer data, File file)
+    {
+        super(file, ArchiveType.SAVE);
+
+        int length = data.capacity();
+        if (length < 0x8)
             throw new SerializationException("Invalid SaveArchive, size is less than " +
                                              "minimum of 8" +
                                              " bytes!");
 
-        stream.seek(0x8, SeekMode.End);
-        int entryCount = stream.i32();
-        int magic = stream.i32();
+        int entryCount = data.getInt(length - 0x8);
+        int magic = data.getInt(length - 0x4);
 
         if ((magic >> 8) != 0x464152)
             throw new SerializationException("Invalid SaveArchive, magic does not match!");
@@ -151,27 +222,18 @@ public class SaveArchive extends Fart
             // Only the Vita uses FAR revision 5, so it's always little endian as a result.
             this.isLittleEndian = true;
 
-            // Temporarily set stream to little endian,
-            // so we can read the value.
-            stream.setLittleEndian(true);
-
-            stream.seek(0xC, SeekMode.End);
-            fragments = stream.i32();
-
-            stream.setLittleEndian(false);
+            fragments = Integer.reverseBytes(data.getInt(length - 0xC));
         }
 
         // FAR3 added HASHINATE
         if (this.archiveRevision > 2)
         {
-            if (this.archiveRevision == 5)
-                stream.seek(0x20, SeekMode.End);
-            else
-                stream.seek(0x1c, SeekMode.End);
-            this.hashinate = stream.sha1();
+            byte[] hash = new byte[0x14];
+            data.get(length - ((this.archiveRevision == 5) ? 0x20 : 0x1c), hash);
+            this.hashinate = new SHA1(hash);
         }
 
-        this.fatOffset = stream.getLength() - 0x8 - (entryCount * 0x1cL);
+        this.fatOffset = length - 0x8 - (entryCount * 0x1cL);
         if (this.archiveRevision > 2) this.fatOffset -= 0x14;
         if (this.archiveRevision == 5) this.fatOffset -= 4;
 
@@ -181,13 +243,20 @@ public class SaveArchive extends Fart
             saveKeySize += 0x4;
         if (this.archiveRevision == 5)
             saveKeySize += (0x8 + (0x4 * fragments));
-        int saveKeyOffset = (int) (this.fatOffset - saveKeySize);
+        long saveKeyOffset = this.fatOffset - saveKeySize;
+        if (entryCount < 0 || fragments < 0 || saveKeyOffset < 0)
+            throw new SerializationException("Invalid SaveArchive, FAT doesn't fit in " +
+                                             "archive!");
 
-        stream.seek(saveKeyOffset, SeekMode.Begin);
+        // Only the save key and FAT are parsed up front, everything
+        // after them is small enough to just copy out.
+        byte[] table = new byte[(int) (length - saveKeyOffset)];
+        data.get((int) saveKeyOffset, table);
+        MemoryInputStream stream = new MemoryInputStream(table);
 
         // Local User ID's on PS4 use a hash rather than an incremental index
         // So this byte will always be set in some way on PS4.
-        if (this.archiveRevision != 5 && stream.getBuffer()[saveKeyOffset + 0x8] != 0)
+        if (this.archiveRevision != 5 && table[0x8] != 0)
             this.isLittleEndian = true;
 
         if (this.isLittleEndian) stream.setLittleEndian(true);
@@ -229,14 +298,8 @@ public class SaveArchive extends Fart
             this.lookup.put(fat.getSHA1(), fat);
         }
 
-        // Store all the resources in-memory, saves
-        // are small enough that this will rarely be an issue.
-        this.buffers = new HashMap<>(entryCount);
-        for (Fat fat : this.entries)
-        {
-            stream.seek((int) fat.getOffset(), SeekMode.Begin);
-            this.buffers.put(fat, stream.bytes(fat.getSize()));
-        }
+        // Resources stay in the backing data until they're extracted.
+        this.data = data;
     }
 
     public SaveArchive(String path)
@@ -246,12 +309,171 @@ public class SaveArchive extends Fart
 
     @Override
     public byte[] extract(Fat fat)
+    {
+        SaveArchive owner = this.getOwner(fat);
+        if (owner != this) return owner.extract(fat);
+        byte[] buffer = new byte[fat.getSize()];
+        this.data.get((int) fat.getOffset(), buffer);
+        return buffer;
+    }
+
+    /**
+     * Gets the archive that stores the data of an entry, either
+     * this archive or one of its linked fragments.
+     *
+     * @param fat FAT row to find
+     * @return Archive containing the entry
+     */
+    private SaveArchive getOwner(Fat fat)
     {
         if (fat == null)
             throw new NullPointerException("Can't search for null entry in archive!");
-        if (fat.getFileArchive() != this)
-            throw new IllegalArgumentException("This entry does not belong to this archive!");
-        return this.buffers.get(fat);
+        if (fat.getFileArchive() == this) return this;
+        for (SaveArchive fragment : this.fragments)
+            if (fat.getFileArchive() == fragment)
+                return fragment;
+        throw new IllegalArgumentException("This entry does not belong to this archive!");
+    }
+
+    /**
+     * Links another fragment of a split archive to this one, so its entries
+     * can be accessed through this archive without copying them.
+     *
+     * @param fragment Fragment to link
+     */
+    public void link(SaveArchive fragment)
+    {
+        if (fragment == null)
+            throw new NullPointerException("Fragment cannot be null!");
+        if (fragment == this || this.fragments.contains(fragment)) return;
+        this.fragments.add(fragment);
+        this.index(fragment);
+    }
+
+    /**
+     * Adds the entries of a linked fragment that aren't already in this archive.
+     *
+     * @param fragment Fragment to index
+     */
+    private void index(SaveArchive fragment)
+    {
+        ArrayList<Fat> entries = new ArrayList<>(this.entries.length + fragment.entries.length);
+        entries.addAll(Arrays.asList(this.entries));
+        for (Fat fat : fragment.entries)
+        {
+            if (fat.getFileArchive() != fragment || this.lookup.containsKey(fat.getSHA1()))
+                continue;
+            this.lookup.put(fat.getSHA1(), fat);
+            entries.add(fat);
+        }
+        this.entries = entries.toArray(Fat[]::new);
+    }
+
+    /**
+     * Gets the fragments linked to this archive.
+     *
+     * @return Linked fragments
+     */
+    public List<SaveArchive> getFragments()
+    {
+        return Collections.unmodifiableList(this.fragments);
+    }
+
+    /**
+     * Loads the fragments of a split archive concurrently, and links them to
+     * the fragment that holds the root resource, FAR5 saves are split this way.
+     *
+     * @param files    Fragment files
+     * @param rootType Type of root resource
+     * @return Fragment holding the root resource with the others linked, or null if
+     * no fragment has a root resource of the given type
+     */
+    public static SaveArchive loadFragments(File[] files, ResourceType rootType)
+    {
+        SaveArchive[] fragments = Arrays.stream(files)
+            .parallel()
+            .map(file ->
+            {
+                try { return new SaveArchive(file); }
+                catch (SerializationException ex)
+                {
+                    throw new SerializationException(file.getName() + ": " + ex.getMessage());
+                }
+            })
+            .toArray(SaveArchive[]::new);
+
+        // Not entirely sure how Vita decides which profile gets the root resource,
+        // so we'll just go based on biggest ID that actually has a root resource.
+        SaveArchive master = null;
+        HashSet<Integer> IDs = new HashSet<>(fragments.length);
+        for (SaveArchive fragment : fragments)
+        {
+            IDs.add(fragment.getID());
+            if (fragment.getKey().getRootType() != rootType) continue;
+            if (master == null || fragment.getID() > master.getID())
+                master = fragment;
+        }
+        if (master == null) return null;
+
+        for (int ID : master.getFragmentIDs())
+        {
+            if (!IDs.contains(ID))
+                ResourceSystem.println("SaveArchive", String.format("Fragment %d is " +
+                                                                    "missing from %s!", ID,
+                    master.getFile().getName()));
+        }
+
+        for (SaveArchive fragment : fragments)
+            master.link(fragment);
+
+        return master;
+    }
+
+    /**
+     * Gets the size of a resource without extracting it.
+     *
+     * @param sha1 Hash of resource
+     * @return Size of resource, or -1 if it doesn't exist
+     */
+    public int getSize(SHA1 sha1)
+    {
+        if (sha1 == null)
+            throw new NullPointerException("Can't search for null hash in archive!");
+        byte[] queued = this.queue.get(sha1);
+        if (queued != null) return queued.length;
+        Fat fat = this.lookup.get(sha1);
+        return (fat == null) ? -1 : fat.getSize();
+    }
+
+    /**
+     * Reads the start of a resource without extracting the rest of it,
+     * e.g. for checking the magic of a resource.
+     *
+     * @param sha1 Hash of resource
+     * @param size Maximum number of bytes to read
+     * @return Start of resource, or null if it doesn't exist
+     */
+    public byte[] peek(SHA1 sha1, int size)
+    {
+        if (!this.exists(sha1)) return null;
+        ByteBuffer data = this.getResourceData(sha1);
+        byte[] header = new byte[Math.min(size, data.remaining())];
+        data.get(0, header);
+        return header;
+    }
+
+    /**
+     * Gets a read-only view of a resource in the backing data of
+     * this archive, without copying it.
+     *
+     * @param fat FAT row to slice
+     * @return Resource data
+     */
+    public ByteBuffer slice(Fat fat)
+    {
+        SaveArchive owner = this.getOwner(fat);
+        if (owner != this) return owner.slice(fat);
+        return this.data.slice((int) fat.getOffset(), fat.getSize()).asReadOnlyBuffer();
     }
 
     /**
@@ -299,160 +521,434 @@ public class SaveArchive extends Fart
     }
 
     /**
-     * Gets a list of all resource hashes that are depended on by
-     * at least one other resource.
+     * Reads the hashes in the dependency table of a resource.
      *
      * @param resource Resource to dependinate
-     * @param hashes   List of hashes that are depended on
+     * @return Hashes the resource depends on
      */
-    public void getFilterList(byte[] resource, HashSet<SHA1> hashes)
+    private static ArrayList<SHA1> getDependencies(ByteBuffer resource)
     {
-        MemoryInputStream stream = new MemoryInputStream(resource);
+        ArrayList<SHA1> dependencies = new ArrayList<>();
 
         // Parsing the resource again here because the main class will
         // auto-decompress the handle and do additional checks we don't
         // care about here.
 
-        ResourceType type = ResourceType.fromMagic(stream.str(3));
-        if (type == ResourceType.INVALID) return;
-        SerializationType method = SerializationType.fromValue(stream.str(1));
+        if (resource.remaining() < 0xC) return dependencies;
+        byte[] header = new byte[0x4];
+        resource.get(0, header);
+
+        SerializationType method =
+            SerializationType.fromValue(Character.toString((char) header[3]));
         if (method != SerializationType.BINARY && method != SerializationType.ENCRYPTED_BINARY)
-            return;
-        int revision = stream.i32();
+            return dependencies;
+        ResourceType type =
+            ResourceType.fromMagic(new String(header, 0, 3, StandardCharsets.US_ASCII));
+        if (type == ResourceType.INVALID) return dependencies;
 
         // Dependency table wasn't added until 0x109
-        if (revision < 0x109) return;
+        int revision = resource.getInt(0x4);
+        if (revision < 0x109) return dependencies;
+
+        try
+        {
+            int offset = resource.getInt(0x8);
+            int count = resource.getInt(offset);
+            offset += 0x4;
+            for (int i = 0; i < count; ++i)
+            {
+                byte flags = resource.get(offset++);
+                if ((flags & 2) != 0) offset += 0x4; // GUID
+                if ((flags & 1) != 0)
+                {
+                    byte[] hash = new byte[0x14];
+                    resource.get(offset, hash);
+                    dependencies.add(new SHA1(hash));
+                    offset += 0x14;
+                }
+                offset += 0x4; // ResourceType
+            }
+        }
+        catch (IndexOutOfBoundsException ex)
+        {
+            throw new SerializationException("Resource dependency table is out of bounds!");
+        }
+
+        return dependencies;
+    }
 
-        stream.seek(stream.i32(), SeekMode.Begin);
-        int count = stream.i32();
-        for (int i = 0; i < count; ++i)
+    /**
+     * Marks everything reachable from a set of resources, the dependency tables
+     * of each frontier are parsed in parallel once it's large enough.
+     *
+     * @param frontier Resources to start from, should already be in the visited set
+     * @param visited  Set of hashes that are reachable
+     */
+    private void traverse(ArrayList<SHA1> frontier, HashSet<SHA1> visited)
+    {
+        while (!frontier.isEmpty())
         {
-            byte flags = stream.i8();
-            if ((flags & 2) != 0) stream.guid();
-            if ((flags & 1) != 0)
+            Stream<SHA1> stream = (frontier.size() >= PARALLEL_FRONTIER_SIZE) ?
+                frontier.parallelStream() : frontier.stream();
+            List<ArrayList<SHA1>> dependencies = stream
+                .map(sha1 -> SaveArchive.getDependencies(this.getResourceData(sha1)))
+                .toList();
+
+            ArrayList<SHA1> next = new ArrayList<>();
+            for (ArrayList<SHA1> hashes : dependencies)
             {
-                SHA1 sha1 = stream.sha1();
-                if (this.exists(sha1) && !hashes.contains(sha1))
+                for (SHA1 sha1 : hashes)
                 {
-                    hashes.add(sha1);
-                    byte[] data = this.extract(sha1);
-                    if (data != null)
-                        this.getFilterList(data, hashes);
+                    if (this.exists(sha1) && visited.add(sha1))
+                        next.add(sha1);
                 }
             }
-            stream.i32(); // ResourceType
+            frontier = next;
         }
     }
 
     /**
-     * Builds this archive and returns the resulting byte array.
+     * Gets a list of all resource hashes that are depended on by
+     * at least one other resource.
      *
-     * @return Built archive
+     * @param resource Resource to dependinate
+     * @param hashes   List of hashes that are depended on
      */
-    public byte[] build(boolean hashinate)
+    public void getFilterList(byte[] resource, HashSet<SHA1> hashes)
+    {
+        ArrayList<SHA1> frontier = new ArrayList<>();
+        for (SHA1 sha1 : SaveArchive.getDependencies(ByteBuffer.wrap(resource)))
+        {
+            if (this.exists(sha1) && hashes.add(sha1))
+                frontier.add(sha1);
+        }
+        this.traverse(frontier, hashes);
+    }
+
+    /**
+     * Gets the hashes of all resources reachable from the root resource.
+     *
+     * @return Reachable hashes, or null if the root resource isn't in this archive
+     */
+    public HashSet<SHA1> getReachable()
     {
-        // If the root exists, use it to filter what
-        // resources are actually necessary.
         SHA1 rootHash = this.key.getRootHash();
-        byte[] root = this.extract(rootHash);
-        HashSet<SHA1> resources = new HashSet<>(this.entries.length + this.queue.size());
-        if (root != null)
+        if (!this.exists(rootHash)) return null;
+
+        HashSet<SHA1> reachable = new HashSet<>(this.entries.length + this.queue.size());
+        reachable.add(rootHash);
+        ArrayList<SHA1> frontier = new ArrayList<>();
+        frontier.add(rootHash);
+        this.traverse(frontier, reachable);
+
+        return reachable;
+    }
+
+    /**
+     * Gets the hashes of all resources that aren't reachable from the
+     * root resource, these get dropped the next time the archive is built.
+     *
+     * @return Unreachable hashes
+     */
+    public HashSet<SHA1> getUnreachable()
+    {
+        HashSet<SHA1> unreachable = new HashSet<>();
+        HashSet<SHA1> reachable = this.getReachable();
+        if (reachable == null) return unreachable;
+
+        for (Fat fat : this.entries)
+            if (!reachable.contains(fat.getSHA1()))
+                unreachable.add(fat.getSHA1());
+        for (SHA1 sha1 : this.queue.keySet())
+            if (!reachable.contains(sha1))
+                unreachable.add(sha1);
+
+        return unreachable;
+    }
+
+    /**
+     * Gets the number of bytes taken up by resources that
+     * aren't reachable from the root resource.
+     *
+     * @return Size of unreachable resources
+     */
+    public long getUnreachableSize()
+    {
+        long size = 0;
+        for (SHA1 sha1 : this.getUnreachable())
         {
-            resources.add(rootHash);
-            this.getFilterList(root, resources);
+            byte[] queued = this.queue.get(sha1);
+            size += (queued != null) ? queued.length : this.lookup.get(sha1).getSize();
         }
-        else
+        return size;
+    }
+
+    /**
+     * Gets the hashes of all resources that should be included when
+     * this archive is built, sorted by their raw hash bytes.
+     * Resources stored in linked fragments are included as well, so the
+     * built archive doesn't depend on the fragments.
+     *
+     * @return Sorted resource hashes
+     */
+    private SHA1[] getBuildHashes()
+    {
+        // If the root exists, use it to filter what
+        // resources are actually necessary.
+        HashSet<SHA1> resources = this.getReachable();
+        if (resources == null)
         {
             // If the root doesn't exist, or there just is no root,
             // just serialize everything.
+            resources = new HashSet<>(this.entries.length + this.queue.size());
             for (Fat fat : this.entries)
                 resources.add(fat.getSHA1());
             resources.addAll(this.queue.keySet());
         }
 
+        // Unsigned byte order is the same as the order of the
+        // lowercase hex strings, without building any strings.
         SHA1[] hashes = resources.toArray(SHA1[]::new);
-        Arrays.sort(hashes, Comparator.comparing(SHA1::toString));
+        Arrays.sort(hashes, (a, b) -> Arrays.compareUnsigned(a.getHash(), b.getHash()));
+        return hashes;
+    }
 
-        byte[][] buffers = new byte[hashes.length][];
+    /**
+     * Lays out the FAT of the archive that would be built from a set of hashes.
+     *
+     * @param hashes Sorted resource hashes
+     * @return Layout of the built archive
+     */
+    private Fat[] getBuildTable(SHA1[] hashes)
+    {
         Fat[] entries = new Fat[hashes.length];
-
-        int size = 0;
+        long offset = 0;
         for (int i = 0; i < hashes.length; ++i)
         {
-            byte[] buffer = this.extract(hashes[i]);
-            entries[i] = new Fat(this, hashes[i], size, buffer.length);
-            buffers[i] = buffer;
-            size += buffer.length;
+            byte[] queued = this.queue.get(hashes[i]);
+            int size = (queued != null) ? queued.length : this.lookup.get(hashes[i]).getSize();
+            entries[i] = new Fat(this, hashes[i], offset, size);
+            offset += size;
         }
+        return entries;
+    }
 
-        byte[] saveKey = this.generateSaveKey();
-        byte[] fat = Fart.generateFAT(entries);
+    /**
+     * Gets the data of a resource, without copying it.
+     *
+     * @param sha1 Hash of resource
+     * @return Resource data
+     */
+    private ByteBuffer getResourceData(SHA1 sha1)
+    {
+        byte[] queued = this.queue.get(sha1);
+        if (queued != null) return ByteBuffer.wrap(queued);
+        return this.slice(this.lookup.get(sha1));
+    }
+
+    /**
+     * Gets the size of the archive that would be built from a FAT layout.
+     *
+     * @param entries Layout of the built archive
+     * @return Size of the built archive
+     */
+    private long getBuildSize(Fat[] entries)
+    {
+        long size = 0;
+        if (entries.length != 0)
+        {
+            Fat last = entries[entries.length - 1];
+            size = last.getOffset() + last.getSize();
+        }
 
         // Save key has to be aligned at 4 byte boundary.
-        int modulo = size % 4, pad = 0;
-        if (modulo != 0)
-            pad = 4 - modulo;
+        size = (size + 3) & ~3L;
 
-        // Some additional padding in case of alignment issues.
-        size += (saveKey.length + fat.length + 0x8 + pad);
+        size += this.generateSaveKey().length + (entries.length * 0x1cL) + 0x8;
         if (this.archiveRevision > 2) size += 0x14;
         if (this.archiveRevision == 5) size += 4;
 
-        // Start building the archive
-
-        MemoryOutputStream stream = new MemoryOutputStream(size);
-        for (byte[] buffer : buffers)
-            stream.bytes(buffer);
-
-        stream.pad(pad);
+        return size;
+    }
 
-        stream.bytes(saveKey);
-        int fatOffset = stream.getOffset();
-        stream.bytes(fat);
+    /**
+     * Streams an archive with a given FAT layout to a channel.
+     *
+     * @param channel   Channel to write to
+     * @param entries   Layout of the built archive
+     * @param hashinate Whether to sign the archive
+     * @return Offset of the FAT in the built archive
+     * @throws IOException if an I/O error occurs
+     */
+    private long write(WritableByteChannel channel, Fat[] entries, boolean hashinate)
+        throws IOException
+    {
+        Mac mac = null;
+        if (hashinate && this.archiveRevision > 2)
+            mac = Crypto.getHMAC(Crypto.HASHINATE_KEY);
 
-        int hashinateOffset = stream.getOffset();
-        if (this.archiveRevision > 2)
+        ByteBuffer staging = ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+        long size = 0;
+        for (Fat entry : entries)
         {
-            // Pad out the hashinate, we need to actually generate it.
-            stream.pad(0x14);
+            SaveArchive.write(channel, mac, staging, this.getResourceData(entry.getSHA1()));
+            size += entry.getSize();
         }
 
+        int pad = (int) ((4 - (size % 4)) % 4);
+        SaveArchive.write(channel, mac, staging, ByteBuffer.allocate(pad));
+        byte[] saveKey = this.generateSaveKey();
+        SaveArchive.write(channel, mac, staging, ByteBuffer.wrap(saveKey));
+        long fatOffset = size + pad + saveKey.length;
+        SaveArchive.write(channel, mac, staging, ByteBuffer.wrap(Fart.generateFAT(entries)));
+
+        // The hashinate covers the footer that comes after it, the footer doesn't
+        // depend on it though, so it's hashed with a blank signature before
+        // the signature gets written.
+        MemoryOutputStream stream = new MemoryOutputStream(0x20);
+        if (this.archiveRevision > 2)
+            stream.pad(0x14);
         if (this.archiveRevision == 5)
             stream.bytes(Bytes.toBytesLE(this.fragmentIDs.length));
         stream.i32(entries.length);
         stream.str("FAR", 0x3);
         stream.u8(this.archiveRevision + '0');
+        stream.shrink();
+        byte[] footer = stream.getBuffer();
 
-        byte[] archive = stream.getBuffer();
-
-        // Compute hash and write it to the buffer
-        if (hashinate && this.archiveRevision > 2)
+        if (mac != null)
         {
-            this.hashinate = Crypto.HMAC(archive, Crypto.HASHINATE_KEY);
-            System.arraycopy(this.hashinate.getHash(), 0, archive, hashinateOffset, 0x14);
+            staging.flip();
+            mac.update(staging.duplicate());
+            staging.compact();
+            mac.update(footer);
+            this.hashinate = new SHA1(mac.doFinal());
+            System.arraycopy(this.hashinate.getHash(), 0, footer, 0, 0x14);
         }
         else this.hashinate = SHA1.EMPTY;
 
-        // Update state of the archive in memory.
+        SaveArchive.write(channel, null, staging, ByteBuffer.wrap(footer));
+        SaveArchive.flush(channel, null, staging);
+
+        return fatOffset;
+    }
+
+    /**
+     * Writes data to a channel through a staging buffer.
+     */
+    private static void write(WritableByteChannel channel, Mac mac, ByteBuffer staging,
+                              ByteBuffer data) throws IOException
+    {
+        while (data.hasRemaining())
+        {
+            if (!staging.hasRemaining())
+                SaveArchive.flush(channel, mac, staging);
+            int count = Math.min(staging.remaining(), data.remaining());
+            staging.put(staging.position(), data, data.position(), count);
+            staging.position(staging.position() + count);
+            data.position(data.position() + count);
+        }
+    }
+
+    /**
+     * Flushes a staging buffer to a channel, hashing everything that's written.
+     */
+    private static void flush(WritableByteChannel channel, Mac mac, ByteBuffer staging)
+        throws IOException
+    {
+        staging.flip();
+        if (mac != null)
+            mac.update(staging.duplicate());
+        while (staging.hasRemaining())
+            channel.write(staging);
+        staging.clear();
+    }
+
+    /**
+     * Builds this archive and returns the resulting byte array.
+     *
+     * @param hashinate Whether to sign the archive
+     * @return Built archive
+     */
+    public byte[] build(boolean hashinate)
+    {
+        SHA1[] hashes = this.getBuildHashes();
+        Fat[] entries = this.getBuildTable(hashes);
+
+        long size = this.getBuildSize(entries);
+        if (size > Integer.MAX_VALUE)
+            throw new IllegalStateException("Save archive is too large to build in memory!");
+
+        byte[] archive = new byte[(int) size];
+        ByteBuffer buffer = ByteBuffer.wrap(archive);
+        long fatOffset;
+        try
+        {
+            fatOffset = this.write(new WritableByteChannel()
+            {
+                @Override
+                public int write(ByteBuffer src)
+                {
+                    int count = src.remaining();
+                    buffer.put(src);
+                    return count;
+                }
+
+                @Override
+                public boolean isOpen() { return true; }
+
+                @Override
+                public void close() { }
+            }, entries, hashinate);
+        }
+        catch (IOException ex)
+        {
+            // Writes to the buffer don't throw.
+            throw new IllegalStateException(ex);
+        }
+
+        // The built archive already holds every resource, so
+        // it just replaces the previous backing data.
+        this.rebase(entries, fatOffset, ByteBuffer.wrap(archive));
+
+        return archive;
+    }
+
+    /**
+     * Streams this archive to a channel, the in-memory state of
+     * the archive is left as-is, since the channel can't be read back.
+     *
+     * @param channel   Channel to write to
+     * @param hashinate Whether to sign the archive
+     * @throws IOException if an I/O error occurs
+     */
+    public void build(WritableByteChannel channel, boolean hashinate) throws IOException
+    {
+        this.write(channel, this.getBuildTable(this.getBuildHashes()), hashinate);
+    }
+
+    /**
+     * Updates the state of the archive in memory after it's been built.
+     *
+     * @param entries   FAT of the built archive
+     * @param fatOffset Offset of the FAT in the built archive
+     * @param data      Built archive data
+     */
+    private void rebase(Fat[] entries, long fatOffset, ByteBuffer data)
+    {
         this.entries = entries;
         this.queue.clear();
         this.fatOffset = fatOffset;
         if (this.file != null)
             this.lastModified = this.file.lastModified();
 
-        // Reset the lookup tables
+        this.data = data;
         this.lookup = new HashMap<>(entries.length);
-        this.buffers = new HashMap<>(entries.length);
-        for (int i = 0; i < entries.length; ++i)
-        {
-            Fat entry = entries[i];
-            byte[] buffer = buffers[i];
-
+        for (Fat entry : entries)
             this.lookup.put(entry.getSHA1(), entry);
-            this.buffers.put(entry, buffer);
-        }
 
-        return archive;
+        for (SaveArchive fragment : this.fragments)
+            this.index(fragment);
     }
 
     /**
@@ -465,8 +961,68 @@ public class SaveArchive extends Fart
     {
         if (path == null)
             throw new IllegalArgumentException("Can't save archive to null path!");
-        byte[] archive = this.build(false);
-        return FileIO.write(archive, path);
+        return this.save(new File(path));
+    }
+
+    /**
+     * Save archive at specified location
+     *
+     * @param file Location to save
+     * @return Whether the save was successful
+     */
+    private boolean save(File file)
+    {
+        // Changes queued on a linked fragment directly would otherwise never
+        // be written, so they get saved along with everything else.
+        for (SaveArchive fragment : this.fragments)
+        {
+            for (SHA1 sha1 : fragment.queue.keySet())
+                this.queue.putIfAbsent(sha1, fragment.queue.get(sha1));
+        }
+
+        File temp = new File(file.getAbsolutePath() + ".tmp");
+        Fat[] entries = this.getBuildTable(this.getBuildHashes());
+
+        // Streamed to a temporary file first, since the
+        // current data may be mapped from the destination.
+        long fatOffset;
+        try
+        {
+            try (FileChannel channel = FileChannel.open(temp.toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+            {
+                fatOffset = this.write(channel, entries, false);
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException ex)
+        {
+            temp.delete();
+            return false;
+        }
+
+        // The old data is only replaced once the new archive has been
+        // read back, so a failed read leaves the archive usable.
+        ByteBuffer data;
+        try { data = SaveArchive.read(file, this.data instanceof MappedByteBuffer); }
+        catch (SerializationException ex) { return false; }
+        this.rebase(entries, fatOffset, data);
+        for (SaveArchive fragment : this.fragments)
+            fragment.queue.clear();
+
+        return true;
+    }
+
+    @Override
+    public boolean shouldSave()
+    {
+        if (super.shouldSave()) return true;
+        for (SaveArchive fragment : this.fragments)
+            if (fragment.shouldSave())
+                return true;
+        return false;
     }
 
     @Override
@@ -474,8 +1030,7 @@ public class SaveArchive extends Fart
     {
         if (this.file == null)
             throw new IllegalStateException("Can't save archive with no associated file!");
-        byte[] archive = this.build(false);
-        return FileIO.write(archive, this.file.getAbsolutePath());
+        return this.save(this.file);
     }
 
     public Revision getGameRevision()
@@ -5,17 +5,37 @@ import cwlib.enums.ResourceType;
 import cwlib.io.streams.MemoryInputStream;
 import cwlib.io.streams.MemoryOutputStream;
 import cwlib.resources.RPalette;
+import cwlib.singleton.ResourceSystem;
 import cwlib.types.data.GUID;
 import cwlib.types.data.ResourceDescriptor;
 import cwlib.types.data.SHA1;
 import cwlib.types.swing.FileData;
 import cwlib.types.swing.FileNode;
-import cwlib.util.FileIO;
+import cwlib.util.LongMap;
 
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 
 /**
  * The FileDB is a resource used by the game for assigning
@@ -34,10 +54,84 @@ public class FileDB extends FileData implements Iterable<FileDBRow>
      */
     private static final long MIN_SAFE_GUID = 0x00180000;
 
+    /**
+     * Header magic for change journals, "FDBJ".
+     */
+    private static final int JOURNAL_MAGIC = 0x4644424A;
+    private static final int JOURNAL_VERSION = 1;
+
+    private static final int JOURNAL_PUT = 1;
+    private static final int JOURNAL_REMOVE = 2;
+
+    /**
+     * The journal gets compacted into a full rewrite of the database
+     * once it's grown past this fraction of the database's size,
+     * or when more than this fraction of the rows have changed.
+     */
+    private static final int JOURNAL_COMPACT_DIVISOR = 4;
+
+    /**
+     * Size of the staging buffer used when streaming a build to a channel.
+     */
+    private static final int STREAM_BUFFER_SIZE = 0x10000;
+
     private int revision;
-    protected ArrayList<FileDBRow> entries;
 
-    protected HashMap<GUID, FileDBRow> lookup;
+    /**
+     * Table the database was loaded from, rows in it are only
+     * materialized once they're requested.
+     */
+    private FileDBTable table;
+
+    /**
+     * Rows that have been materialized from the table, by table index.
+     */
+    private FileDBRow[] tableRows;
+
+    /**
+     * Table rows that aren't part of the database, either because
+     * they were removed, or because their GUID was missing or a duplicate.
+     */
+    private BitSet removed;
+
+    /**
+     * Table rows whose GUID, path or SHA1 may have changed, these
+     * can't be found through the table's indexes anymore, so they're
+     * indexed in the lookup tables instead.
+     */
+    private BitSet moved;
+
+    /**
+     * Rows added after the database was loaded.
+     */
+    private ArrayList<FileDBRow> added;
+
+    /**
+     * Number of rows in the database.
+     */
+    private int size;
+
+    /**
+     * GUID -> Row index for added and moved rows.
+     */
+    private LongMap<FileDBRow> lookup;
+
+    /**
+     * SHA1 -> Row(s) index for added and moved rows, hashes aren't unique,
+     * so values are either a single FileDBRow or an ArrayList of them.
+     */
+    private HashMap<SHA1, Object> hashLookup;
+
+    /**
+     * Normalized path -> Row(s) index, same layout as the hash index.
+     */
+    private HashMap<String, Object> pathLookup;
+
+    /**
+     * Rows changed since the last save, keyed by GUID,
+     * null values are rows that have been removed.
+     */
+    private final LongMap<FileDBRow> dirty = new LongMap<>();
 
     /**
      * For databases that inherit FileDB
@@ -53,9 +147,7 @@ public class FileDB extends FileData implements Iterable<FileDBRow>
     protected FileDB(File file, DatabaseType type, int revision)
     {
         super(file, type);
-        this.revision = revision;
-        this.entries = new ArrayList<>(DEFAULT_CAPACITY);
-        this.lookup = new HashMap<>(DEFAULT_CAPACITY);
+        this.process(new FileDBTable(revision), DEFAULT_CAPACITY);
     }
 
     /**
@@ -67,12 +159,10 @@ public class FileDB extends FileData implements Iterable<FileDBRow>
     public FileDB(int revision, int capacity)
     {
         super(null, DatabaseType.FILE_DATABASE);
-        this.revision = revision;
         if (capacity < 0)
             throw new IllegalArgumentException("Cannot allocate entry array with negative " +
                                                "count!");
-        this.entries = new ArrayList<>(capacity);
-        this.lookup = new HashMap<>(capacity);
+        this.process(new FileDBTable(revision), capacity);
     }
 
     /**
@@ -93,7 +183,8 @@ public class FileDB extends FileData implements Iterable<FileDBRow>
     public FileDB(File file)
     {
         super(file, DatabaseType.FILE_DATABASE);
-        this.process(new MemoryInputStream(file.getAbsolutePath()));
+        this.process(new FileDBTable(file), DEFAULT_CAPACITY);
+        this.replayJournal(file);
     }
 
     /**
@@ -104,7 +195,111 @@ public class FileDB extends FileData implements Iterable<FileDBRow>
     public FileDB(byte[] data)
     {
         super(null, DatabaseType.FILE_DATABASE);
-        this.process(new MemoryInputStream(data));
+        this.process(new FileDBTable(data), DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a FileDB backed by a columnar table.
+     *
+     * @param table FileDB source table
+     */
+    public FileDB(FileDBTable table)
+    {
+        super(null, DatabaseType.FILE_DATABASE);
+        this.process(table, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a FileDB backed by a columnar table that was read from a file,
+     * e.g. from a snapshot of the database.
+     *
+     * @param file  FileDB source file
+     * @param table FileDB source table
+     */
+    public FileDB(File file, FileDBTable table)
+    {
+        super(file, DatabaseType.FILE_DATABASE);
+        this.process(table, DEFAULT_CAPACITY);
+        this.replayJournal(file);
+    }
+
+    /**
+     * Backs this database with a table, rows are only materialized when they're
+     * requested, except when running with a GUI, where every row needs a node.
+     *
+     * @param table    FileDB source table
+     * @param capacity Expected number of rows added after loading
+     */
+    private void process(FileDBTable table, int capacity)
+    {
+        this.revision = table.getRevision();
+        int count = table.getEntryCount();
+        this.table = table;
+        this.tableRows = new FileDBRow[count];
+        this.removed = new BitSet(count);
+        this.moved = new BitSet(count);
+        this.added = new ArrayList<>(capacity);
+        this.lookup = new LongMap<>(capacity);
+        this.hashLookup = new HashMap<>(capacity);
+        this.pathLookup = new HashMap<>(capacity);
+
+        // If a GUID is duplicated, only the first row with it is kept, the table's
+        // GUID index already resolves to the first one. Rows without a GUID
+        // can't be referenced, so they're skipped as well.
+        for (int i = 0; i < count; ++i)
+        {
+            long guid = table.getGUID(i);
+            if (guid == 0 || table.indexOf(guid) != i)
+                this.removed.set(i);
+        }
+        this.size = count - this.removed.cardinality();
+
+        if (ResourceSystem.GUI_MODE)
+        {
+            for (int i = this.removed.nextClearBit(0); i < count;
+                 i = this.removed.nextClearBit(i + 1))
+                this.getTableRow(i);
+        }
+    }
+
+    /**
+     * Gets the row at an index in the table, materializing it if needed.
+     *
+     * @param index Index of row in table
+     * @return Row at index
+     */
+    private FileDBRow getTableRow(int index)
+    {
+        FileDBRow row = this.tableRows[index];
+        if (row == null)
+        {
+            row = new FileDBRow(this, this.table, index);
+            this.tableRows[index] = row;
+        }
+        return row;
+    }
+
+    /**
+     * Moves a row from the table's indexes into the lookup tables,
+     * needs to happen before any of the row's keys change.
+     *
+     * @param row Row to move
+     */
+    private void move(FileDBRow row)
+    {
+        int index = row.getTableIndex();
+        if (index == -1 || this.moved.get(index)) return;
+        this.moved.set(index);
+        this.lookup.put(row.getGUID().getValue(), row);
+        this.index(row);
+    }
+
+    /**
+     * Checks if a table row can still be found through the table's indexes.
+     */
+    private boolean isIndexed(int index)
+    {
+        return index != -1 && !this.removed.get(index) && !this.moved.get(index);
     }
 
     /**
@@ -119,43 +314,127 @@ public class FileDB extends FileData implements Iterable<FileDBRow>
 
     protected void process(MemoryInputStream stream)
     {
-        this.revision = stream.i32();
-        boolean isLBP3 = (this.revision >> 0x10) >= 0x148;
-        int count = stream.i32();
-        this.entries = new ArrayList<>(count);
-        this.lookup = new HashMap<>(count);
+        this.process(new FileDBTable(stream), DEFAULT_CAPACITY);
+    }
 
-        for (int i = 0; i < count; ++i)
+    /**
+     * Normalizes a path for use as a key in the path index.
+     *
+     * @param path Path to normalize
+     * @return Normalized path
+     */
+    private static String getPathKey(String path)
+    {
+        return path.toLowerCase();
+    }
+
+    /**
+     * Adds a row to a multi-valued index.
+     */
+    private static <K> void addToIndex(HashMap<K, Object> index, K key, FileDBRow row)
+    {
+        Object existing = index.putIfAbsent(key, row);
+        if (existing == null || existing == row) return;
+        if (existing instanceof FileDBRow other)
         {
-            String path = stream.str(isLBP3 ? stream.i16() : stream.i32());
-            long timestamp = isLBP3 ? stream.u32() : stream.s64();
-            long size = stream.u32();
-            SHA1 sha1 = stream.sha1();
-            GUID guid = stream.guid();
+            ArrayList<FileDBRow> rows = new ArrayList<>(2);
+            rows.add(other);
+            rows.add(row);
+            index.put(key, rows);
+            return;
+        }
 
-            // If a GUID is duplicated, skip it
-            if (this.lookup.containsKey(guid))
-                continue;
+        @SuppressWarnings("unchecked")
+        ArrayList<FileDBRow> rows = (ArrayList<FileDBRow>) existing;
+        if (!rows.contains(row)) rows.add(row);
+    }
 
-            /* 	In LittleBigPlanet Vita, some versions of the databases don't store any filenames,
-                only the extensions, so we'll use the hash of the resource in place of a name. */
-            if (path.startsWith("."))
-            {
-                path = String.format("data/%s%s%s",
-                    FileDB.getFolderFromExtension(path), sha1, path);
-            }
+    /**
+     * Removes a row from a multi-valued index.
+     */
+    private static <K> void removeFromIndex(HashMap<K, Object> index, K key, FileDBRow row)
+    {
+        Object existing = index.get(key);
+        if (existing == null) return;
+        if (existing == row)
+        {
+            index.remove(key);
+            return;
+        }
+        if (!(existing instanceof ArrayList<?> rows)) return;
+        rows.remove(row);
+        if (rows.size() == 1) index.put(key, rows.get(0));
+        else if (rows.isEmpty()) index.remove(key);
+    }
 
-            FileDBRow entry = new FileDBRow(this, path, timestamp, size, sha1, guid);
+    /**
+     * Gets the first row from a multi-valued index.
+     */
+    private static <K> FileDBRow getFromIndex(HashMap<K, Object> index, K key)
+    {
+        Object existing = index.get(key);
+        if (existing == null) return null;
+        if (existing instanceof FileDBRow row) return row;
+        return (FileDBRow) ((ArrayList<?>) existing).get(0);
+    }
 
-            this.entries.add(entry);
-            this.lookup.put(guid, entry);
-        }
+    /**
+     * Gets all rows from a multi-valued index.
+     */
+    @SuppressWarnings("unchecked")
+    private static <K> List<FileDBRow> getAllFromIndex(HashMap<K, Object> index, K key)
+    {
+        Object existing = index.get(key);
+        if (existing == null) return Collections.emptyList();
+        if (existing instanceof FileDBRow row) return Collections.singletonList(row);
+        return Collections.unmodifiableList((ArrayList<FileDBRow>) existing);
+    }
+
+    /**
+     * Adds a row to the SHA1 and path indexes.
+     *
+     * @param row Row to index
+     */
+    private void index(FileDBRow row)
+    {
+        FileDB.addToIndex(this.hashLookup, row.getSHA1(), row);
+        FileDB.addToIndex(this.pathLookup, FileDB.getPathKey(row.getPath()), row);
+    }
+
+    /**
+     * Removes a row from the SHA1 and path indexes.
+     *
+     * @param row Row to remove
+     */
+    private void unindex(FileDBRow row)
+    {
+        FileDB.removeFromIndex(this.hashLookup, row.getSHA1(), row);
+        FileDB.removeFromIndex(this.pathLookup, FileDB.getPathKey(row.getPath()), row);
     }
 
     @Override
     public Iterator<FileDBRow> iterator()
     {
-        return this.entries.iterator();
+        return new Iterator<>()
+        {
+            private int index = FileDB.this.removed.nextClearBit(0);
+            private final Iterator<FileDBRow> added = FileDB.this.added.iterator();
+
+            @Override
+            public boolean hasNext()
+            {
+                return this.index < FileDB.this.tableRows.length || this.added.hasNext();
+            }
+
+            @Override
+            public FileDBRow next()
+            {
+                if (this.index >= FileDB.this.tableRows.length) return this.added.next();
+                FileDBRow row = FileDB.this.getTableRow(this.index);
+                this.index = FileDB.this.removed.nextClearBit(this.index + 1);
+                return row;
+            }
+        };
     }
 
     /**
@@ -166,7 +445,8 @@ public class FileDB extends FileData implements Iterable<FileDBRow>
      */
     public boolean exists(GUID guid)
     {
-        return this.lookup.containsKey(guid);
+        if (guid == null) return false;
+        return this.get(guid.getValue()) != null;
     }
 
     /**
@@ -177,15 +457,15 @@ public class FileDB extends FileData implements Iterable<FileDBRow>
      */
     public boolean exists(long guid)
     {
-        return this.exists(new GUID(guid));
+        return this.get(guid) != null;
     }
 
     /**
      * Gets a FileDBRow with a specified SHA1.
      * <p>
      * This method generally should not be used, as it's
-     * not guaranteed that this row is unique. It's also
-     * slower than GUID lookup, as a HashMap is not maintained.
+     * not guaranteed that this row is unique, see getAll
+     * for all rows with a given SHA1.
      *
      * @param sha1 SHA1 to find
      * @return FileDBRow with SHA1
@@ -193,10 +473,30 @@ public class FileDB extends FileData implements Iterable<FileDBRow>
     @Override
     public FileDBRow get(SHA1 sha1)
     {
-        for (FileDBRow row : this.entries)
-            if (row.getSHA1().equals(sha1))
-                return row;
-        return null;
+        if (sha1 == null) return null;
+        for (int index : this.table.indicesOf(sha1))
+            if (this.isIndexed(index)) return this.getTableRow(index);
+        return FileDB.getFromIndex(this.hashLookup, sha1);
+    }
+
+    /**
+     * Gets all FileDBRows with a specified SHA1.
+     *
+     * @param sha1 SHA1 to find
+     * @return Read-only list of rows with SHA1
+     */
+    public List<FileDBRow> getAll(SHA1 sha1)
+    {
+        if (sha1 == null) return Collections.emptyList();
+        List<FileDBRow> rows = FileDB.getAllFromIndex(this.hashLookup, sha1);
+        int[] indices = this.table.indicesOf(sha1);
+        if (indices.length == 0) return rows;
+
+        ArrayList<FileDBRow> all = new ArrayList<>(indices.length + rows.size());
+        for (int index : indices)
+            if (this.isIndexed(index)) all.add(this.getTableRow(index));
+        all.addAll(rows);
+        return Collections.unmodifiableList(all);
     }
 
     /**
@@ -208,9 +508,8 @@ public class FileDB extends FileData implements Iterable<FileDBRow>
     @Override
     public FileDBRow get(GUID guid)
     {
-        if (this.lookup.containsKey(guid))
-            return this.lookup.get(guid);
-        return null;
+        if (guid == null) return null;
+        return this.get(guid.getValue());
     }
 
     /**
@@ -222,11 +521,17 @@ public class FileDB extends FileData implements Iterable<FileDBRow>
     @Override
     public FileDBRow get(long guid)
     {
-        return this.get(new GUID(guid));
+        FileDBRow row = this.lookup.get(guid);
+        if (row != null) return row;
+        int index = this.table.indexOf(guid);
+        return this.isIndexed(index) ? this.getTableRow(index) : null;
     }
 
     /**
      * Gets a file name by path/name.
+     * <p>
+     * Exact (case-insensitive) path matches are looked up in the path index,
+     * otherwise the first entry whose path contains the query is returned.
      *
      * @param path Path/name of entry to find
      * @return Entry found
@@ -236,8 +541,23 @@ public class FileDB extends FileData implements Iterable<FileDBRow>
     {
         if (path == null)
             throw new NullPointerException("Can't find null path!");
-        path = path.toLowerCase(); // Ignore cases
-        for (FileDBRow entry : this.entries)
+        path = FileDB.getPathKey(path); // Ignore cases
+        for (int index : this.table.indicesOf(path))
+            if (this.isIndexed(index)) return this.getTableRow(index);
+        FileDBRow row = FileDB.getFromIndex(this.pathLookup, path);
+        if (row != null) return row;
+
+        // Partial matches are checked against the table directly,
+        // so rows don't get materialized just to be compared.
+        for (int index = 0; index < this.tableRows.length; ++index)
+        {
+            if (this.removed.get(index)) continue;
+            FileDBRow entry = this.tableRows[index];
+            String other = (entry != null) ? entry.getPath() : this.table.getPath(index);
+            if (other.toLowerCase().contains(path))
+                return this.getTableRow(index);
+        }
+        for (FileDBRow entry : this.added)
             if (entry.getPath().toLowerCase().contains(path))
                 return entry;
         return null;
@@ -256,8 +576,58 @@ public class FileDB extends FileData implements Iterable<FileDBRow>
         FileDBRow entry = this.get(oldGUID);
         if (entry == null)
             throw new IllegalArgumentException("Entry with GUID does not exist!");
-        this.lookup.remove(oldGUID);
-        this.lookup.put(newGUID, entry);
+        this.move(entry);
+        this.lookup.remove(oldGUID.getValue());
+        this.lookup.put(newGUID.getValue(), entry);
+        this.dirty.put(oldGUID.getValue(), null);
+        this.dirty.put(newGUID.getValue(), entry);
+    }
+
+    /**
+     * Marks an entry as changed since the last save.
+     *
+     * @param entry Entry that was changed
+     */
+    protected void onRowChange(FileDBRow entry)
+    {
+        long guid = entry.getGUID().getValue();
+        if (this.get(guid) != entry) return;
+        this.dirty.put(guid, entry);
+    }
+
+    /**
+     * Updates the lookup tables with entry's new SHA1.
+     * The SHA1 is not set in this method.
+     *
+     * @param entry   Entry being updated
+     * @param newSHA1 New SHA1 for entry
+     */
+    protected void onSHA1Change(FileDBRow entry, SHA1 newSHA1)
+    {
+        if (this.get(entry.getGUID().getValue()) != entry) return;
+        this.move(entry);
+        FileDB.removeFromIndex(this.hashLookup, entry.getSHA1(), entry);
+        FileDB.addToIndex(this.hashLookup, newSHA1, entry);
+        this.onRowChange(entry);
+    }
+
+    /**
+     * Updates the lookup tables with entry's new path.
+     * The path is not set in this method.
+     *
+     * @param entry   Entry being updated
+     * @param newPath New path for entry
+     */
+    protected void onPathChange(FileDBRow entry, String newPath)
+    {
+        if (this.get(entry.getGUID().getValue()) != entry) return;
+        this.move(entry);
+        this.onRowChange(entry);
+        String oldKey = FileDB.getPathKey(entry.getPath());
+        String newKey = FileDB.getPathKey(newPath);
+        if (oldKey.equals(newKey)) return;
+        FileDB.removeFromIndex(this.pathLookup, oldKey, entry);
+        FileDB.addToIndex(this.pathLookup, newKey, entry);
     }
 
     /**
@@ -269,12 +639,15 @@ public class FileDB extends FileData implements Iterable<FileDBRow>
      */
     public FileDBRow newFileDBRow(String path, GUID guid)
     {
-        if (this.lookup.containsKey(guid))
+        if (this.exists(guid))
             throw new IllegalArgumentException("GUID already exists in database!");
         final FileDBRow entry = new FileDBRow(this, path, 0, 0, new SHA1(), guid);
         entry.updateDate();
-        this.entries.add(entry);
-        this.lookup.put(guid, entry);
+        this.added.add(entry);
+        this.size++;
+        this.lookup.put(guid.getValue(), entry);
+        this.index(entry);
+        this.dirty.put(guid.getValue(), entry);
         return entry;
     }
 
@@ -320,10 +693,34 @@ public class FileDB extends FileData implements Iterable<FileDBRow>
     {
         if (entry.getSource() != this)
             throw new IllegalArgumentException("FileDBRow doesn't belong to this database!");
-        this.entries.remove(entry);
-        this.lookup.remove(entry.getKey());
-        FileNode node = entry.getNode();
+        if (this.unlink((FileDBRow) entry))
+            this.added.remove(entry);
+    }
+
+    /**
+     * Removes a row from the database, except from the list of added rows.
+     *
+     * @param row Row to remove
+     * @return Whether the row still needs to be removed from the added rows
+     */
+    private boolean unlink(FileDBRow row)
+    {
+        long guid = row.getGUID().getValue();
+        if (this.get(guid) != row) return false;
+
+        this.dirty.put(guid, null);
+        this.size--;
+        FileNode node = row.getNode();
         if (node != null) node.delete();
+
+        int index = row.getTableIndex();
+        if (index != -1) this.removed.set(index);
+        if (index == -1 || this.moved.get(index))
+        {
+            this.lookup.remove(guid);
+            this.unindex(row);
+        }
+        return index == -1;
     }
 
     /**
@@ -342,6 +739,45 @@ public class FileDB extends FileData implements Iterable<FileDBRow>
         }
     }
 
+    /**
+     * Applies a set of changes to this database.
+     * <p>
+     * Rows without a GUID are skipped when a FileDB is loaded,
+     * so changes to them are skipped here as well.
+     *
+     * @param diff Changes to apply
+     */
+    public void patch(FileDBDiff diff)
+    {
+        Set<FileDBRow> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (FileDBDiff.Change change : diff)
+        {
+            if (change.getGUID() == null) continue;
+            long guid = change.getGUID().getValue();
+            FileDBRow entry = this.get(guid);
+
+            if (change.isRemoved())
+            {
+                if (entry != null && this.unlink(entry))
+                    removed.add(entry);
+                continue;
+            }
+
+            if (entry == null)
+                entry = this.newFileDBRow(change.getPath(), guid);
+            else
+                entry.setPath(change.getPath());
+            entry.setSHA1(change.getSHA1());
+            entry.setSize(change.getSize());
+            entry.setDate(change.getDate());
+        }
+
+        // Removing rows one at a time is quadratic on large databases,
+        // so they all get dropped from the entry list in a single pass.
+        if (!removed.isEmpty())
+            this.added.removeIf(removed::contains);
+    }
+
     /**
      * Generates an RPlan resource list from this database
      *
@@ -349,13 +785,8 @@ public class FileDB extends FileData implements Iterable<FileDBRow>
      */
     public String toRLST()
     {
-        int pathSize = this.entries
-            .stream()
-            .mapToInt(element -> element.getPath().length() + 1)
-            .reduce(0, (total, element) -> total + element);
-
-        StringBuilder builder = new StringBuilder(pathSize);
-        for (FileDBRow entry : this.entries)
+        StringBuilder builder = new StringBuilder();
+        for (FileDBRow entry : this)
         {
             String path = entry.getPath();
             if (path.endsWith(".plan"))
@@ -373,7 +804,7 @@ public class FileDB extends FileData implements Iterable<FileDBRow>
     public RPalette toPalette()
     {
         RPalette palette = new RPalette();
-        for (FileDBRow entry : this.entries)
+        for (FileDBRow entry : this)
         {
             String path = entry.getPath();
             if (path.endsWith(".plan"))
@@ -387,7 +818,7 @@ public class FileDB extends FileData implements Iterable<FileDBRow>
     public GUID getNextGUID()
     {
         long lastGUID = FileDB.MIN_SAFE_GUID;
-        while (this.lookup.containsKey(new GUID(lastGUID))) lastGUID++;
+        while (this.exists(lastGUID)) lastGUID++;
         return new GUID(lastGUID);
     }
 
@@ -398,7 +829,12 @@ public class FileDB extends FileData implements Iterable<FileDBRow>
      */
     public int getEntryCount()
     {
-        return this.entries.size();
+        return this.size;
+    }
+
+    public int getRevision()
+    {
+        return this.revision;
     }
 
     /**
@@ -408,11 +844,8 @@ public class FileDB extends FileData implements Iterable<FileDBRow>
      */
     public byte[] build()
     {
-        // Just figure the GUIDs should be in ascending order.
-        entries.sort((l, r) -> Long.compareUnsigned(l.getGUID().getValue(),
-            r.getGUID().getValue()));
-
-        int pathSize = this.entries
+        ArrayList<FileDBRow> entries = this.getSortedRows();
+        int pathSize = entries
             .stream()
             .mapToInt(element -> element.getPath().length())
             .reduce(0, (total, element) -> total + element);
@@ -420,10 +853,10 @@ public class FileDB extends FileData implements Iterable<FileDBRow>
         boolean isLBP3 = (this.revision >> 0x10) >= 0x148;
         int baseEntrySize = (isLBP3) ? 0x22 : 0x28;
         MemoryOutputStream stream =
-            new MemoryOutputStream(0x8 + (baseEntrySize * this.entries.size()) + pathSize);
+            new MemoryOutputStream(0x8 + (baseEntrySize * entries.size()) + pathSize);
         stream.i32(this.revision);
-        stream.i32(this.entries.size());
-        for (FileDBRow entry : this.entries)
+        stream.i32(entries.size());
+        for (FileDBRow entry : entries)
         {
             int length = entry.getPath().length();
             if (isLBP3)
@@ -443,8 +876,84 @@ public class FileDB extends FileData implements Iterable<FileDBRow>
         return stream.getBuffer();
     }
 
+    /**
+     * Serializes the current state of the FileDB directly to a channel,
+     * without materializing the full database in memory.
+     *
+     * @param channel Channel to write to
+     * @throws IOException If an I/O error occurs
+     */
+    public void build(WritableByteChannel channel) throws IOException
+    {
+        ArrayList<FileDBRow> entries = this.getSortedRows();
+        boolean isLBP3 = (this.revision >> 0x10) >= 0x148;
+        ByteBuffer buffer = ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+        buffer.putInt(this.revision);
+        buffer.putInt(entries.size());
+        for (FileDBRow entry : entries)
+        {
+            String path = entry.getPath();
+            int length = path.length();
+            int entrySize = length + ((isLBP3) ? 0x22 : 0x28);
+            if (buffer.remaining() < entrySize)
+            {
+                FileDB.flush(channel, buffer);
+                if (buffer.capacity() < entrySize)
+                    buffer = ByteBuffer.allocate(entrySize);
+            }
+
+            if (isLBP3)
+                buffer.putShort((short) length);
+            else
+                buffer.putInt(length);
+
+            byte[] data = path.getBytes(StandardCharsets.US_ASCII);
+            buffer.put(data, 0, Math.min(data.length, length));
+            for (int i = data.length; i < length; ++i)
+                buffer.put((byte) 0);
+
+            if (isLBP3) buffer.putInt((int) entry.getDate());
+            else buffer.putLong(entry.getDate());
+
+            buffer.putInt((int) entry.getSize());
+            buffer.put(entry.getSHA1().getHash());
+            buffer.putInt((int) entry.getGUID().getValue());
+        }
+        FileDB.flush(channel, buffer);
+    }
+
+    /**
+     * Gets every row in the database, sorted by GUID.
+     *
+     * @return Sorted rows
+     */
+    private ArrayList<FileDBRow> getSortedRows()
+    {
+        ArrayList<FileDBRow> entries = new ArrayList<>(this.size);
+        for (FileDBRow entry : this)
+            entries.add(entry);
+
+        // Just figure the GUIDs should be in ascending order.
+        entries.sort((l, r) -> Long.compareUnsigned(l.getGUID().getValue(),
+            r.getGUID().getValue()));
+        return entries;
+    }
+
+    private static void flush(WritableByteChannel channel, ByteBuffer buffer) throws IOException
+    {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
     /**
      * Saves this database to disk.
+     * <p>
+     * Saving over the file the database was loaded from only appends the rows
+     * that changed to the change journal, until the journal gets large enough
+     * that it's compacted into a full rewrite. Saving anywhere else always
+     * writes the full database.
      *
      * @param file File to save to
      * @return Whether or not this operation was successful
@@ -454,9 +963,253 @@ public class FileDB extends FileData implements Iterable<FileDBRow>
     {
         if (file == null)
             throw new IllegalStateException("Can't save to non-existent file!");
-        boolean success = FileIO.write(this.build(), file.getAbsolutePath());
-        if (success) this.hasChanges = false;
-        return success;
+        if (this.shouldJournal(file))
+            return this.saveJournal(file);
+        return this.compact(file);
+    }
+
+    /**
+     * Checks whether a save to a file can go to the change journal
+     * instead of rewriting the database.
+     *
+     * @param file File being saved to
+     * @return Whether the changes should be journaled
+     */
+    private boolean shouldJournal(File file)
+    {
+        File source = this.getFile();
+        if (source == null || !file.getAbsoluteFile().equals(source.getAbsoluteFile()))
+            return false;
+        if (!file.exists()) return false;
+
+        // Past a certain point replaying the journal costs more than it saves.
+        if (this.dirty.size() > this.size / JOURNAL_COMPACT_DIVISOR) return false;
+        File journal = FileDB.getJournalFile(file);
+        return !journal.exists() || journal.length() <= file.length() / JOURNAL_COMPACT_DIVISOR;
+    }
+
+    /**
+     * Writes the full database to disk, folding in and removing any change journal.
+     * The game doesn't know about journals, so this should be used before
+     * the database is handed off.
+     *
+     * @param file File to save to
+     * @return Whether or not this operation was successful
+     */
+    public boolean compact(File file)
+    {
+        if (file == null)
+            throw new IllegalStateException("Can't save to non-existent file!");
+        if (file.getParentFile() != null)
+            file.getParentFile().mkdirs();
+
+        ResourceSystem.println("FileDB", "Writing database to " + file.getAbsolutePath());
+
+        // Build next to the database and swap it in once it's complete,
+        // so a failed write can't leave a truncated database behind.
+        File temp = new File(file.getAbsolutePath() + ".tmp");
+        try
+        {
+            try (FileChannel channel = FileChannel.open(temp.toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+            {
+                this.build(channel);
+            }
+
+            try
+            {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException ex)
+            {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch (IOException ex)
+        {
+            ResourceSystem.println("FileDB", "Failed to write database to " +
+                                             file.getAbsolutePath());
+            temp.delete();
+            return false;
+        }
+
+        // Everything in the journal is part of the database now.
+        File journal = FileDB.getJournalFile(file);
+        if (journal.exists() && !journal.delete())
+            ResourceSystem.println("FileDB", "Failed to delete stale journal at " +
+                                             journal.getAbsolutePath());
+
+        this.dirty.clear();
+        this.hasChanges = false;
+        return true;
+    }
+
+    /**
+     * Saves only the rows that changed since the last save by appending
+     * them to the change journal next to the database, which gets
+     * replayed the next time the database is loaded.
+     * <p>
+     * The game doesn't know about journals, so compact(File) should still be used
+     * before the database is handed off.
+     *
+     * @param file Database file the journal belongs to
+     * @return Whether or not this operation was successful
+     */
+    public boolean saveJournal(File file)
+    {
+        if (file == null)
+            throw new IllegalStateException("Can't save to non-existent file!");
+        if (!file.exists()) return this.compact(file);
+        if (this.dirty.isEmpty())
+        {
+            this.hasChanges = false;
+            return true;
+        }
+
+        File journal = FileDB.getJournalFile(file);
+        boolean isValid = journal.exists() && FileDB.isJournalValid(file, journal);
+        try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(journal, isValid))))
+        {
+            if (!isValid)
+            {
+                stream.writeInt(JOURNAL_MAGIC);
+                stream.writeInt(JOURNAL_VERSION);
+                stream.writeLong(file.length());
+                stream.writeLong(file.lastModified());
+            }
+
+            for (long guid : this.dirty.keys())
+            {
+                FileDBRow entry = this.dirty.get(guid);
+                if (entry == null)
+                {
+                    stream.writeByte(JOURNAL_REMOVE);
+                    stream.writeInt((int) guid);
+                    continue;
+                }
+
+                byte[] path = entry.getPath().getBytes(StandardCharsets.UTF_8);
+                stream.writeByte(JOURNAL_PUT);
+                stream.writeInt((int) guid);
+                stream.writeInt(path.length);
+                stream.write(path);
+                stream.writeLong(entry.getDate());
+                stream.writeInt((int) entry.getSize());
+                stream.write(entry.getSHA1().getHash());
+            }
+        }
+        catch (IOException ex)
+        {
+            ResourceSystem.println("FileDB", "Failed to write journal to " +
+                                             journal.getAbsolutePath());
+            return false;
+        }
+
+        this.dirty.clear();
+        this.hasChanges = false;
+        return true;
+    }
+
+    /**
+     * Folds the change journal into the database file it was loaded from,
+     * so the game sees every saved change. Nothing is written if there's
+     * no journal, or if there are changes that haven't been saved.
+     *
+     * @return Whether the database file is up to date with the journal
+     */
+    public boolean compactJournal()
+    {
+        File file = this.getFile();
+        if (file == null || !FileDB.getJournalFile(file).exists()) return true;
+        if (this.hasChanges || !this.dirty.isEmpty()) return false;
+        return this.compact(file);
+    }
+
+    /**
+     * Gets the change journal file associated with a database.
+     *
+     * @param file Database file
+     * @return Journal file
+     */
+    public static File getJournalFile(File file)
+    {
+        return new File(file.getAbsolutePath() + ".journal");
+    }
+
+    /**
+     * Checks if a journal was written against the current state of a database file.
+     *
+     * @param file    Database file
+     * @param journal Journal file
+     * @return Whether or not the journal can be applied to the database
+     */
+    private static boolean isJournalValid(File file, File journal)
+    {
+        if (journal.length() < 0x18) return false;
+        try (DataInputStream stream = new DataInputStream(new FileInputStream(journal)))
+        {
+            return stream.readInt() == JOURNAL_MAGIC &&
+                   stream.readInt() == JOURNAL_VERSION &&
+                   stream.readLong() == file.length() &&
+                   stream.readLong() == file.lastModified();
+        }
+        catch (IOException ex) { return false; }
+    }
+
+    /**
+     * Applies the change journal associated with a database file, if it exists.
+     *
+     * @param file Database file
+     */
+    private void replayJournal(File file)
+    {
+        File journal = FileDB.getJournalFile(file);
+        if (!journal.exists()) return;
+        if (!FileDB.isJournalValid(file, journal))
+        {
+            ResourceSystem.println("FileDB", "Ignoring journal at " + journal.getAbsolutePath() +
+                                             ", database was modified after it was written.");
+            return;
+        }
+
+        MemoryInputStream stream = new MemoryInputStream(journal.getAbsolutePath());
+        stream.seek(0x18);
+        while (stream.getOffset() + 0x5 <= stream.getLength())
+        {
+            int op = stream.u8();
+            long guid = stream.u32();
+            if (op == JOURNAL_REMOVE)
+            {
+                FileDBRow entry = this.get(guid);
+                if (entry != null) this.remove(entry);
+                continue;
+            }
+
+            // Stop at a partially written record.
+            if (op != JOURNAL_PUT || stream.getOffset() + 0x4 > stream.getLength()) break;
+            int pathLength = stream.i32();
+            if (stream.getOffset() + pathLength + 0x20 > stream.getLength()) break;
+
+            String path = new String(stream.bytes(pathLength), StandardCharsets.UTF_8);
+            long date = stream.s64();
+            long size = stream.u32();
+            SHA1 sha1 = stream.sha1();
+
+            FileDBRow entry = this.get(guid);
+            if (entry == null) entry = this.newFileDBRow(path, guid);
+            else entry.setPath(path);
+            entry.setSHA1(sha1);
+            entry.setSize(size);
+            entry.setDate(date);
+        }
+
+        // The journal already has all of these changes.
+        this.dirty.clear();
+        this.hasChanges = false;
     }
 
     /**
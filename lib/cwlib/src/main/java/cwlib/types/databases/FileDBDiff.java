@@ -0,0 +1,587 @@
+package cwlib.types.databases;
+
+import cwlib.ex.SerializationException;
+import cwlib.io.streams.MemoryInputStream;
+import cwlib.io.streams.MemoryOutputStream;
+import cwlib.types.data.GUID;
+import cwlib.types.data.SHA1;
+import cwlib.types.databases.FileDBDiff.Change;
+
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Set of changes between two FileDBs, computed by merging
+ * the GUID-sorted indexes of both tables in a single pass.
+ * Rows without a GUID can't be matched that way, so they're
+ * matched by path instead.
+ * <p>
+ * Diffs can be serialized to a compact binary patch, and
+ * applied in bulk via FileDB.patch.
+ */
+public class FileDBDiff implements Iterable<Change>
+{
+    /**
+     * Row doesn't exist in the base database.
+     */
+    public static final int ADDED = 0x1;
+
+    /**
+     * Row doesn't exist in the updated database.
+     */
+    public static final int REMOVED = 0x2;
+
+    /**
+     * Row exists in both databases, but the path differs.
+     */
+    public static final int MOVED = 0x4;
+
+    /**
+     * Row exists in both databases, but the hash or size differs.
+     */
+    public static final int REHASHED = 0x8;
+
+    /**
+     * Header magic for binary patches, "FDBD".
+     */
+    private static final int MAGIC = 0x46444244;
+
+    /**
+     * Version 2 stores the path of removed rows without a GUID,
+     * version 1 patches never contain any rows without a GUID.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Single row change, the row data is read from the table
+     * of the database that introduced the change.
+     */
+    public static final class Change
+    {
+        private final int flags;
+        private final long guid;
+        private final FileDBTable table;
+        private final int index;
+
+        private Change(int flags, long guid, FileDBTable table, int index)
+        {
+            this.flags = flags;
+            this.guid = guid;
+            this.table = table;
+            this.index = index;
+        }
+
+        public int getFlags()
+        {
+            return this.flags;
+        }
+
+        public boolean isAdded()
+        {
+            return (this.flags & ADDED) != 0;
+        }
+
+        public boolean isRemoved()
+        {
+            return (this.flags & REMOVED) != 0;
+        }
+
+        public boolean isMoved()
+        {
+            return (this.flags & MOVED) != 0;
+        }
+
+        public boolean isRehashed()
+        {
+            return (this.flags & REHASHED) != 0;
+        }
+
+        /**
+         * Gets the GUID of the changed row.
+         *
+         * @return GUID of row, or null if the row doesn't have one,
+         * in which case it was matched by path
+         */
+        public GUID getGUID()
+        {
+            if (this.guid == 0) return null;
+            return new GUID(this.guid);
+        }
+
+        /**
+         * Gets the path of the changed row.
+         *
+         * @return Path of row, or null if the row was removed,
+         * unless the row doesn't have a GUID
+         */
+        public String getPath()
+        {
+            if (this.table == null) return null;
+            return this.table.getPath(this.index);
+        }
+
+        public long getDate()
+        {
+            if (this.isRemoved()) return 0;
+            return this.table.getDate(this.index);
+        }
+
+        public long getSize()
+        {
+            if (this.isRemoved()) return 0;
+            return this.table.getSize(this.index);
+        }
+
+        public SHA1 getSHA1()
+        {
+            if (this.isRemoved()) return null;
+            return this.table.getSHA1(this.index);
+        }
+
+        @Override
+        public String toString()
+        {
+            if (this.isRemoved() && this.guid == 0)
+                return String.format("Change (REMOVED, %s)", this.getPath());
+            if (this.isRemoved()) return String.format("Change (REMOVED, g%d)", this.guid);
+            return String.format("Change (%d, %s, %s, g%d)", this.flags, this.getPath(),
+                this.getSHA1(), this.guid);
+        }
+    }
+
+    private final int revision;
+    private final ArrayList<Change> changes;
+    private final ArrayList<Change> conflicts;
+
+    private FileDBDiff(int revision, int capacity)
+    {
+        this.revision = revision;
+        this.changes = new ArrayList<>(capacity);
+        this.conflicts = new ArrayList<>();
+    }
+
+    /**
+     * Reads a binary patch generated by build.
+     *
+     * @param data Binary patch
+     */
+    public FileDBDiff(byte[] data)
+    {
+        MemoryInputStream stream = new MemoryInputStream(data);
+        if (stream.i32() != MAGIC)
+            throw new SerializationException("Invalid FileDB patch, magic does not match!");
+        int version = stream.i32();
+        if (version < 1 || version > VERSION)
+            throw new SerializationException("Unsupported FileDB patch version!");
+
+        this.revision = stream.i32();
+        int count = stream.i32();
+        this.changes = new ArrayList<>(count);
+        this.conflicts = new ArrayList<>();
+
+        // Added and changed rows get packed into a table, so they're
+        // stored the same way as diffs computed in memory, removed rows
+        // without a GUID only need their path.
+        byte[] paths = new byte[Math.max(0, stream.getLength() - stream.getOffset())];
+        int pathSize = 0, rows = 0, keys = 0;
+        int[] pathOffsets = new int[count + 1];
+        long[] dates = new long[count];
+        int[] sizes = new int[count];
+        byte[] hashes = new byte[count * 0x14];
+        int[] guids = new int[count];
+        long[] guidIndex = new long[count];
+        int[] flags = new int[count];
+        long[] removed = new long[count];
+        boolean[] stored = new boolean[count];
+
+        for (int i = 0; i < count; ++i)
+        {
+            flags[i] = stream.u8();
+            long guid = stream.u32();
+            stored[i] = (flags[i] & REMOVED) == 0 || guid == 0;
+            if (!stored[i])
+            {
+                removed[i] = guid;
+                continue;
+            }
+
+            int pathLength = stream.i32();
+            System.arraycopy(data, stream.getOffset(), paths, pathSize, pathLength);
+            stream.seek(pathLength);
+
+            pathOffsets[rows] = pathSize;
+            pathSize += pathLength;
+            if ((flags[i] & REMOVED) == 0)
+            {
+                dates[rows] = stream.s64();
+                sizes[rows] = (int) stream.u32();
+                System.arraycopy(data, stream.getOffset(), hashes, rows * 0x14, 0x14);
+                stream.seek(0x14);
+            }
+            guids[rows] = (int) guid;
+            if (guid != 0)
+                guidIndex[keys++] = FileDBTable.getIndexKey(guid) | rows;
+            rows++;
+        }
+        pathOffsets[rows] = pathSize;
+
+        guidIndex = Arrays.copyOf(guidIndex, keys);
+        Arrays.sort(guidIndex);
+        FileDBTable table = new FileDBTable(this.revision, Arrays.copyOf(paths, pathSize),
+            Arrays.copyOf(pathOffsets, rows + 1), Arrays.copyOf(dates, rows),
+            Arrays.copyOf(sizes, rows), Arrays.copyOf(hashes, rows * 0x14),
+            Arrays.copyOf(guids, rows), guidIndex);
+
+        for (int i = 0, row = 0; i < count; ++i)
+        {
+            if (!stored[i])
+                this.changes.add(new Change(flags[i], removed[i], null, -1));
+            else
+            {
+                this.changes.add(new Change(flags[i], table.getGUID(row), table, row));
+                row++;
+            }
+        }
+    }
+
+
+    /**
+     * Gets the row index of a packed index key.
+     */
+    private static int getIndex(long key)
+    {
+        return (int) key;
+    }
+
+    /**
+     * Advances past any duplicate GUIDs in a table's index,
+     * only the first occurrence of a GUID is used, same as FileDB.
+     */
+    private static int next(LongBuffer index, int position)
+    {
+        long group = index.get(position) >> 32;
+        do position++;
+        while (position < index.limit() && (index.get(position) >> 32) == group);
+        return position;
+    }
+
+    private static long head(LongBuffer index, int position)
+    {
+        if (position == index.limit()) return Long.MAX_VALUE;
+        return index.get(position) >> 32;
+    }
+
+    /**
+     * Computes the change flags between two rows, either of which may not exist.
+     */
+    private static int compare(FileDBTable base, int baseIndex, FileDBTable update,
+                               int updateIndex)
+    {
+        if (baseIndex == -1 && updateIndex == -1) return 0;
+        if (baseIndex == -1) return ADDED;
+        if (updateIndex == -1) return REMOVED;
+        int flags = 0;
+        if (!base.hasSamePath(baseIndex, update, updateIndex)) flags |= MOVED;
+        if (!base.hasSameData(baseIndex, update, updateIndex)) flags |= REHASHED;
+        return flags;
+    }
+
+    /**
+     * Indexes the rows of a table that don't have a GUID by their path,
+     * only the first row with a path is used, same as duplicate GUIDs.
+     */
+    private static HashMap<String, Integer> getUnkeyedRows(FileDBTable table)
+    {
+        HashMap<String, Integer> rows = new HashMap<>();
+        for (int i = 0; i < table.getEntryCount(); ++i)
+        {
+            if (table.getGUID(i) == 0)
+                rows.putIfAbsent(table.getPath(i), i);
+        }
+        return rows;
+    }
+
+    /**
+     * Gets every path of rows without a GUID across several tables, sorted
+     * so the changes come out in the same order every time.
+     */
+    @SafeVarargs
+    private static TreeSet<String> getUnkeyedPaths(HashMap<String, Integer>... tables)
+    {
+        TreeSet<String> paths = new TreeSet<>();
+        for (HashMap<String, Integer> rows : tables)
+            paths.addAll(rows.keySet());
+        return paths;
+    }
+
+    /**
+     * Creates a change for a removed row, rows without a GUID
+     * keep a reference to their row, so they can be found by path.
+     */
+    private static Change removed(long guid, FileDBTable table, int index)
+    {
+        if (guid != 0) return new Change(REMOVED, guid, null, -1);
+        return new Change(REMOVED, 0, table, index);
+    }
+
+    /**
+     * Computes the changes needed to turn one database into another.
+     *
+     * @param base   Original database
+     * @param update Updated database
+     * @return Changes from base to update
+     */
+    public static FileDBDiff compute(FileDBTable base, FileDBTable update)
+    {
+        LongBuffer left = base.getGUIDIndex(), right = update.getGUIDIndex();
+        FileDBDiff diff = new FileDBDiff(update.getRevision(), 0x100);
+
+        int i = 0, j = 0;
+        while (i < left.limit() || j < right.limit())
+        {
+            long l = FileDBDiff.head(left, i), r = FileDBDiff.head(right, j);
+            int baseIndex = (l <= r) ? FileDBDiff.getIndex(left.get(i)) : -1;
+            int updateIndex = (r <= l) ? FileDBDiff.getIndex(right.get(j)) : -1;
+
+            diff.compute(base, baseIndex, update, updateIndex);
+
+            if (baseIndex != -1) i = FileDBDiff.next(left, i);
+            if (updateIndex != -1) j = FileDBDiff.next(right, j);
+        }
+
+        // Rows without a GUID aren't in the GUID indexes, so they're matched by path.
+        HashMap<String, Integer> baseRows = FileDBDiff.getUnkeyedRows(base);
+        HashMap<String, Integer> updateRows = FileDBDiff.getUnkeyedRows(update);
+        for (String path : FileDBDiff.getUnkeyedPaths(baseRows, updateRows))
+            diff.compute(base, baseRows.getOrDefault(path, -1), update,
+                updateRows.getOrDefault(path, -1));
+
+        return diff;
+    }
+
+    /**
+     * Adds the change between two rows, either of which may not exist.
+     */
+    private void compute(FileDBTable base, int baseIndex, FileDBTable update, int updateIndex)
+    {
+        int flags = FileDBDiff.compare(base, baseIndex, update, updateIndex);
+        if (flags == REMOVED)
+            this.changes.add(FileDBDiff.removed(base.getGUID(baseIndex), base, baseIndex));
+        else if (flags != 0)
+            this.changes.add(new Change(flags, update.getGUID(updateIndex), update,
+                updateIndex));
+    }
+
+    /**
+     * Computes a three-way merge of two databases that were both derived from
+     * a common ancestor. The result contains the changes that need to be
+     * applied to ours to include the changes made in theirs.
+     * <p>
+     * Rows that were changed differently in both databases aren't
+     * included in the changes, and are instead reported as conflicts.
+     *
+     * @param ancestor Database both sides were derived from
+     * @param ours     Database the changes will be applied to
+     * @param theirs   Database containing the changes to merge
+     * @return Changes to apply to ours
+     */
+    public static FileDBDiff merge(FileDBTable ancestor, FileDBTable ours, FileDBTable theirs)
+    {
+        LongBuffer a = ancestor.getGUIDIndex(), o = ours.getGUIDIndex(), t =
+            theirs.getGUIDIndex();
+        FileDBDiff diff = new FileDBDiff(ours.getRevision(), 0x100);
+
+        int i = 0, j = 0, k = 0;
+        while (i < a.limit() || j < o.limit() || k < t.limit())
+        {
+            long ah = FileDBDiff.head(a, i), oh = FileDBDiff.head(o, j), th =
+                FileDBDiff.head(t, k);
+            long min = Math.min(ah, Math.min(oh, th));
+
+            int ancestorIndex = (ah == min) ? FileDBDiff.getIndex(a.get(i)) : -1;
+            int ourIndex = (oh == min) ? FileDBDiff.getIndex(o.get(j)) : -1;
+            int theirIndex = (th == min) ? FileDBDiff.getIndex(t.get(k)) : -1;
+
+            if (ancestorIndex != -1) i = FileDBDiff.next(a, i);
+            if (ourIndex != -1) j = FileDBDiff.next(o, j);
+            if (theirIndex != -1) k = FileDBDiff.next(t, k);
+
+            diff.merge(ancestor, ancestorIndex, ours, ourIndex, theirs, theirIndex);
+        }
+
+        // Rows without a GUID aren't in the GUID indexes, so they're matched by path.
+        HashMap<String, Integer> ancestorRows = FileDBDiff.getUnkeyedRows(ancestor);
+        HashMap<String, Integer> ourRows = FileDBDiff.getUnkeyedRows(ours);
+        HashMap<String, Integer> theirRows = FileDBDiff.getUnkeyedRows(theirs);
+        for (String path : FileDBDiff.getUnkeyedPaths(ancestorRows, ourRows, theirRows))
+            diff.merge(ancestor, ancestorRows.getOrDefault(path, -1), ours,
+                ourRows.getOrDefault(path, -1), theirs, theirRows.getOrDefault(path, -1));
+
+        return diff;
+    }
+
+    /**
+     * Merges the change made to a row in theirs, any of the rows may not exist.
+     */
+    private void merge(FileDBTable ancestor, int ancestorIndex, FileDBTable ours,
+                       int ourIndex, FileDBTable theirs, int theirIndex)
+    {
+        // They didn't touch it, nothing to merge.
+        if (FileDBDiff.compare(ancestor, ancestorIndex, theirs, theirIndex) == 0)
+            return;
+
+        // Both sides ended up in the same state.
+        int flags = FileDBDiff.compare(ours, ourIndex, theirs, theirIndex);
+        if (flags == 0) return;
+
+        // If they removed it, it has to still exist in ours to get this far.
+        Change change = (theirIndex == -1) ?
+            FileDBDiff.removed(ours.getGUID(ourIndex), ours, ourIndex) :
+            new Change(flags, theirs.getGUID(theirIndex), theirs, theirIndex);
+
+        if (FileDBDiff.compare(ancestor, ancestorIndex, ours, ourIndex) == 0)
+            this.changes.add(change);
+        else
+            this.conflicts.add(change);
+    }
+
+    @Override
+    public Iterator<Change> iterator()
+    {
+        return this.changes.iterator();
+    }
+
+    public int getRevision()
+    {
+        return this.revision;
+    }
+
+    /**
+     * Gets all changes in this diff.
+     *
+     * @return Read-only list of changes
+     */
+    public List<Change> getChanges()
+    {
+        return Collections.unmodifiableList(this.changes);
+    }
+
+    /**
+     * Gets the changes from a three-way merge that conflicted
+     * with changes in the target database, these are the
+     * changes that would have been made.
+     *
+     * @return Read-only list of conflicting changes
+     */
+    public List<Change> getConflicts()
+    {
+        return Collections.unmodifiableList(this.conflicts);
+    }
+
+    public boolean isEmpty()
+    {
+        return this.changes.isEmpty();
+    }
+
+    /**
+     * Serializes this diff to a binary patch.
+     *
+     * @return Binary patch
+     */
+    public byte[] build()
+    {
+        int size = 0x10;
+        for (Change change : this.changes)
+        {
+            size += 0x5;
+            if (!change.isRemoved())
+                size += 0x24 + change.table.getPathLength(change.index);
+            else if (change.table != null)
+                size += 0x4 + change.table.getPathLength(change.index);
+        }
+
+        MemoryOutputStream stream = new MemoryOutputStream(size);
+        stream.i32(MAGIC);
+        stream.i32(VERSION);
+        stream.i32(this.revision);
+        stream.i32(this.changes.size());
+        for (Change change : this.changes)
+        {
+            stream.u8(change.flags);
+            stream.u32(change.guid);
+
+            // Rows removed by GUID don't need anything else,
+            // removed rows without a GUID are identified by their path.
+            if (change.table == null) continue;
+            byte[] path = change.table.getPathBytes(change.index);
+            stream.i32(path.length);
+            stream.bytes(path);
+            if (change.isRemoved()) continue;
+
+            stream.s64(change.getDate());
+            stream.u32(change.getSize());
+            stream.sha1(change.getSHA1());
+        }
+
+        return stream.getBuffer();
+    }
+
+    /**
+     * Finds the row a change was made to in the database it was computed against.
+     */
+    private static int indexOf(FileDBTable base, Change change)
+    {
+        if (change.guid != 0) return base.indexOf(change.guid);
+        String path = change.getPath();
+        for (int index : base.indicesOf(path))
+        {
+            if (base.getGUID(index) == 0 && base.getPath(index).equals(path))
+                return index;
+        }
+        return -1;
+    }
+
+    /**
+     * Generates a human-readable listing of the changes in this diff.
+     *
+     * @param base Database the diff was computed against, used for the original values
+     * @return Change listing
+     */
+    public String toString(FileDBTable base)
+    {
+        StringBuilder builder = new StringBuilder(this.changes.size() * 0x80);
+        for (Change change : this.changes)
+        {
+            if (change.isAdded())
+            {
+                builder.append(String.format("[+] path=%s size=%s sha1=%s guid=%s\n",
+                    change.getPath(), change.getSize(), change.getSHA1(), change.getGUID()));
+                continue;
+            }
+
+            int index = FileDBDiff.indexOf(base, change);
+            if (change.isRemoved())
+            {
+                builder.append(String.format("[-] path=%s size=%s sha1=%s guid=%s\n",
+                    base.getPath(index), base.getSize(index), base.getSHA1(index),
+                    change.getGUID()));
+                continue;
+            }
+
+            builder.append(String.format(
+                "[~] path=%s->%s size=%s->%s sha1=%s->%s guid=%s->%s\n",
+                base.getPath(index), change.getPath(),
+                base.getSize(index), change.getSize(),
+                base.getSHA1(index), change.getSHA1(),
+                change.getGUID(), change.getGUID()
+            ));
+        }
+        return builder.toString();
+    }
+}
@@ -2,6 +2,7 @@ package cwlib.types.databases;
 
 import cwlib.types.data.GUID;
 import cwlib.types.data.SHA1;
+import cwlib.util.Strings;
 
 public final class FileDBRow extends FileEntry
 {
@@ -10,6 +11,18 @@ public final class FileDBRow extends FileEntry
      */
     private long date;
 
+    /**
+     * Table the fields of this row are read from, rows are only
+     * decoded into their own fields once they're changed.
+     */
+    private FileDBTable table;
+
+    /**
+     * Index of this row in the table of its database, or -1 if the
+     * row was added after the database was loaded.
+     */
+    private final int index;
+
     /**
      * Creates a FileDBRow using default parameters for FileDB.
      * If one wants to create an entry in a database, they should refer to FileDB.newFileEntry
@@ -37,6 +50,41 @@ public final class FileDBRow extends FileEntry
         this.path = path;
         this.date = date;
         this.key = guid;
+        this.index = -1;
+    }
+
+    /**
+     * Creates a FileDBRow backed by a row in a database's table.
+     *
+     * @param database Database that owns this FileDBRow
+     * @param table    Table the database was loaded from
+     * @param index    Index of row in table
+     */
+    FileDBRow(FileDB database, FileDBTable table, int index)
+    {
+        super(database);
+        this.table = table;
+        this.index = index;
+        this.addNode();
+    }
+
+    /**
+     * Copies the fields of this row out of the table, so they can be changed.
+     */
+    private void detach()
+    {
+        if (this.table == null) return;
+        this.path = this.table.getPath(this.index);
+        this.date = this.table.getDate(this.index);
+        this.size = this.table.getSize(this.index);
+        this.sha1 = this.table.getSHA1(this.index);
+        this.key = new GUID(this.table.getGUID(this.index));
+        this.table = null;
+    }
+
+    int getTableIndex()
+    {
+        return this.index;
     }
 
     public FileDB getFileDB()
@@ -44,19 +92,52 @@ public final class FileDBRow extends FileEntry
         return (FileDB) this.source;
     }
 
+    @Override
+    public String getPath()
+    {
+        if (this.table != null) return this.table.getPath(this.index);
+        return this.path;
+    }
+
+    @Override
+    public SHA1 getSHA1()
+    {
+        if (this.table != null) return this.table.getSHA1(this.index);
+        return this.sha1;
+    }
+
+    @Override
+    public long getSize()
+    {
+        if (this.table != null) return this.table.getSize(this.index);
+        return this.size;
+    }
+
+    @Override
+    public Object getKey()
+    {
+        return this.getGUID();
+    }
+
     public long getDate()
     {
+        if (this.table != null) return this.table.getDate(this.index);
         return this.date;
     }
 
     public GUID getGUID()
     {
+        if (this.table != null) return new GUID(this.table.getGUID(this.index));
         return (GUID) this.key;
     }
 
     public void setDate(long date)
     {
+        if (date == this.getDate()) return;
+        this.detach();
         this.date = date;
+        if (this.source != null)
+            this.getFileDB().onRowChange(this);
     }
 
     /**
@@ -67,10 +148,11 @@ public final class FileDBRow extends FileEntry
     public void setGUID(GUID newGUID)
     {
         if (newGUID == null || this.source == null) return;
-        if (newGUID.equals(this.key)) return;
+        if (newGUID.equals(this.getGUID())) return;
         FileDB database = this.getFileDB();
         if (database.get(newGUID) != null)
             throw new IllegalArgumentException("GUID already exists in database!");
+        this.detach();
         database.onGUIDChange(this.getGUID(), newGUID);
         this.key = newGUID;
     }
@@ -85,12 +167,44 @@ public final class FileDBRow extends FileEntry
         this.setGUID(new GUID(newGUID));
     }
 
+    @Override
+    public void setPath(String path)
+    {
+        path = Strings.cleanupPath(path);
+        if (path.equals(this.getPath())) return;
+        this.detach();
+        if (this.source != null)
+            this.getFileDB().onPathChange(this, path);
+        super.setPath(path);
+    }
+
+    @Override
+    public void setSize(long size)
+    {
+        if (size == this.getSize()) return;
+        this.detach();
+        super.setSize(size);
+        if (this.source != null)
+            this.getFileDB().onRowChange(this);
+    }
+
+    @Override
+    public void setSHA1(SHA1 sha1)
+    {
+        if (sha1 == null) sha1 = new SHA1();
+        if (this.getSHA1().equals(sha1)) return;
+        this.detach();
+        if (this.source != null)
+            this.getFileDB().onSHA1Change(this, sha1);
+        super.setSHA1(sha1);
+    }
+
     /**
      * Sets the last modified date to the current system time.
      */
     public void updateDate()
     {
-        this.date = System.currentTimeMillis() / 1000;
+        this.setDate(System.currentTimeMillis() / 1000);
     }
 
     public void setDetails(byte[] data)
@@ -109,13 +223,14 @@ public final class FileDBRow extends FileEntry
         if (entry == null)
             throw new NullPointerException("Entry cannot be null!");
         super.setDetails(entry);
-        this.date = entry.getDate();
+        this.setDate(entry.getDate());
         this.setGUID(entry.getGUID());
     }
 
     @Override
     public String toString()
     {
-        return String.format("FileDBRow (%s, %s, %s)", this.path, this.sha1, this.key);
+        return String.format("FileDBRow (%s, %s, %s)", this.getPath(), this.getSHA1(),
+            this.getGUID());
     }
 }
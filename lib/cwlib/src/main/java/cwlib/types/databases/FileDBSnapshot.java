@@ -0,0 +1,317 @@
+package cwlib.types.databases;
+
+import cwlib.CwlibConfiguration;
+import cwlib.singleton.ResourceSystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshots of parsed FileDB tables, so databases that haven't
+ * changed since the last time they were loaded can be mapped straight
+ * into memory instead of being parsed again.
+ * <p>
+ * A snapshot is keyed by the size, modified time and a hash of the header
+ * of the database it was built from, and gets ignored if any of them differ.
+ * <p>
+ * Tables loaded from a snapshot read their columns from the mapping, which
+ * stays alive until the table is collected. Since a mapping can't be released
+ * explicitly, snapshot files are never written to once they're complete,
+ * every state of a database gets its own snapshot file, and the snapshots of
+ * older states are deleted whenever a new one is written. On platforms that
+ * don't allow deleting mapped files, those get removed by a later write instead.
+ */
+public final class FileDBSnapshot
+{
+    /**
+     * Header magic for snapshots, "FDBS".
+     */
+    private static final int MAGIC = 0x46444253;
+    private static final int VERSION = 3;
+
+    private static final int HEADER_SIZE = 0x30;
+
+    /**
+     * Number of bytes at the start of the database used for the header hash.
+     */
+    private static final int HASHED_HEADER_SIZE = 0x1000;
+
+    private static final ExecutorService snapshotService =
+        Executors.newSingleThreadExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "FileDBSnapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    private FileDBSnapshot() { }
+
+    /**
+     * Gets the prefix shared by the names of every snapshot of a database,
+     * including the ones written before snapshots were named by state.
+     *
+     * @param database Database file
+     * @return Snapshot name prefix
+     */
+    private static String getSnapshotPrefix(File database)
+    {
+        String path = database.getAbsolutePath();
+        return String.format("%s-%08x", database.getName(), path.hashCode());
+    }
+
+    /**
+     * Gets the location of the snapshot for the current state of a database.
+     *
+     * @param database Database file
+     * @return Snapshot file
+     */
+    public static File getSnapshotFile(File database)
+    {
+        return new File(CwlibConfiguration.SNAPSHOT_DIRECTORY,
+            String.format("%s-%x-%x.snapshot", FileDBSnapshot.getSnapshotPrefix(database),
+                database.length(), database.lastModified()));
+    }
+
+    /**
+     * Deletes the snapshots of every other state of a database.
+     *
+     * @param database Database file
+     * @param current  Snapshot to keep
+     */
+    private static void deleteStale(File database, File current)
+    {
+        String prefix = FileDBSnapshot.getSnapshotPrefix(database);
+        File[] snapshots = CwlibConfiguration.SNAPSHOT_DIRECTORY.listFiles((directory, name) ->
+            name.startsWith(prefix) && name.endsWith(".snapshot"));
+        if (snapshots == null) return;
+        for (File snapshot : snapshots)
+        {
+            // Fails while the snapshot is still mapped on some platforms,
+            // it'll get cleaned up the next time a snapshot is written.
+            if (!snapshot.equals(current))
+                snapshot.delete();
+        }
+    }
+
+    /**
+     * Opens a database table, using the snapshot if it's up to date,
+     * otherwise the database is parsed and the snapshot gets
+     * rebuilt in the background.
+     *
+     * @param database Database file
+     * @return Database table
+     */
+    public static FileDBTable open(File database)
+    {
+        FileDBTable table = FileDBSnapshot.load(database);
+        if (table != null) return table;
+
+        long lastModified = database.lastModified();
+        FileDBTable parsed = new FileDBTable(database);
+        snapshotService.submit(() ->
+        {
+            if (database.lastModified() != lastModified) return;
+            FileDBSnapshot.write(database, parsed);
+        });
+        return parsed;
+    }
+
+    /**
+     * Loads the snapshot of a database.
+     *
+     * @param database Database file
+     * @return Database table, or null if there's no up-to-date snapshot
+     */
+    public static FileDBTable load(File database)
+    {
+        File snapshot = FileDBSnapshot.getSnapshotFile(database);
+        if (!snapshot.exists() || !database.exists()) return null;
+
+        try (FileChannel channel = FileChannel.open(snapshot.toPath(), StandardOpenOption.READ))
+        {
+            if (channel.size() < HEADER_SIZE) return null;
+
+            // Validate the header before reading the rest of the snapshot.
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining())
+                if (channel.read(header) == -1) return null;
+            header.flip();
+
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) return null;
+            if (header.getLong() != database.length()) return null;
+            if (header.getLong() != database.lastModified()) return null;
+            if (header.getLong() != FileDBSnapshot.getHeaderHash(database)) return null;
+
+            int revision = header.getInt();
+            int count = header.getInt();
+            int pathSize = header.getInt();
+            int keys = header.getInt();
+
+            long expectedSize = HEADER_SIZE + (count * 0x38L) + (keys * 0x8L) + 0x4 + pathSize;
+            if (count < 0 || pathSize < 0 || keys < 0 || keys > count ||
+                channel.size() != expectedSize) return null;
+
+            // The columns are used straight from the mapping, the mapping itself
+            // outlives the channel, and gets released once the table is collected.
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE,
+                channel.size() - HEADER_SIZE);
+
+            int offset = 0;
+            LongBuffer guidIndex = buffer.slice(offset, keys * 0x8).asLongBuffer();
+            offset += keys * 0x8;
+            LongBuffer hashIndex = buffer.slice(offset, count * 0x8).asLongBuffer();
+            offset += count * 0x8;
+            LongBuffer pathIndex = buffer.slice(offset, count * 0x8).asLongBuffer();
+            offset += count * 0x8;
+            LongBuffer dates = buffer.slice(offset, count * 0x8).asLongBuffer();
+            offset += count * 0x8;
+            IntBuffer pathOffsets = buffer.slice(offset, (count + 1) * 0x4).asIntBuffer();
+            offset += (count + 1) * 0x4;
+            IntBuffer sizes = buffer.slice(offset, count * 0x4).asIntBuffer();
+            offset += count * 0x4;
+            IntBuffer guids = buffer.slice(offset, count * 0x4).asIntBuffer();
+            offset += count * 0x4;
+            ByteBuffer hashes = buffer.slice(offset, count * 0x14);
+            offset += count * 0x14;
+            ByteBuffer paths = buffer.slice(offset, pathSize);
+
+            return new FileDBTable(revision, paths, pathOffsets, dates, sizes, hashes, guids,
+                guidIndex, hashIndex, pathIndex);
+        }
+        catch (IOException ex)
+        {
+            ResourceSystem.println("FileDBSnapshot", "Failed to read snapshot at " +
+                                                     snapshot.getAbsolutePath());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the snapshot of a database.
+     *
+     * @param database Database file the table was read from
+     * @param table    Parsed database table
+     * @return Whether or not this operation was successful
+     */
+    public static boolean write(File database, FileDBTable table)
+    {
+        File snapshot = FileDBSnapshot.getSnapshotFile(database);
+        File temp = new File(snapshot.getAbsolutePath() + ".tmp");
+        if (snapshot.getParentFile() != null)
+            snapshot.getParentFile().mkdirs();
+
+        int count = table.getEntryCount();
+        ByteBuffer paths = table.getPathBlob();
+        LongBuffer guidIndex = table.getGUIDIndex();
+        int pathSize = paths.remaining(), keys = guidIndex.remaining();
+        long size = HEADER_SIZE + (count * 0x38L) + (keys * 0x8L) + 0x4 + pathSize;
+
+        try
+        {
+            long length = database.length();
+            long lastModified = database.lastModified();
+            long headerHash = FileDBSnapshot.getHeaderHash(database);
+
+            try (FileChannel channel = FileChannel.open(temp.toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+            {
+                ByteBuffer buffer = ByteBuffer.allocate((int) size);
+
+                buffer.putInt(MAGIC);
+                buffer.putInt(VERSION);
+                buffer.putLong(length);
+                buffer.putLong(lastModified);
+                buffer.putLong(headerHash);
+                buffer.putInt(table.getRevision());
+                buffer.putInt(count);
+                buffer.putInt(pathSize);
+                buffer.putInt(keys);
+
+                // 64-bit columns come first so everything stays aligned when mapped.
+                buffer.asLongBuffer().put(guidIndex);
+                buffer.position(buffer.position() + keys * 0x8);
+                buffer.asLongBuffer().put(table.getHashIndex());
+                buffer.position(buffer.position() + count * 0x8);
+                buffer.asLongBuffer().put(table.getPathIndex());
+                buffer.position(buffer.position() + count * 0x8);
+                buffer.asLongBuffer().put(table.getDates());
+                buffer.position(buffer.position() + count * 0x8);
+                buffer.asIntBuffer().put(table.getPathOffsets());
+                buffer.position(buffer.position() + (count + 1) * 0x4);
+                buffer.asIntBuffer().put(table.getSizes());
+                buffer.position(buffer.position() + count * 0x4);
+                buffer.asIntBuffer().put(table.getGUIDs());
+                buffer.position(buffer.position() + count * 0x4);
+                buffer.put(table.getHashes());
+                buffer.put(paths);
+
+                buffer.flip();
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+            }
+
+            // The database changed while we were writing, don't
+            // bother keeping a snapshot that's already stale.
+            if (database.lastModified() != lastModified || database.length() != length)
+            {
+                Files.deleteIfExists(temp.toPath());
+                return false;
+            }
+
+            try
+            {
+                Files.move(temp.toPath(), snapshot.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException ex)
+            {
+                Files.move(temp.toPath(), snapshot.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch (IOException ex)
+        {
+            ResourceSystem.println("FileDBSnapshot", "Failed to write snapshot to " +
+                                                     snapshot.getAbsolutePath());
+            temp.delete();
+            return false;
+        }
+
+        FileDBSnapshot.deleteStale(database, snapshot);
+        return true;
+    }
+
+    /**
+     * Hashes the start of a database, catches databases that were replaced
+     * without their size or modified time changing.
+     *
+     * @param database Database file
+     * @return CRC32 of the start of the database
+     */
+    private static long getHeaderHash(File database) throws IOException
+    {
+        try (RandomAccessFile file = new RandomAccessFile(database, "r"))
+        {
+            byte[] header = new byte[(int) Math.min(file.length(), HASHED_HEADER_SIZE)];
+            file.readFully(header);
+            CRC32 crc = new CRC32();
+            crc.update(header);
+            return crc.getValue();
+        }
+    }
+}
@@ -0,0 +1,690 @@
+package cwlib.types.databases;
+
+import cwlib.io.streams.MemoryInputStream;
+import cwlib.types.data.GUID;
+import cwlib.types.data.SHA1;
+import cwlib.types.databases.FileDBTable.Row;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntPredicate;
+
+/**
+ * Read-only columnar representation of a FileDB.
+ * <p>
+ * Paths are packed into a single UTF-8 blob, and every other
+ * column is stored in a primitive buffer, so parsing allocates a handful
+ * of arrays instead of several objects per row, and snapshots can
+ * back the columns with a mapping. Rows are exposed
+ * as flyweights that decode their fields on demand, use toFileDB
+ * if the database needs to be edited.
+ */
+public class FileDBTable implements Iterable<Row>
+{
+    /**
+     * Flyweight view of a single row in the table.
+     */
+    public final class Row
+    {
+        private final int index;
+
+        private Row(int index)
+        {
+            this.index = index;
+        }
+
+        public int getIndex()
+        {
+            return this.index;
+        }
+
+        public String getPath()
+        {
+            return FileDBTable.this.getPath(this.index);
+        }
+
+        public long getDate()
+        {
+            return FileDBTable.this.getDate(this.index);
+        }
+
+        public long getSize()
+        {
+            return FileDBTable.this.getSize(this.index);
+        }
+
+        public SHA1 getSHA1()
+        {
+            return FileDBTable.this.getSHA1(this.index);
+        }
+
+        public GUID getGUID()
+        {
+            return new GUID(FileDBTable.this.getGUID(this.index));
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("FileDBTable.Row (%s, %s, g%d)", this.getPath(),
+                this.getSHA1(), FileDBTable.this.getGUID(this.index));
+        }
+    }
+
+    private final int revision;
+    private final int count;
+
+    /**
+     * All paths, back to back.
+     */
+    private final ByteBuffer paths;
+
+    /**
+     * Start of each path in the path blob, with a trailing end offset.
+     */
+    private final IntBuffer pathOffsets;
+
+    private final LongBuffer dates;
+    private final IntBuffer sizes;
+
+    /**
+     * SHA1 hashes, 0x14 bytes per row.
+     */
+    private final ByteBuffer hashes;
+
+    private final IntBuffer guids;
+
+    /**
+     * GUID (with the sign bit flipped) in the upper 32 bits and
+     * row index in the lower 32 bits, sorted for binary search.
+     * Rows without a GUID aren't indexed.
+     */
+    private final LongBuffer guidIndex;
+
+    /**
+     * Leading 32 bits of each SHA1 (with the sign bit flipped) in the upper
+     * 32 bits and row index in the lower 32 bits, sorted for binary search.
+     * Built the first time a row is looked up by hash, unless it was
+     * loaded from a snapshot.
+     */
+    private volatile LongBuffer hashIndex;
+
+    /**
+     * Same as the hash index, but keyed by a hash of the case-folded path.
+     */
+    private volatile LongBuffer pathIndex;
+
+    /**
+     * Reads a FileDB table from a file.
+     *
+     * @param file FileDB source file
+     */
+    public FileDBTable(File file)
+    {
+        this(new MemoryInputStream(file.getAbsolutePath()));
+    }
+
+    /**
+     * Reads a FileDB table from a byte array.
+     *
+     * @param data FileDB source buffer
+     */
+    public FileDBTable(byte[] data)
+    {
+        this(new MemoryInputStream(data));
+    }
+
+    /**
+     * Reads a FileDB table from path.
+     *
+     * @param path FileDB source path
+     */
+    public FileDBTable(String path)
+    {
+        this(new File(path));
+    }
+
+    FileDBTable(MemoryInputStream stream)
+    {
+        byte[] buffer = stream.getBuffer();
+
+        this.revision = stream.i32();
+        boolean isLBP3 = (this.revision >> 0x10) >= 0x148;
+        int rowCount = stream.i32();
+
+        // The paths are bounded by the size of the database itself, the blob
+        // gets trimmed once everything has been read.
+        byte[] paths = new byte[Math.max(0, stream.getLength() - stream.getOffset())];
+        int pathSize = 0;
+
+        int[] pathOffsets = new int[rowCount + 1];
+        long[] dates = new long[rowCount];
+        int[] sizes = new int[rowCount];
+        byte[] hashes = new byte[rowCount * 0x14];
+        int[] guids = new int[rowCount];
+        long[] guidIndex = new long[rowCount];
+
+        int keys = 0;
+        for (int index = 0; index < rowCount; ++index)
+        {
+            int pathLength = isLBP3 ? (stream.i16() & 0xFFFF) : stream.i32();
+            int pathStart = stream.getOffset();
+            stream.seek(pathLength);
+
+            long timestamp = isLBP3 ? stream.u32() : stream.s64();
+            long size = stream.u32();
+            int hashStart = stream.getOffset();
+            stream.seek(0x14);
+            long guid = stream.u32();
+
+            /* 	In LittleBigPlanet Vita, some versions of the databases don't store any filenames,
+                only the extensions, so we'll use the hash of the resource in place of a name. */
+            if (pathLength != 0 && buffer[pathStart] == '.')
+            {
+                String extension = new String(buffer, pathStart, pathLength,
+                    StandardCharsets.UTF_8);
+                SHA1 sha1 = new SHA1(Arrays.copyOfRange(buffer, hashStart, hashStart + 0x14));
+                byte[] path = String.format("data/%s%s%s",
+                    FileDB.getFolderFromExtension(extension), sha1, extension)
+                    .getBytes(StandardCharsets.UTF_8);
+                paths = FileDBTable.ensureCapacity(paths, pathSize + path.length);
+                System.arraycopy(path, 0, paths, pathSize, path.length);
+                pathLength = path.length;
+            }
+            else
+            {
+                paths = FileDBTable.ensureCapacity(paths, pathSize + pathLength);
+                System.arraycopy(buffer, pathStart, paths, pathSize, pathLength);
+            }
+
+            pathOffsets[index] = pathSize;
+            pathSize += pathLength;
+
+            dates[index] = timestamp;
+            sizes[index] = (int) size;
+            System.arraycopy(buffer, hashStart, hashes, index * 0x14, 0x14);
+            guids[index] = (int) guid;
+
+            // Rows without a GUID are kept, they just can't be looked up by GUID.
+            if (guid != 0)
+                guidIndex[keys++] = FileDBTable.getIndexKey(guid) | index;
+        }
+        pathOffsets[rowCount] = pathSize;
+
+        this.count = rowCount;
+        this.paths = ByteBuffer.wrap(Arrays.copyOf(paths, pathSize));
+        this.pathOffsets = IntBuffer.wrap(pathOffsets);
+        this.dates = LongBuffer.wrap(dates);
+        this.sizes = IntBuffer.wrap(sizes);
+        this.hashes = ByteBuffer.wrap(hashes);
+        this.guids = IntBuffer.wrap(guids);
+        if (keys != rowCount)
+            guidIndex = Arrays.copyOf(guidIndex, keys);
+
+        // Row indices are in the lower bits, so duplicate GUIDs will
+        // sort with the first occurrence first, same as FileDB.
+        Arrays.sort(guidIndex);
+        this.guidIndex = LongBuffer.wrap(guidIndex);
+    }
+
+    /**
+     * Creates a table from already parsed columns.
+     */
+    FileDBTable(int revision, byte[] paths, int[] pathOffsets, long[] dates, int[] sizes,
+                byte[] hashes, int[] guids, long[] guidIndex)
+    {
+        this(revision, ByteBuffer.wrap(paths), IntBuffer.wrap(pathOffsets),
+            LongBuffer.wrap(dates), IntBuffer.wrap(sizes), ByteBuffer.wrap(hashes),
+            IntBuffer.wrap(guids), LongBuffer.wrap(guidIndex), null, null);
+    }
+
+    /**
+     * Creates a table from columns that are already laid out in buffers,
+     * e.g. columns mapped from a snapshot, the buffers are used as-is.
+     * The hash and path indexes are optional, and get built on first use if missing.
+     */
+    FileDBTable(int revision, ByteBuffer paths, IntBuffer pathOffsets, LongBuffer dates,
+                IntBuffer sizes, ByteBuffer hashes, IntBuffer guids, LongBuffer guidIndex,
+                LongBuffer hashIndex, LongBuffer pathIndex)
+    {
+        this.revision = revision;
+        this.count = guids.limit();
+        this.paths = paths;
+        this.pathOffsets = pathOffsets;
+        this.dates = dates;
+        this.sizes = sizes;
+        this.hashes = hashes;
+        this.guids = guids;
+        this.guidIndex = guidIndex;
+        this.hashIndex = hashIndex;
+        this.pathIndex = pathIndex;
+    }
+
+    /**
+     * Creates an empty table.
+     *
+     * @param revision Game database version
+     */
+    FileDBTable(int revision)
+    {
+        this(revision, new byte[0], new int[1], new long[0], new int[0], new byte[0],
+            new int[0], new long[0]);
+    }
+
+    private static byte[] ensureCapacity(byte[] buffer, int size)
+    {
+        if (size <= buffer.length) return buffer;
+        return Arrays.copyOf(buffer, Math.max(buffer.length * 2, size));
+    }
+
+    /**
+     * Gets the key of a GUID in the GUID index, the row index
+     * gets stored in the lower 32 bits.
+     *
+     * @param guid GUID to get key of
+     * @return Index key for GUID
+     */
+    static long getIndexKey(long guid)
+    {
+        return (guid ^ 0x80000000L) << 32;
+    }
+
+    /**
+     * Binary searches a sorted index, same contract as Arrays.binarySearch.
+     */
+    private static int binarySearch(LongBuffer index, long key)
+    {
+        int low = 0, high = index.limit() - 1;
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            long value = index.get(middle);
+            if (value < key) low = middle + 1;
+            else if (value > key) high = middle - 1;
+            else return middle;
+        }
+        return -(low + 1);
+    }
+
+    @Override
+    public Iterator<Row> iterator()
+    {
+        return new Iterator<>()
+        {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                return this.index < count;
+            }
+
+            @Override
+            public Row next()
+            {
+                if (!this.hasNext()) throw new NoSuchElementException();
+                return new Row(this.index++);
+            }
+        };
+    }
+
+    public int getRevision()
+    {
+        return this.revision;
+    }
+
+    ByteBuffer getPathBlob()
+    {
+        return this.paths.duplicate();
+    }
+
+    IntBuffer getPathOffsets()
+    {
+        return this.pathOffsets.duplicate();
+    }
+
+    LongBuffer getDates()
+    {
+        return this.dates.duplicate();
+    }
+
+    IntBuffer getSizes()
+    {
+        return this.sizes.duplicate();
+    }
+
+    ByteBuffer getHashes()
+    {
+        return this.hashes.duplicate();
+    }
+
+    IntBuffer getGUIDs()
+    {
+        return this.guids.duplicate();
+    }
+
+    LongBuffer getGUIDIndex()
+    {
+        return this.guidIndex.duplicate();
+    }
+
+    /**
+     * Gets the number of rows in this table.
+     *
+     * @return Number of rows
+     */
+    public int getEntryCount()
+    {
+        return this.count;
+    }
+
+    /**
+     * Gets a flyweight for the row at an index.
+     *
+     * @param index Index of row
+     * @return Row at index
+     */
+    public Row getRow(int index)
+    {
+        if (index < 0 || index >= this.count)
+            throw new IndexOutOfBoundsException("Row index out of bounds!");
+        return new Row(index);
+    }
+
+    public String getPath(int index)
+    {
+        return new String(this.getPathBytes(index), StandardCharsets.UTF_8).replace("\0", "");
+    }
+
+    /**
+     * Gets the raw bytes of a path in the path blob.
+     *
+     * @param index Index of row
+     * @return Path bytes
+     */
+    byte[] getPathBytes(int index)
+    {
+        byte[] path = new byte[this.getPathLength(index)];
+        this.paths.get(this.pathOffsets.get(index), path);
+        return path;
+    }
+
+    public long getDate(int index)
+    {
+        return this.dates.get(index);
+    }
+
+    public long getSize(int index)
+    {
+        return this.sizes.get(index) & 0xFFFFFFFFL;
+    }
+
+    public SHA1 getSHA1(int index)
+    {
+        byte[] hash = new byte[0x14];
+        this.hashes.get(index * 0x14, hash);
+        return new SHA1(hash);
+    }
+
+    public long getGUID(int index)
+    {
+        return this.guids.get(index) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Finds the index of the row with a specified GUID.
+     *
+     * @param guid GUID to find
+     * @return Index of row, or -1 if it doesn't exist
+     */
+    public int indexOf(long guid)
+    {
+        if (guid <= 0 || guid > 0xFFFFFFFFL) return -1;
+        long key = FileDBTable.getIndexKey(guid);
+        int index = FileDBTable.binarySearch(this.guidIndex, key);
+
+        // Only an exact hit when the GUID belongs to row 0, otherwise
+        // the insertion point is the first row with the GUID.
+        if (index < 0) index = -(index + 1);
+        if (index == this.guidIndex.limit()) return -1;
+        long found = this.guidIndex.get(index);
+        if ((found & 0xFFFFFFFF00000000L) != key) return -1;
+        return (int) found;
+    }
+
+    /**
+     * Gets the length of a path in the path blob.
+     *
+     * @param index Index of row
+     * @return Length of path in bytes
+     */
+    int getPathLength(int index)
+    {
+        return this.pathOffsets.get(index + 1) - this.pathOffsets.get(index);
+    }
+
+    /**
+     * Checks if a row has the same path as a row in another table.
+     */
+    boolean hasSamePath(int index, FileDBTable other, int otherIndex)
+    {
+        int length = this.getPathLength(index);
+        if (length != other.getPathLength(otherIndex)) return false;
+        return this.paths.slice(this.pathOffsets.get(index), length)
+            .equals(other.paths.slice(other.pathOffsets.get(otherIndex), length));
+    }
+
+    /**
+     * Checks if a row has the same hash and size as a row in another table.
+     */
+    boolean hasSameData(int index, FileDBTable other, int otherIndex)
+    {
+        if (this.sizes.get(index) != other.sizes.get(otherIndex)) return false;
+        return this.hashes.slice(index * 0x14, 0x14)
+            .equals(other.hashes.slice(otherIndex * 0x14, 0x14));
+    }
+
+    /**
+     * Hashes a path the same way regardless of the case of its ASCII characters.
+     */
+    private static int hashPath(ByteBuffer path, int start, int end)
+    {
+        int hash = 0;
+        for (int i = start; i < end; ++i)
+        {
+            byte c = path.get(i);
+            if (c >= 'A' && c <= 'Z') c += 0x20;
+            hash = 31 * hash + c;
+        }
+        return hash;
+    }
+
+    /**
+     * Packs 32-bit keys and row indices into a sorted index.
+     */
+    private static LongBuffer buildIndex(int[] keys)
+    {
+        long[] index = new long[keys.length];
+        for (int i = 0; i < keys.length; ++i)
+            index[i] = FileDBTable.getIndexKey(keys[i] & 0xFFFFFFFFL) | i;
+        Arrays.sort(index);
+        return LongBuffer.wrap(index);
+    }
+
+    LongBuffer getHashIndex()
+    {
+        LongBuffer index = this.hashIndex;
+        if (index == null)
+        {
+            int[] keys = new int[this.count];
+            for (int i = 0; i < this.count; ++i)
+                keys[i] = this.hashes.getInt(i * 0x14);
+            index = FileDBTable.buildIndex(keys);
+            this.hashIndex = index;
+        }
+        return index.duplicate();
+    }
+
+    LongBuffer getPathIndex()
+    {
+        LongBuffer index = this.pathIndex;
+        if (index == null)
+        {
+            int[] keys = new int[this.count];
+            for (int i = 0; i < this.count; ++i)
+                keys[i] = FileDBTable.hashPath(this.paths, this.pathOffsets.get(i),
+                    this.pathOffsets.get(i + 1));
+            index = FileDBTable.buildIndex(keys);
+            this.pathIndex = index;
+        }
+        return index.duplicate();
+    }
+
+    /**
+     * Collects the rows in a sorted index that have a key and match a predicate,
+     * keys are only hashes, so every row with the key has to be checked.
+     */
+    private static int[] collect(LongBuffer index, int key, IntPredicate matches)
+    {
+        long target = FileDBTable.getIndexKey(key & 0xFFFFFFFFL);
+        int start = FileDBTable.binarySearch(index, target);
+        if (start < 0) start = -(start + 1);
+        int end = start;
+        while (end < index.limit() && (index.get(end) & 0xFFFFFFFF00000000L) == target) end++;
+
+        int[] indices = new int[end - start];
+        int found = 0;
+        for (int i = start; i < end; ++i)
+        {
+            int row = (int) index.get(i);
+            if (matches.test(row)) indices[found++] = row;
+        }
+        return (found == indices.length) ? indices : Arrays.copyOf(indices, found);
+    }
+
+    private boolean hasHash(int index, byte[] hash)
+    {
+        return this.hashes.slice(index * 0x14, 0x14).equals(ByteBuffer.wrap(hash));
+    }
+
+    private boolean hasPath(int index, byte[] target)
+    {
+        int start = this.pathOffsets.get(index);
+        int length = this.pathOffsets.get(index + 1) - start;
+        if (length != target.length) return false;
+        for (int j = 0; j < length; ++j)
+        {
+            byte c = this.paths.get(start + j);
+            if (c >= 'A' && c <= 'Z') c += 0x20;
+            if (c != target[j]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Finds the index of the first row with a specified SHA1.
+     *
+     * @param sha1 SHA1 to find
+     * @return Index of row, or -1 if it doesn't exist
+     */
+    public int indexOf(SHA1 sha1)
+    {
+        int[] indices = this.indicesOf(sha1);
+        return (indices.length == 0) ? -1 : indices[0];
+    }
+
+    /**
+     * Finds the indices of every row with a specified SHA1.
+     *
+     * @param sha1 SHA1 to find
+     * @return Indices of rows in ascending order
+     */
+    public int[] indicesOf(SHA1 sha1)
+    {
+        if (sha1 == null || this.count == 0) return new int[0];
+        byte[] hash = sha1.getHash();
+        return FileDBTable.collect(this.getHashIndex(), ByteBuffer.wrap(hash).getInt(0),
+            row -> this.hasHash(row, hash));
+    }
+
+    /**
+     * Finds the index of the first row with a specified path.
+     *
+     * @param path Path to find, case-insensitive
+     * @return Index of row, or -1 if it doesn't exist
+     */
+    public int indexOf(String path)
+    {
+        int[] indices = this.indicesOf(path);
+        return (indices.length == 0) ? -1 : indices[0];
+    }
+
+    /**
+     * Finds the indices of every row with a specified path.
+     *
+     * @param path Path to find, case-insensitive
+     * @return Indices of rows in ascending order
+     */
+    public int[] indicesOf(String path)
+    {
+        if (path == null)
+            throw new NullPointerException("Can't find null path!");
+        if (this.count == 0) return new int[0];
+        byte[] target = path.toLowerCase().getBytes(StandardCharsets.UTF_8);
+        return FileDBTable.collect(this.getPathIndex(),
+            FileDBTable.hashPath(ByteBuffer.wrap(target), 0, target.length),
+            row -> this.hasPath(row, target));
+    }
+
+    /**
+     * Gets a row with specified GUID.
+     *
+     * @param guid GUID to find
+     * @return Row with GUID, or null if it doesn't exist
+     */
+    public Row get(long guid)
+    {
+        int index = this.indexOf(guid);
+        if (index == -1) return null;
+        return new Row(index);
+    }
+
+    /**
+     * Gets a row with specified GUID.
+     *
+     * @param guid GUID to find
+     * @return Row with GUID, or null if it doesn't exist
+     */
+    public Row get(GUID guid)
+    {
+        if (guid == null) return null;
+        return this.get(guid.getValue());
+    }
+
+    /**
+     * Checks if a GUID exists in the table.
+     *
+     * @param guid GUID to find
+     * @return Whether or not the GUID exists.
+     */
+    public boolean exists(long guid)
+    {
+        return this.indexOf(guid) != -1;
+    }
+
+    /**
+     * Creates an editable FileDB backed by this table.
+     *
+     * @return FileDB containing every row in this table
+     */
+    public FileDB toFileDB()
+    {
+        return new FileDB(this);
+    }
+}
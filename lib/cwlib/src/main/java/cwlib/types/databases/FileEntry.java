@@ -47,9 +47,9 @@ public abstract class FileEntry
     private ResourceInfo info;
 
     /**
-     * Map of resources assigned to this entry.
+     * Map of resources assigned to this entry, allocated on first use.
      */
-    private final Object[] resources = new Object[ResourceKeys.MAX_ENTRIES];
+    private Object[] resources;
 
     /**
      * Creates a FileEntry using default parameters for FileDB.
@@ -80,16 +80,35 @@ public abstract class FileEntry
         this.path = path;
         this.size = size;
         this.sha1 = sha1;
+        this.addNode();
+    }
 
-        if (ResourceSystem.GUI_MODE)
-        {
-            boolean isHidden = this.path.endsWith(".farc") ||
-                               this.path.endsWith(".edat") ||
-                               this.path.endsWith(".sdat") ||
-                               this.path.equals("");
-            this.node = isHidden ? null : source.addNode(this);
-        }
-        else this.node = null;
+    /**
+     * Creates a FileEntry whose fields are provided by the subclass,
+     * the subclass has to call addNode once it's able to provide a path.
+     *
+     * @param source Database that owns this FileEntry
+     */
+    protected FileEntry(FileData source)
+    {
+        if (source == null)
+            throw new NullPointerException("File database provided to FileEntry constructor" +
+                                           " cannot be null!");
+        this.source = source;
+    }
+
+    /**
+     * Adds this entry to the tree of its database, if running with a GUI.
+     */
+    protected final void addNode()
+    {
+        if (!ResourceSystem.GUI_MODE) return;
+        String path = this.getPath();
+        boolean isHidden = path.endsWith(".farc") ||
+                           path.endsWith(".edat") ||
+                           path.endsWith(".sdat") ||
+                           path.equals("");
+        this.node = isHidden ? null : this.source.addNode(this);
     }
 
     public FileData getSource()
@@ -134,9 +153,10 @@ public abstract class FileEntry
      */
     public String getName()
     {
-        int index = this.path.lastIndexOf("/");
-        if (index == -1) return this.path;
-        return this.path.substring(index + 1);
+        String path = this.getPath();
+        int index = path.lastIndexOf("/");
+        if (index == -1) return path;
+        return path.substring(index + 1);
     }
 
     /**
@@ -146,9 +166,10 @@ public abstract class FileEntry
      */
     public String getFolder()
     {
-        int index = this.path.lastIndexOf("/");
+        String path = this.getPath();
+        int index = path.lastIndexOf("/");
         if (index == -1) return "";
-        return this.path.substring(0, index);
+        return path.substring(0, index);
     }
 
     /**
@@ -159,7 +180,7 @@ public abstract class FileEntry
     public void setPath(String path)
     {
         path = Strings.cleanupPath(path);
-        if (path.equals(this.path)) return;
+        if (path.equals(this.getPath())) return;
 
         this.path = path;
         if (this.node != null)
@@ -191,28 +212,29 @@ public abstract class FileEntry
     public void setFolder(String folder)
     {
         folder = Strings.cleanupPath(folder);
-        int index = this.path.lastIndexOf("/");
+        String path = this.getPath();
+        int index = path.lastIndexOf("/");
         if (index == -1)
         {
-            this.setPath(folder + "/" + this.path);
+            this.setPath(folder + "/" + path);
             return;
         }
         this.setPath(
-            folder + this.path.substring(index)
+            folder + path.substring(index)
         );
     }
 
     public void setSHA1(SHA1 sha1)
     {
         if (sha1 == null) sha1 = new SHA1();
-        if (this.sha1.equals(sha1)) return;
+        if (this.getSHA1().equals(sha1)) return;
         this.sha1 = sha1;
         this.source.setHasChanges();
     }
 
     public void setSize(long size)
     {
-        if (size == this.size) return;
+        if (size == this.getSize()) return;
         this.size = size;
         this.source.setHasChanges();
     }
@@ -255,6 +277,11 @@ public abstract class FileEntry
 
     public void setResource(int key, Object resource)
     {
+        if (this.resources == null)
+        {
+            if (resource == null) return;
+            this.resources = new Object[ResourceKeys.MAX_ENTRIES];
+        }
         this.resources[key] = resource;
     }
 
@@ -266,6 +293,7 @@ public abstract class FileEntry
     @SuppressWarnings("unchecked")
     public <T> T getResource(int key)
     {
+        if (this.resources == null) return null;
         Object value = this.resources[key];
         if (value == null) return null;
         return (T) value;
@@ -274,6 +302,6 @@ public abstract class FileEntry
     @Override
     public String toString()
     {
-        return String.format("FileEntry (%s, %s)", this.path, this.sha1);
+        return String.format("FileEntry (%s, %s)", this.getPath(), this.getSHA1());
     }
 }
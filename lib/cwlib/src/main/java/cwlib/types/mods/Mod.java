@@ -26,21 +26,29 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.*;
-import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystem;
 import java.nio.file.*;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 public class Mod extends FileDB
 {
     private static final String LEGACY_PASSWORD = "purchasecollege";
 
+    /**
+     * Size of the buffer used when streaming a mod to disk.
+     */
+    private static final int STREAM_BUFFER_SIZE = 0x10000;
+
     private SaveArchive archive;
 
     private ModInfo config = new ModInfo();
@@ -114,7 +122,7 @@ public class Mod extends FileDB
 
             super.process(new MemoryInputStream(Files.readAllBytes(databasePath)));
 
-            for (FileDBRow entry : this.entries)
+            for (FileDBRow entry : this)
             {
                 if (this.archive != null && archive.exists(entry.getSHA1())) continue;
                 Path filePath = fileSystem.getPath(entry.getPath());
@@ -340,9 +348,6 @@ public class Mod extends FileDB
     {
         if (file == null) return false;
 
-        byte[] serializedDatabase = this.build();
-        byte[] serializedArchive = this.archive.build(false);
-
         byte[] image = null;
         if (this.icon != null)
         {
@@ -375,38 +380,83 @@ public class Mod extends FileDB
             patches =
                 GsonUtils.toJSON(this.patches.toArray(ModPatch[]::new)).getBytes(StandardCharsets.UTF_8);
 
-        File workingZip = new File(ResourceSystem.getWorkingDirectory(), "working.mod");
+        // The mod is written next to the destination and moved over it,
+        // so a failed save never leaves a partially written mod behind.
+        File temp = new File(file.getAbsolutePath() + ".tmp");
+        try
+        {
+            try (ZipOutputStream zip =
+                     new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(temp),
+                         STREAM_BUFFER_SIZE)))
+            {
+                WritableByteChannel channel = Channels.newChannel(zip);
 
-        Map<String, String> env = new HashMap<>();
-        env.put("create", "true");
+                zip.putNextEntry(new ZipEntry("config.json"));
+                zip.write(config);
+                if (image != null)
+                {
+                    zip.putNextEntry(new ZipEntry("icon.png"));
+                    zip.write(image);
+                }
+                if (patches != null)
+                {
+                    zip.putNextEntry(new ZipEntry("patches.json"));
+                    zip.write(patches);
+                }
 
-        URI uri =
-            URI.create("jar:file:" + Paths.get(workingZip.getAbsolutePath()).toUri().getPath());
-        try (FileSystem filesystem = FileSystems.newFileSystem(uri, env, null))
-        {
-            Files.write(filesystem.getPath("config.json"), config);
-            if (image != null)
-                Files.write(filesystem.getPath("icon.png"), image);
-            if (patches != null)
-                Files.write(filesystem.getPath("patches.json"), patches);
-            Files.write(filesystem.getPath("data.map"), serializedDatabase);
-            Files.write(filesystem.getPath("data.farc"), serializedArchive);
+                zip.putNextEntry(new ZipEntry("data.map"));
+                this.build(channel);
+
+                // Resources in the archive are generally already compressed, so the
+                // archive is stored as-is. Stored entries need their size and CRC
+                // up front, so the archive gets streamed through a checksum first.
+                CRC32 crc = new CRC32();
+                long[] size = new long[1];
+                this.archive.build(new WritableByteChannel()
+                {
+                    @Override
+                    public int write(ByteBuffer src)
+                    {
+                        int count = src.remaining();
+                        crc.update(src);
+                        size[0] += count;
+                        return count;
+                    }
+
+                    @Override
+                    public boolean isOpen() { return true; }
+
+                    @Override
+                    public void close() { }
+                }, false);
+
+                ZipEntry archiveEntry = new ZipEntry("data.farc");
+                archiveEntry.setMethod(ZipEntry.STORED);
+                archiveEntry.setSize(size[0]);
+                archiveEntry.setCompressedSize(size[0]);
+                archiveEntry.setCrc(crc.getValue());
+                zip.putNextEntry(archiveEntry);
+                this.archive.build(channel, false);
+                zip.closeEntry();
+            }
+
+            try
+            {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException ex)
+            {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
         }
         catch (IOException ex)
         {
             Logger.getLogger(Mod.class.getName()).log(Level.SEVERE, null, ex);
+            temp.delete();
+            return false;
         }
 
-        try
-        {
-            Files.deleteIfExists(file.toPath());
-            Files.copy(workingZip.toPath(), file.toPath());
-        }
-        catch (IOException ex) { System.err.println("There was an error copying mod file."); }
-
-        try { Files.deleteIfExists(workingZip.toPath()); }
-        catch (IOException ex) { System.err.println("There was an error deleting temp file."); }
-
         if (file.equals(this.getFile()))
             this.hasChanges = false;
 
@@ -26,6 +26,7 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.stream.IntStream;
 
 import javax.swing.JOptionPane;
 
@@ -79,19 +80,18 @@ public class BigSave extends FileData
 
             // Can't import a download if they're not actually in the data.
             if (slot.root == null || slot.root.isGUID()) continue;
-            byte[] rootLevel = archive.extract(slot.root.getSHA1());
-            if (rootLevel == null) continue;
+            if (!archive.exists(slot.root.getSHA1())) continue;
 
             String levelName = ((slot.name.isEmpty()) ? "Unnamed Level" : slot.name).replaceAll("/", "&#x2f;");
             String rootFolder = "downloaded_levels/" + levelName + "/";
             for (Fat fat : archive)
             {
                 if (fat.getSHA1().equals(slot.root.getSHA1())) continue;
-                byte[] data = fat.extract();
-                this.entries.add(new SaveEntry(this, rootFolder + this.generatePath(data, fat.getSHA1()), data.length, fat.getSHA1()));
+                byte[] header = archive.peek(fat.getSHA1(), 0x4);
+                this.entries.add(new SaveEntry(this, rootFolder + this.generatePath(header, fat.getSHA1()), fat.getSize(), fat.getSHA1()));
             }
 
-            this.entries.add(new SaveEntry(this, slot, rootFolder + levelName + ".bin", rootLevel.length, slot.root.getSHA1()));
+            this.entries.add(new SaveEntry(this, slot, rootFolder + levelName + ".bin", archive.getSize(slot.root.getSHA1()), slot.root.getSHA1()));
 
             // Make sure to copy all data into this archive
             this.archive.add(archive);
@@ -123,6 +123,8 @@ public class BigSave extends FileData
         HashSet<SHA1> locked = new HashSet<>();
         locked.add(key.getRootHash());
 
+        // Entries are indexed from the sizes in the FAT and the first few bytes
+        // of each resource, nothing gets fully extracted unless it has to be parsed.
         for (InventoryItem item : this.profile.inventory)
         {
             item.details.translatedLocation =
@@ -131,26 +133,28 @@ public class BigSave extends FileData
                 this.profile.stringTable.get(item.details.categoryIndex);
             ResourceDescriptor plan = item.plan;
             if (plan == null || plan.isGUID()) continue;
-            byte[] data = archive.extract(plan.getSHA1());
-            if (data == null) continue;
-            this.entries.add(new SaveEntry(this, item, this.generatePath(item), data.length,
+            int size = this.archive.getSize(plan.getSHA1());
+            if (size == -1) continue;
+            this.entries.add(new SaveEntry(this, item, this.generatePath(item), size,
                 plan.getSHA1()));
             locked.add(plan.getSHA1());
         }
 
-        for (Slot slot : this.profile.myMoonSlots.values())
+        ArrayList<Slot> slots = new ArrayList<>(this.profile.myMoonSlots.values());
+        RAdventureCreateProfile[] adventures = this.loadAdventures(slots);
+        for (int i = 0; i < slots.size(); ++i)
         {
+            Slot slot = slots.get(i);
             ResourceDescriptor root = (slot.isAdventure()) ? slot.adventure : slot.root;
             if (root == null || root.isGUID()) continue;
-            byte[] data = archive.extract(root.getSHA1());
-            if (data == null) continue;
+            int size = this.archive.getSize(root.getSHA1());
+            if (size == -1) continue;
 
             if (slot.isLevel())
             {
                 String path = "levels/" + ((slot.name.isEmpty()) ? "Unnamed Level" :
                                                slot.name);
-                this.entries.add(new SaveEntry(this, slot, path, data.length,
-                    root.getSHA1()));
+                this.entries.add(new SaveEntry(this, slot, path, size, root.getSHA1()));
                 locked.add(root.getSHA1());
             }
 
@@ -158,18 +162,12 @@ public class BigSave extends FileData
             {
                 String path = "adventures/" + ((slot.name.isEmpty()) ? "Unnamed Adventure" :
                                                    slot.name);
-                SaveEntry adventure = new SaveEntry(this, slot, path, data.length,
-                    root.getSHA1());
+                SaveEntry adventure = new SaveEntry(this, slot, path, size, root.getSHA1());
                 this.entries.add(adventure);
                 locked.add(root.getSHA1());
 
-                RAdventureCreateProfile profile = null;
-                try
-                {
-                    profile =
-                        new SerializedResource(data).loadResource(RAdventureCreateProfile.class);
-                }
-                catch (Exception ex) { continue; }
+                RAdventureCreateProfile profile = adventures[i];
+                if (profile == null) continue;
 
                 for (Slot local : profile.getAdventureSlots().values())
                 {
@@ -177,10 +175,10 @@ public class BigSave extends FileData
                     String localPath = path + "/levels/" + ((local.name.isEmpty()) ?
                                                                 "Unnamed " +
                                                                 "Level" : local.name);
-                    byte[] localData = this.archive.extract(local.root.getSHA1());
-                    if (localData == null) continue;
+                    int localSize = this.archive.getSize(local.root.getSHA1());
+                    if (localSize == -1) continue;
                     this.entries.add(new SaveEntry(this, adventure, local.id, localPath,
-                        localData.length, local.root.getSHA1()));
+                        localSize, local.root.getSHA1()));
                     locked.add(local.root.getSHA1());
                 }
             }
@@ -190,25 +188,60 @@ public class BigSave extends FileData
         {
             SHA1 sha1 = fat.getSHA1();
             if (locked.contains(sha1)) continue;
-            byte[] data = fat.extract();
-            this.entries.add(new SaveEntry(this, this.generatePath(data, sha1), fat.getSize(),
+            byte[] header = this.archive.peek(sha1, 0x4);
+            this.entries.add(new SaveEntry(this, this.generatePath(header, sha1), fat.getSize(),
                 sha1));
         }
 
-        // When loading a Vita profile, everything gets concatenated in memory, so we have to
-        // grab it from the queue.
+        // Moon levels of Vita profiles and downloaded levels get copied into the
+        // archive's queue, so we have to grab them from there as well.
         for (SHA1 sha1 : this.archive.getQueueHashes())
         {
             if (locked.contains(sha1)) continue;
-            byte[] data = this.archive.extract(sha1);
-            this.entries.add(new SaveEntry(this, this.generatePath(data, sha1), data.length
-                , sha1));
+            byte[] header = this.archive.peek(sha1, 0x4);
+            this.entries.add(new SaveEntry(this, this.generatePath(header, sha1),
+                this.archive.getSize(sha1), sha1));
         }
 
         for (SaveEntry entry : this.entries)
             this.lookup.put(entry.getSHA1(), entry);
     }
 
+    /**
+     * Deserializes the adventures referenced by a list of slots in parallel,
+     * since they're the only resources that need to be parsed to index a profile.
+     *
+     * @param slots Slots to load adventures from
+     * @return Adventure for each slot, null if the slot isn't an adventure or failed to load
+     */
+    private RAdventureCreateProfile[] loadAdventures(ArrayList<Slot> slots)
+    {
+        RAdventureCreateProfile[] adventures = new RAdventureCreateProfile[slots.size()];
+        IntStream.range(0, slots.size()).parallel().forEach(i ->
+        {
+            Slot slot = slots.get(i);
+            if (!slot.isAdventure()) return;
+            ResourceDescriptor root = slot.adventure;
+            if (root == null || root.isGUID()) return;
+            byte[] data = this.archive.extract(root.getSHA1());
+            if (data == null) return;
+            try
+            {
+                adventures[i] =
+                    new SerializedResource(data).loadResource(RAdventureCreateProfile.class);
+            }
+            catch (Exception ex) { adventures[i] = null; }
+        });
+        return adventures;
+    }
+
+    /**
+     * Generates a path for a resource that isn't referenced by the profile.
+     *
+     * @param data Resource data, only the first 4 bytes are needed
+     * @param sha1 Hash of resource
+     * @return Generated path
+     */
     public String generatePath(byte[] data, SHA1 sha1)
     {
         if (data.length < 4) return "resources/unknown/" + sha1.toString();
@@ -463,7 +496,8 @@ public class BigSave extends FileData
 
         this.archive.getKey().setRootHash(this.archive.add(SerializedResource.compress(this.profile,
             revision, compressionFlags)));
-        this.archive.save(file.getAbsolutePath());
+        if (!this.archive.save(file.getAbsolutePath()))
+            return false;
         if (file == this.getFile())
             this.hasChanges = false;
         return true;
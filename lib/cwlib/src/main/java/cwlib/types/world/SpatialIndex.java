@@ -0,0 +1,586 @@
+package cwlib.types.world;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.joml.Vector4f;
+
+import cwlib.enums.Part;
+import cwlib.resources.RLevel;
+import cwlib.resources.RMesh;
+import cwlib.singleton.ResourceSystem;
+import cwlib.structs.mesh.Bone;
+import cwlib.structs.things.Thing;
+import cwlib.structs.things.parts.PPos;
+import cwlib.structs.things.parts.PRenderMesh;
+import cwlib.structs.things.parts.PShape;
+import cwlib.structs.things.parts.PWorld;
+import cwlib.types.data.ResourceDescriptor;
+
+/**
+ * Bounding volume hierarchy over the Things in a world,
+ * built from their world positions and shape/mesh bounds.
+ */
+public class SpatialIndex
+{
+    /**
+     * Maximum number of Things stored in a single leaf node.
+     */
+    private static final int LEAF_SIZE = 4;
+
+    /**
+     * Things with a world position, ordered so each leaf covers a contiguous range.
+     */
+    private final Thing[] things;
+
+    /**
+     * Per-thing world bounds, 6 floats (min xyz, max xyz) per Thing.
+     */
+    private final float[] bounds;
+
+    /**
+     * Per-node world bounds, 6 floats (min xyz, max xyz) per node.
+     */
+    private float[] nodeBounds;
+
+    /**
+     * For leaves, the first Thing in the range; for internal nodes, the index of the left child.
+     * The right child always follows the left child's subtree.
+     */
+    private int[] nodeStart;
+
+    /**
+     * For leaves, the number of Things in the range; 0 for internal nodes.
+     */
+    private int[] nodeCount;
+
+    /**
+     * For internal nodes, the index of the right child.
+     */
+    private int[] nodeRight;
+
+    private int nodes;
+
+    /**
+     * Position of each indexed Thing in the sorted Thing array.
+     */
+    private final IdentityHashMap<Thing, Integer> lookup = new IdentityHashMap<>();
+
+    /**
+     * Builds a spatial index over the Things in a level.
+     *
+     * @param level Level to index
+     * @return Spatial index, empty if the level has no world
+     */
+    public static SpatialIndex fromLevel(RLevel level)
+    {
+        if (level.worldThing == null) return new SpatialIndex(new ArrayList<>());
+        PWorld world = level.worldThing.getPart(Part.WORLD);
+        if (world == null) return new SpatialIndex(new ArrayList<>());
+        return new SpatialIndex(world);
+    }
+
+    /**
+     * Builds a spatial index over the Things in a world,
+     * loading render meshes from the resource system.
+     *
+     * @param world World to index
+     */
+    public SpatialIndex(PWorld world)
+    {
+        this(world.things);
+    }
+
+    /**
+     * Builds a spatial index over a collection of Things,
+     * loading render meshes from the resource system.
+     *
+     * @param things Things to index, null entries are ignored
+     */
+    public SpatialIndex(Iterable<Thing> things)
+    {
+        this(things, descriptor -> ResourceSystem.load(descriptor, RMesh.class));
+    }
+
+    /**
+     * Builds a spatial index over a collection of Things.
+     *
+     * @param things Things to index, null entries are ignored
+     * @param meshes Resolves render mesh descriptors, may return null if unavailable
+     */
+    public SpatialIndex(Iterable<Thing> things, Function<ResourceDescriptor, RMesh> meshes)
+    {
+        HashMap<ResourceDescriptor, RMesh> cache = new HashMap<>();
+        Function<ResourceDescriptor, RMesh> resolver = descriptor ->
+        {
+            if (descriptor == null || meshes == null) return null;
+            if (cache.containsKey(descriptor)) return cache.get(descriptor);
+            RMesh mesh = null;
+            try { mesh = meshes.apply(descriptor); }
+            catch (Exception ex) { mesh = null; }
+            cache.put(descriptor, mesh);
+            return mesh;
+        };
+
+        ArrayList<Thing> indexed = new ArrayList<>();
+        float[] bounds = new float[6 * 64];
+        float[] box = new float[6];
+        for (Thing thing : things)
+        {
+            if (thing == null || !SpatialIndex.getBounds(thing, resolver, box)) continue;
+            if ((indexed.size() + 1) * 6 > bounds.length)
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            System.arraycopy(box, 0, bounds, indexed.size() * 6, 6);
+            indexed.add(thing);
+        }
+
+        this.things = indexed.toArray(Thing[]::new);
+        this.bounds = Arrays.copyOf(bounds, this.things.length * 6);
+
+        int capacity = Math.max(1, 2 * this.things.length);
+        this.nodeBounds = new float[capacity * 6];
+        this.nodeStart = new int[capacity];
+        this.nodeCount = new int[capacity];
+        this.nodeRight = new int[capacity];
+
+        if (this.things.length != 0)
+        {
+            int[] order = new int[this.things.length];
+            for (int i = 0; i < order.length; ++i) order[i] = i;
+            this.build(order, 0, order.length);
+
+            // Reorder Things and their bounds to match the leaf ranges.
+            Thing[] sorted = new Thing[order.length];
+            float[] sortedBounds = new float[this.bounds.length];
+            for (int i = 0; i < order.length; ++i)
+            {
+                sorted[i] = this.things[order[i]];
+                System.arraycopy(this.bounds, order[i] * 6, sortedBounds, i * 6, 6);
+            }
+            System.arraycopy(sorted, 0, this.things, 0, sorted.length);
+            System.arraycopy(sortedBounds, 0, this.bounds, 0, sortedBounds.length);
+        }
+
+        for (int i = 0; i < this.things.length; ++i)
+            this.lookup.put(this.things[i], i);
+    }
+
+    /**
+     * Computes the world space bounds of a Thing.
+     *
+     * @param thing  Thing to compute bounds of
+     * @param meshes Resolves render mesh descriptors, may return null if unavailable
+     * @param box    Output bounds, min xyz followed by max xyz
+     * @return Whether the Thing has a world position
+     */
+    public static boolean getBounds(Thing thing, Function<ResourceDescriptor, RMesh> meshes,
+                                    float[] box)
+    {
+        PPos pos = thing.getPart(Part.POS);
+        if (pos == null || pos.worldPosition == null) return false;
+
+        Matrix4f wpos = pos.worldPosition;
+        Arrays.fill(box, 0, 3, Float.POSITIVE_INFINITY);
+        Arrays.fill(box, 3, 6, Float.NEGATIVE_INFINITY);
+
+        Vector3f v = new Vector3f();
+        boolean hasExtents = false;
+
+        PShape shape = thing.getPart(Part.SHAPE);
+        if (shape != null && shape.polygon != null && shape.polygon.vertices != null)
+        {
+            // Shapes are extruded by their thickness on both sides of the polygon.
+            for (Vector3f vertex : shape.polygon.vertices)
+            {
+                if (vertex == null) continue;
+                SpatialIndex.expand(box, wpos.transformPosition(vertex.x, vertex.y,
+                    vertex.z - shape.thickness, v));
+                SpatialIndex.expand(box, wpos.transformPosition(vertex.x, vertex.y,
+                    vertex.z + shape.thickness, v));
+                hasExtents = true;
+            }
+        }
+
+        PRenderMesh renderMesh = thing.getPart(Part.RENDER_MESH);
+        RMesh mesh = (renderMesh != null && meshes != null) ? meshes.apply(renderMesh.mesh) : null;
+        if (mesh != null)
+        {
+            Bone[] bones = mesh.getBones();
+            for (int i = 0; i < bones.length; ++i)
+            {
+                Bone bone = bones[i];
+                if (bone.boundBoxMin == null || bone.boundBoxMax == null) continue;
+
+                Matrix4f transform = wpos;
+                if (i < renderMesh.boneThings.length && renderMesh.boneThings[i] != null)
+                {
+                    PPos bonePos = renderMesh.boneThings[i].getPart(Part.POS);
+                    if (bonePos != null && bonePos.worldPosition != null)
+                        transform = bonePos.worldPosition;
+                }
+
+                Vector4f min = bone.boundBoxMin, max = bone.boundBoxMax;
+                for (int corner = 0; corner < 8; ++corner)
+                {
+                    SpatialIndex.expand(box, transform.transformPosition(
+                        (corner & 1) == 0 ? min.x : max.x,
+                        (corner & 2) == 0 ? min.y : max.y,
+                        (corner & 4) == 0 ? min.z : max.z, v));
+                }
+                hasExtents = true;
+            }
+        }
+
+        if (!hasExtents)
+            SpatialIndex.expand(box, wpos.getTranslation(v));
+
+        return true;
+    }
+
+    /**
+     * Gets all Things whose bounds overlap a box.
+     *
+     * @param min Minimum corner of the box
+     * @param max Maximum corner of the box
+     * @return Overlapping Things
+     */
+    public ArrayList<Thing> query(Vector3f min, Vector3f max)
+    {
+        ArrayList<Thing> results = new ArrayList<>();
+        if (this.things.length == 0) return results;
+
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        while (top != 0)
+        {
+            int node = stack[--top];
+            if (!SpatialIndex.overlaps(this.nodeBounds, node * 6, min, max)) continue;
+
+            int count = this.nodeCount[node];
+            if (count != 0)
+            {
+                int start = this.nodeStart[node];
+                for (int i = start; i < start + count; ++i)
+                {
+                    if (SpatialIndex.overlaps(this.bounds, i * 6, min, max))
+                        results.add(this.things[i]);
+                }
+                continue;
+            }
+
+            if (top + 2 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+            stack[top++] = this.nodeRight[node];
+            stack[top++] = this.nodeStart[node];
+        }
+
+        return results;
+    }
+
+    /**
+     * Gets all Things whose bounds are hit by a ray, ordered by distance along the ray.
+     *
+     * @param origin    Origin of the ray
+     * @param direction Direction of the ray, does not need to be normalized
+     * @param distance  Maximum distance along the ray, in units of the direction vector
+     * @return Things hit by the ray
+     */
+    public ArrayList<Thing> raycast(Vector3f origin, Vector3f direction, float distance)
+    {
+        ArrayList<Thing> results = new ArrayList<>();
+        if (this.things.length == 0) return results;
+
+        float ix = 1.0f / direction.x, iy = 1.0f / direction.y, iz = 1.0f / direction.z;
+        ArrayList<float[]> hits = new ArrayList<>();
+
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        while (top != 0)
+        {
+            int node = stack[--top];
+            if (SpatialIndex.intersect(this.nodeBounds, node * 6, origin, ix, iy, iz, distance) < 0.0f)
+                continue;
+
+            int count = this.nodeCount[node];
+            if (count != 0)
+            {
+                int start = this.nodeStart[node];
+                for (int i = start; i < start + count; ++i)
+                {
+                    float t = SpatialIndex.intersect(this.bounds, i * 6, origin, ix, iy, iz,
+                        distance);
+                    if (t >= 0.0f) hits.add(new float[] { t, i });
+                }
+                continue;
+            }
+
+            if (top + 2 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+            stack[top++] = this.nodeRight[node];
+            stack[top++] = this.nodeStart[node];
+        }
+
+        hits.sort((a, b) -> Float.compare(a[0], b[0]));
+        for (float[] hit : hits)
+            results.add(this.things[(int) hit[1]]);
+        return results;
+    }
+
+    /**
+     * Gets the Thing whose bounds are closest to a point.
+     *
+     * @param point Point to search from
+     * @return Closest Thing, or null if the index is empty
+     */
+    public Thing nearest(Vector3f point)
+    {
+        if (this.things.length == 0) return null;
+
+        Thing best = null;
+        float bestDistance = Float.POSITIVE_INFINITY;
+
+        // Best-first traversal, nodes are visited in order of distance to their bounds.
+        PriorityQueue<float[]> queue = new PriorityQueue<>((a, b) -> Float.compare(a[0], b[0]));
+        queue.add(new float[] { SpatialIndex.distance(this.nodeBounds, 0, point), 0 });
+        while (!queue.isEmpty())
+        {
+            float[] entry = queue.poll();
+            if (entry[0] >= bestDistance) break;
+
+            int node = (int) entry[1];
+            int count = this.nodeCount[node];
+            if (count != 0)
+            {
+                int start = this.nodeStart[node];
+                for (int i = start; i < start + count; ++i)
+                {
+                    float d = SpatialIndex.distance(this.bounds, i * 6, point);
+                    if (d < bestDistance)
+                    {
+                        bestDistance = d;
+                        best = this.things[i];
+                    }
+                }
+                continue;
+            }
+
+            int left = this.nodeStart[node], right = this.nodeRight[node];
+            queue.add(new float[] { SpatialIndex.distance(this.nodeBounds, left * 6, point), left });
+            queue.add(new float[] { SpatialIndex.distance(this.nodeBounds, right * 6, point), right });
+        }
+
+        return best;
+    }
+
+    /**
+     * Gets the world bounds of an indexed Thing.
+     *
+     * @param thing Thing to get bounds of
+     * @param min   Output minimum corner
+     * @param max   Output maximum corner
+     * @return Whether the Thing is in this index
+     */
+    public boolean getBounds(Thing thing, Vector3f min, Vector3f max)
+    {
+        Integer index = this.lookup.get(thing);
+        if (index == null) return false;
+        int offset = index * 6;
+        min.set(this.bounds[offset], this.bounds[offset + 1], this.bounds[offset + 2]);
+        max.set(this.bounds[offset + 3], this.bounds[offset + 4], this.bounds[offset + 5]);
+        return true;
+    }
+
+    /**
+     * Gets the bounds of every indexed Thing.
+     *
+     * @param min Output minimum corner
+     * @param max Output maximum corner
+     * @return Whether the index contains any Things
+     */
+    public boolean getWorldBounds(Vector3f min, Vector3f max)
+    {
+        if (this.things.length == 0) return false;
+        min.set(this.nodeBounds[0], this.nodeBounds[1], this.nodeBounds[2]);
+        max.set(this.nodeBounds[3], this.nodeBounds[4], this.nodeBounds[5]);
+        return true;
+    }
+
+    /**
+     * Gets all Things contained in this index.
+     *
+     * @return Indexed Things
+     */
+    public Thing[] getThings()
+    {
+        return this.things.clone();
+    }
+
+    /**
+     * Gets the number of Things contained in this index.
+     *
+     * @return Number of indexed Things
+     */
+    public int size()
+    {
+        return this.things.length;
+    }
+
+    /**
+     * Recursively splits a range of Things into nodes at the median
+     * of the longest axis of their centers.
+     *
+     * @param order Indices of Things, partially sorted in place
+     * @param start Start of the range
+     * @param end   End of the range, exclusive
+     * @return Index of the created node
+     */
+    private int build(int[] order, int start, int end)
+    {
+        int node = this.nodes++;
+        int offset = node * 6;
+
+        Arrays.fill(this.nodeBounds, offset, offset + 3, Float.POSITIVE_INFINITY);
+        Arrays.fill(this.nodeBounds, offset + 3, offset + 6, Float.NEGATIVE_INFINITY);
+
+        float[] centerMin = { Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+            Float.POSITIVE_INFINITY };
+        float[] centerMax = { Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY,
+            Float.NEGATIVE_INFINITY };
+        for (int i = start; i < end; ++i)
+        {
+            int box = order[i] * 6;
+            for (int c = 0; c < 3; ++c)
+            {
+                float lo = this.bounds[box + c], hi = this.bounds[box + c + 3];
+                if (lo < this.nodeBounds[offset + c]) this.nodeBounds[offset + c] = lo;
+                if (hi > this.nodeBounds[offset + c + 3]) this.nodeBounds[offset + c + 3] = hi;
+                float center = (lo + hi) * 0.5f;
+                if (center < centerMin[c]) centerMin[c] = center;
+                if (center > centerMax[c]) centerMax[c] = center;
+            }
+        }
+
+        int count = end - start;
+        int axis = 0;
+        for (int c = 1; c < 3; ++c)
+        {
+            if (centerMax[c] - centerMin[c] > centerMax[axis] - centerMin[axis])
+                axis = c;
+        }
+
+        if (count <= LEAF_SIZE || centerMax[axis] == centerMin[axis])
+        {
+            this.nodeStart[node] = start;
+            this.nodeCount[node] = count;
+            return node;
+        }
+
+        int mid = (start + end) >>> 1;
+        this.select(order, start, end - 1, mid, axis);
+
+        this.nodeStart[node] = this.build(order, start, mid);
+        this.nodeRight[node] = this.build(order, mid, end);
+        this.nodeCount[node] = 0;
+
+        return node;
+    }
+
+    /**
+     * Partially sorts a range of Things so the element at the target index is the one
+     * that would be there if the range was sorted by center along an axis.
+     *
+     * @param order  Indices of Things
+     * @param left   Start of the range
+     * @param right  End of the range, inclusive
+     * @param target Index to select
+     * @param axis   Axis to sort along
+     */
+    private void select(int[] order, int left, int right, int target, int axis)
+    {
+        while (right > left)
+        {
+            float pivot = this.getCenter(order[(left + right) >>> 1], axis);
+            int i = left, j = right;
+            while (i <= j)
+            {
+                while (this.getCenter(order[i], axis) < pivot) i++;
+                while (this.getCenter(order[j], axis) > pivot) j--;
+                if (i <= j)
+                {
+                    int swap = order[i];
+                    order[i++] = order[j];
+                    order[j--] = swap;
+                }
+            }
+            if (target <= j) right = j;
+            else if (target >= i) left = i;
+            else return;
+        }
+    }
+
+    private float getCenter(int index, int axis)
+    {
+        return (this.bounds[index * 6 + axis] + this.bounds[index * 6 + axis + 3]) * 0.5f;
+    }
+
+    private static void expand(float[] box, Vector3f v)
+    {
+        if (v.x < box[0]) box[0] = v.x;
+        if (v.y < box[1]) box[1] = v.y;
+        if (v.z < box[2]) box[2] = v.z;
+        if (v.x > box[3]) box[3] = v.x;
+        if (v.y > box[4]) box[4] = v.y;
+        if (v.z > box[5]) box[5] = v.z;
+    }
+
+    private static boolean overlaps(float[] boxes, int offset, Vector3f min, Vector3f max)
+    {
+        return boxes[offset] <= max.x && boxes[offset + 3] >= min.x &&
+               boxes[offset + 1] <= max.y && boxes[offset + 4] >= min.y &&
+               boxes[offset + 2] <= max.z && boxes[offset + 5] >= min.z;
+    }
+
+    /**
+     * Slab test of a ray against a box.
+     *
+     * @return Entry distance along the ray, or -1 if the ray misses
+     */
+    private static float intersect(float[] boxes, int offset, Vector3f origin, float ix,
+                                   float iy, float iz, float distance)
+    {
+        float t1 = (boxes[offset] - origin.x) * ix, t2 = (boxes[offset + 3] - origin.x) * ix;
+        float near = Math.min(t1, t2), far = Math.max(t1, t2);
+
+        t1 = (boxes[offset + 1] - origin.y) * iy;
+        t2 = (boxes[offset + 4] - origin.y) * iy;
+        near = Math.max(near, Math.min(t1, t2));
+        far = Math.min(far, Math.max(t1, t2));
+
+        t1 = (boxes[offset + 2] - origin.z) * iz;
+        t2 = (boxes[offset + 5] - origin.z) * iz;
+        near = Math.max(near, Math.min(t1, t2));
+        far = Math.min(far, Math.max(t1, t2));
+
+        if (far < Math.max(near, 0.0f) || near > distance) return -1.0f;
+        return Math.max(near, 0.0f);
+    }
+
+    /**
+     * Squared distance from a point to a box, 0 if the point is inside.
+     */
+    private static float distance(float[] boxes, int offset, Vector3f point)
+    {
+        float dx = Math.max(Math.max(boxes[offset] - point.x, 0.0f), point.x - boxes[offset + 3]);
+        float dy = Math.max(Math.max(boxes[offset + 1] - point.y, 0.0f),
+            point.y - boxes[offset + 4]);
+        float dz = Math.max(Math.max(boxes[offset + 2] - point.z, 0.0f),
+            point.z - boxes[offset + 5]);
+        return dx * dx + dy * dy + dz * dz;
+    }
+}
@@ -0,0 +1,384 @@
+package cwlib.types.world;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import cwlib.enums.Part;
+import cwlib.resources.RLevel;
+import cwlib.resources.RPlan;
+import cwlib.structs.things.Thing;
+import cwlib.structs.things.components.switches.SwitchOutput;
+import cwlib.structs.things.components.switches.SwitchTarget;
+import cwlib.structs.things.parts.PSwitch;
+import cwlib.structs.things.parts.PWorld;
+
+/**
+ * Lookup tables over a set of Things, built in a single pass,
+ * for finding Things by part, UID, parent, group, or switch connection.
+ * <p>
+ * The index is a snapshot, it needs to be rebuilt if Things or their parts change.
+ */
+public class ThingIndex
+{
+    /**
+     * All indexed Things, in their original order.
+     */
+    private final ArrayList<Thing> things = new ArrayList<>();
+
+    /**
+     * Things that have each part, indexed by part index.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ArrayList<Thing>[] parts = new ArrayList[0x40];
+
+    private final HashMap<Integer, Thing> uids = new HashMap<>();
+    private final IdentityHashMap<Thing, ArrayList<Thing>> children = new IdentityHashMap<>();
+    private final IdentityHashMap<Thing, ArrayList<Thing>> groups = new IdentityHashMap<>();
+
+    /**
+     * Switches with an output targeting each Thing.
+     */
+    private final IdentityHashMap<Thing, ArrayList<Thing>> switchInputs = new IdentityHashMap<>();
+
+    /**
+     * Builds an index over the Things in a level.
+     *
+     * @param level Level to index
+     * @return Thing index, empty if the level has no world
+     */
+    public static ThingIndex fromLevel(RLevel level)
+    {
+        if (level.worldThing == null) return new ThingIndex(new ArrayList<>());
+        PWorld world = level.worldThing.getPart(Part.WORLD);
+        if (world == null) return new ThingIndex(new ArrayList<>());
+        return new ThingIndex(world.things);
+    }
+
+    /**
+     * Builds an index over the Things in a plan.
+     *
+     * @param plan Plan to index
+     * @return Thing index
+     */
+    public static ThingIndex fromPlan(RPlan plan)
+    {
+        ArrayList<Thing> things = new ArrayList<>();
+        Collections.addAll(things, plan.getSharedThings());
+        return new ThingIndex(things);
+    }
+
+    /**
+     * Builds an index over a collection of Things.
+     *
+     * @param things Things to index, null entries are ignored
+     */
+    public ThingIndex(Iterable<Thing> things)
+    {
+        for (Thing thing : things)
+        {
+            if (thing == null) continue;
+            this.things.add(thing);
+
+            for (long mask = thing.getPartMask(); mask != 0; mask &= (mask - 1))
+            {
+                int index = Long.numberOfTrailingZeros(mask);
+                if (this.parts[index] == null) this.parts[index] = new ArrayList<>();
+                this.parts[index].add(thing);
+            }
+
+            this.uids.putIfAbsent(thing.UID, thing);
+
+            if (thing.parent != null)
+                this.children.computeIfAbsent(thing.parent, k -> new ArrayList<>()).add(thing);
+            if (thing.groupHead != null)
+                this.groups.computeIfAbsent(thing.groupHead, k -> new ArrayList<>()).add(thing);
+
+            PSwitch switchBase = thing.getPart(Part.SWITCH);
+            if (switchBase == null || switchBase.outputs == null) continue;
+            for (SwitchOutput output : switchBase.outputs)
+            {
+                if (output == null || output.targetList == null) continue;
+                for (SwitchTarget target : output.targetList)
+                {
+                    if (target == null || target.thing == null) continue;
+                    ArrayList<Thing> inputs =
+                        this.switchInputs.computeIfAbsent(target.thing, k -> new ArrayList<>());
+                    if (inputs.isEmpty() || inputs.get(inputs.size() - 1) != thing)
+                        inputs.add(thing);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets all indexed Things.
+     *
+     * @return Indexed Things
+     */
+    public List<Thing> getThings()
+    {
+        return Collections.unmodifiableList(this.things);
+    }
+
+    /**
+     * Gets all Things that have a part.
+     *
+     * @param part Part to search for
+     * @return Things with the part
+     */
+    public List<Thing> getThings(Part part)
+    {
+        ArrayList<Thing> things = this.parts[part.getIndex()];
+        if (things == null) return Collections.emptyList();
+        return Collections.unmodifiableList(things);
+    }
+
+    /**
+     * Gets a Thing by its UID.
+     *
+     * @param UID UID of the Thing
+     * @return Thing with the UID, or null if none exists
+     */
+    public Thing getThing(int UID)
+    {
+        return this.uids.get(UID);
+    }
+
+    /**
+     * Gets the Things directly parented to a Thing.
+     *
+     * @param parent Parent Thing
+     * @return Child Things
+     */
+    public List<Thing> getChildren(Thing parent)
+    {
+        ArrayList<Thing> things = this.children.get(parent);
+        if (things == null) return Collections.emptyList();
+        return Collections.unmodifiableList(things);
+    }
+
+    /**
+     * Gets a Thing and all Things parented to it, directly or indirectly.
+     *
+     * @param root Root Thing
+     * @return Root Thing followed by its descendants
+     */
+    public List<Thing> getDescendants(Thing root)
+    {
+        ArrayList<Thing> things = new ArrayList<>();
+        IdentityHashMap<Thing, Boolean> visited = new IdentityHashMap<>();
+        things.add(root);
+        visited.put(root, true);
+        for (int i = 0; i < things.size(); ++i)
+        {
+            for (Thing child : this.getChildren(things.get(i)))
+            {
+                if (visited.put(child, true) == null)
+                    things.add(child);
+            }
+        }
+        return things;
+    }
+
+    /**
+     * Gets the Things whose group head is a Thing.
+     *
+     * @param groupHead Group head
+     * @return Things in the group
+     */
+    public List<Thing> getGroup(Thing groupHead)
+    {
+        ArrayList<Thing> things = this.groups.get(groupHead);
+        if (things == null) return Collections.emptyList();
+        return Collections.unmodifiableList(things);
+    }
+
+    /**
+     * Gets the switches that have an output connected to a Thing.
+     *
+     * @param target Target Thing
+     * @return Switches targeting the Thing
+     */
+    public List<Thing> getSwitchInputs(Thing target)
+    {
+        ArrayList<Thing> things = this.switchInputs.get(target);
+        if (things == null) return Collections.emptyList();
+        return Collections.unmodifiableList(things);
+    }
+
+    /**
+     * Checks whether any switch has an output connected to a Thing.
+     *
+     * @param target Target Thing
+     * @return Whether the Thing is targeted by a switch
+     */
+    public boolean hasSwitchInput(Thing target)
+    {
+        return this.switchInputs.containsKey(target);
+    }
+
+    /**
+     * Starts a query over all indexed Things.
+     *
+     * @return New query
+     */
+    public Query query()
+    {
+        return new Query(this.things);
+    }
+
+    /**
+     * Starts a query over a subset of Things, such as the result of another lookup.
+     *
+     * @param things Things to query
+     * @return New query
+     */
+    public Query query(List<Thing> things)
+    {
+        return new Query(things);
+    }
+
+    /**
+     * Composable filter over indexed Things.
+     * Required parts are resolved against the part lists, so only the smallest
+     * candidate list is walked.
+     */
+    public class Query
+    {
+        private final List<Thing> source;
+        private long required;
+        private long excluded;
+        private Predicate<Thing> predicate;
+
+        private Query(List<Thing> source)
+        {
+            this.source = source;
+        }
+
+        /**
+         * Requires Things to have a part.
+         *
+         * @param part Required part
+         * @return This query
+         */
+        public Query with(Part part)
+        {
+            this.required |= (1L << part.getIndex());
+            return this;
+        }
+
+        /**
+         * Requires Things to not have a part.
+         *
+         * @param part Excluded part
+         * @return This query
+         */
+        public Query without(Part part)
+        {
+            this.excluded |= (1L << part.getIndex());
+            return this;
+        }
+
+        /**
+         * Requires Things to match a predicate.
+         *
+         * @param predicate Predicate to match
+         * @return This query
+         */
+        public Query where(Predicate<Thing> predicate)
+        {
+            this.predicate = (this.predicate == null) ? predicate :
+                this.predicate.and(predicate);
+            return this;
+        }
+
+        /**
+         * Gets all Things matching this query.
+         *
+         * @return Matching Things
+         */
+        public ArrayList<Thing> list()
+        {
+            List<Thing> candidates = this.getCandidates();
+            ArrayList<Thing> results = new ArrayList<>();
+            for (Thing thing : candidates)
+            {
+                if (this.matches(thing))
+                    results.add(thing);
+            }
+            return results;
+        }
+
+        /**
+         * Gets the first Thing matching this query.
+         *
+         * @return First matching Thing, or null if none match
+         */
+        public Thing first()
+        {
+            for (Thing thing : this.getCandidates())
+            {
+                if (this.matches(thing))
+                    return thing;
+            }
+            return null;
+        }
+
+        /**
+         * Counts the Things matching this query.
+         *
+         * @return Number of matching Things
+         */
+        public int count()
+        {
+            int count = 0;
+            for (Thing thing : this.getCandidates())
+            {
+                if (this.matches(thing))
+                    count++;
+            }
+            return count;
+        }
+
+        /**
+         * Streams the Things matching this query.
+         *
+         * @return Stream of matching Things
+         */
+        public Stream<Thing> stream()
+        {
+            return this.getCandidates().stream().filter(this::matches);
+        }
+
+        private boolean matches(Thing thing)
+        {
+            if (thing == null) return false;
+            long mask = thing.getPartMask();
+            if ((mask & this.required) != this.required) return false;
+            if ((mask & this.excluded) != 0) return false;
+            return this.predicate == null || this.predicate.test(thing);
+        }
+
+        private List<Thing> getCandidates()
+        {
+            // Only narrow using part lists when querying every indexed Thing,
+            // otherwise the source might not be a subset of them.
+            if (this.source != ThingIndex.this.things) return this.source;
+
+            List<Thing> candidates = this.source;
+            for (long mask = this.required; mask != 0; mask &= (mask - 1))
+            {
+                ArrayList<Thing> things = ThingIndex.this.parts[Long.numberOfTrailingZeros(mask)];
+                if (things == null) return Collections.emptyList();
+                if (things.size() < candidates.size())
+                    candidates = things;
+            }
+            return candidates;
+        }
+    }
+}
@@ -8,6 +8,7 @@ import cwlib.types.data.ResourceDescriptor;
 import cwlib.types.data.Revision;
 import org.joml.Vector3f;
 
+import java.nio.FloatBuffer;
 import java.util.Arrays;
 
 public final class Bytes
@@ -365,33 +366,62 @@ public final class Bytes
      * @return Unpacked vector
      */
     public static Vector3f unpackNormal32(long value)
+    {
+        return Bytes.unpackNormal32(value, new Vector3f());
+    }
+
+    /**
+     * Unpacks a 11/11/10 normal value into a vector.
+     *
+     * @param value Value to unpack
+     * @param dest  Vector to store the unpacked normal in
+     * @return Destination vector
+     */
+    public static Vector3f unpackNormal32(long value, Vector3f dest)
+    {
+        return dest.set(
+            Bytes.unpackNormal32Component(value, 0, 10),
+            Bytes.unpackNormal32Component(value, 11, 10),
+            Bytes.unpackNormal32Component(value, 22, 9)
+        );
+    }
+
+    /**
+     * Unpacks a 11/11/10 normal value into a buffer.
+     *
+     * @param value  Value to unpack
+     * @param buffer Buffer to put the x, y, and z components into,
+     *               starting at its current position
+     */
+    public static void unpackNormal32(long value, FloatBuffer buffer)
+    {
+        buffer.put(Bytes.unpackNormal32Component(value, 0, 10));
+        buffer.put(Bytes.unpackNormal32Component(value, 11, 10));
+        buffer.put(Bytes.unpackNormal32Component(value, 22, 9));
+    }
+
+    /**
+     * Unpacks a single component of a 11/11/10 normal value, each
+     * component is followed by its sign bit.
+     *
+     * @param value Value to unpack
+     * @param shift Offset of the component in bits
+     * @param bits  Number of bits in the component, excluding the sign
+     * @return Unpacked component
+     */
+    private static float unpackNormal32Component(long value, int shift, int bits)
     {
         // There's probably a much better way to handle
         // the fact that this is probably just signed data
         // but this works, so maybe I'll come back to it
         // at some point, who knows.
 
-        Vector3f output = new Vector3f(0, 0, 0);
-
-        float x = (float) (value & 0x3ffL);
-        boolean x_sign = ((value >>> 10L) & 1L) > 0L;
-
-        float y = (float) ((value >>> 11L) & 0x3ffL);
-        boolean y_sign = ((value >>> 21L) & 1L) > 0L;
-
-        float z = (float) ((value >>> 22L) & 0x1ffL);
-        boolean z_sign = ((value >>> 31L & 1L)) > 0L;
-
-        if (x_sign) output.x = -((1023f - x) / 1023f);
-        else output.x = ((x / 1023f));
-
-        if (y_sign) output.y = -((1023f - y) / 1023f);
-        else output.y = (y / 1023f);
-
-        if (z_sign) output.z = -((511f - z) / 511f);
-        else output.z = (z / 511f);
+        float max = (float) ((1 << bits) - 1);
+        float component = (float) ((value >>> shift) & ((1L << bits) - 1L));
+        boolean sign = ((value >>> (shift + bits)) & 1L) > 0L;
 
-        return output;
+        if (sign) return -((max - component) / max);
+        return component / max;
     }
 
     /**
@@ -401,17 +431,57 @@ public final class Bytes
      * @return Unpacked vector
      */
     public static Vector3f unpackNormal24(int normal)
+    {
+        return Bytes.unpackNormal24(normal, new Vector3f());
+    }
+
+    /**
+     * Unpacks a 12/11/1 normal value into a vector.
+     *
+     * @param normal Value to unpack
+     * @param dest   Vector to store the unpacked normal in
+     * @return Destination vector
+     */
+    public static Vector3f unpackNormal24(int normal, Vector3f dest)
+    {
+        float x = Bytes.unpackNormal24X(normal);
+        float y = Bytes.unpackNormal24Y(normal);
+        return dest.set(x, y, Bytes.unpackNormal24Z(normal, x, y));
+    }
+
+    /**
+     * Unpacks a 12/11/1 normal value into a buffer.
+     *
+     * @param normal Value to unpack
+     * @param buffer Buffer to put the x, y, and z components into,
+     *               starting at its current position
+     */
+    public static void unpackNormal24(int normal, FloatBuffer buffer)
+    {
+        float x = Bytes.unpackNormal24X(normal);
+        float y = Bytes.unpackNormal24Y(normal);
+        buffer.put(x).put(y).put(Bytes.unpackNormal24Z(normal, x, y));
+    }
+
+    private static float unpackNormal24X(int normal)
     {
         float x = (float) (normal & 0x7ff);
-        x = ((normal & 0x800) != 0) ? (-(0x800 - x) / 0x7ff) : (x / 0x7ff);
+        return ((normal & 0x800) != 0) ? (-(0x800 - x) / 0x7ff) : (x / 0x7ff);
+    }
 
+    private static float unpackNormal24Y(int normal)
+    {
         float y = (float) ((normal >> 12) & 0x3ff);
-        y = (((normal >> 12) & 0x400) != 0) ? (-(0x400 - y) / 0x3ff) : (y / 0x3ff);
-
-        float z = (float) (Math.pow(-1, (normal >> 23)) *
-                           (Math.sqrt((1 - (Math.pow(x, 2) + Math.pow(y, 2))))));
+        return (((normal >> 12) & 0x400) != 0) ? (-(0x400 - y) / 0x3ff) : (y / 0x3ff);
+    }
 
-        return new Vector3f(x, y, z);
+    /**
+     * Reconstructs the z component of a 12/11/1 normal value, only its sign is stored.
+     */
+    private static float unpackNormal24Z(int normal, float x, float y)
+    {
+        return (float) (Math.pow(-1, (normal >> 23)) *
+                        (Math.sqrt((1 - (Math.pow(x, 2) + Math.pow(y, 2))))));
     }
 
     /**
@@ -424,12 +494,22 @@ public final class Bytes
     {
         if (normal == null)
             throw new NullPointerException("Can't pack null vertex normal!");
+        return Bytes.packNormal32(normal.x, normal.y, normal.z);
+    }
 
-        int x = Math.round(normal.x * 0x3ff) & 0x7ff;
-        int y = Math.round(normal.y * 0x3ff) & 0x7ff;
-        int z = Math.round(normal.z * 0x1ff) & 0x3ff;
-
-        return (x | (y << 11) | (z << 22));
+    /**
+     * Packs a 11/11/10 normal value.
+     *
+     * @param x X component of the normal
+     * @param y Y component of the normal
+     * @param z Z component of the normal
+     * @return Packed normal
+     */
+    public static int packNormal32(float x, float y, float z)
+    {
+        return (Math.round(x * 0x3ff) & 0x7ff) |
+               ((Math.round(y * 0x3ff) & 0x7ff) << 11) |
+               ((Math.round(z * 0x1ff) & 0x3ff) << 22);
     }
 
     /**
@@ -442,11 +522,21 @@ public final class Bytes
     {
         if (normal == null)
             throw new NullPointerException("Can't pack null vertex normal!");
+        return Bytes.packNormal24(normal.x, normal.y, normal.z);
+    }
 
-        int x = Math.round(normal.x * 0x7ff) & 0xfff;
-        int y = Math.round(normal.y * 0x3ff) & 0x7ff;
-        int z = (normal.z < 0) ? 1 : 0;
-
-        return (x | (y << 12) | (z << 23));
+    /**
+     * Packs a 12/11/1 normal value.
+     *
+     * @param x X component of the normal
+     * @param y Y component of the normal
+     * @param z Z component of the normal
+     * @return Packed normal
+     */
+    public static int packNormal24(float x, float y, float z)
+    {
+        return (Math.round(x * 0x7ff) & 0xfff) |
+               ((Math.round(y * 0x3ff) & 0x7ff) << 12) |
+               ((z < 0) ? (1 << 23) : 0);
     }
 }
@@ -268,13 +268,24 @@ public final class Crypto
      * @return Resulting hash
      */
     public static SHA1 HMAC(byte[] data, byte[] key)
+    {
+        return new SHA1(Crypto.getHMAC(key).doFinal(data));
+    }
+
+    /**
+     * Creates an HMAC-SHA1 instance, for hashing data incrementally.
+     *
+     * @param key Secret key
+     * @return Initialized HMAC instance
+     */
+    public static Mac getHMAC(byte[] key)
     {
         SecretKey secretKey = new SecretKeySpec(key, "HmacSHA1");
         try
         {
             Mac mac = Mac.getInstance("HmacSHA1");
             mac.init(secretKey);
-            return new SHA1(mac.doFinal(data));
+            return mac;
         }
         catch (NoSuchAlgorithmException | InvalidKeyException ex)
         {
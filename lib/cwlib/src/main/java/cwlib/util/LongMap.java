@@ -0,0 +1,328 @@
+package cwlib.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Open-addressing hash map specialized for primitive long keys,
+ * used for GUID and key ID lookup tables where boxing every key
+ * into a Long would dominate the memory footprint.
+ *
+ * @param <V> Type of values stored in the map
+ */
+public final class LongMap<V> implements Iterable<V>
+{
+    /**
+     * Callback for iterating over key/value pairs without boxing the key.
+     *
+     * @param <V> Type of values stored in the map
+     */
+    @FunctionalInterface
+    public interface EntryConsumer<V>
+    {
+        void accept(long key, V value);
+    }
+
+    /**
+     * Slot value used to mark unused slots, the key itself
+     * is tracked separately since it's a valid key.
+     */
+    private static final long EMPTY = 0;
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int threshold;
+
+    private boolean hasEmptyKey;
+    private V emptyKeyValue;
+
+    /**
+     * Creates a map with the default capacity.
+     */
+    public LongMap()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a map that can hold the specified number
+     * of entries without resizing.
+     *
+     * @param capacity Expected number of entries
+     */
+    public LongMap(int capacity)
+    {
+        if (capacity < 0)
+            throw new IllegalArgumentException("Cannot allocate map with negative capacity!");
+        this.allocate(LongMap.getTableSize(capacity));
+    }
+
+    private static int getTableSize(int capacity)
+    {
+        long size = (long) Math.ceil(Math.max(capacity, 1) / LOAD_FACTOR);
+        if (size > (1 << 30))
+            throw new IllegalArgumentException("Map capacity is too large!");
+        return Math.max(2, Integer.highestOneBit((int) size - 1) << 1);
+    }
+
+    private static int hash(long key)
+    {
+        // Murmur3 finalizer, GUIDs tend to be sequential.
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private void allocate(int tableSize)
+    {
+        this.keys = new long[tableSize];
+        this.values = new Object[tableSize];
+        this.mask = tableSize - 1;
+        this.threshold = (int) (tableSize * LOAD_FACTOR);
+    }
+
+    private int indexOf(long key)
+    {
+        int index = LongMap.hash(key) & this.mask;
+        while (true)
+        {
+            long slot = this.keys[index];
+            if (slot == EMPTY) return -1;
+            if (slot == key) return index;
+            index = (index + 1) & this.mask;
+        }
+    }
+
+    /**
+     * Checks if a key exists in the map.
+     *
+     * @param key Key to find
+     * @return Whether or not the key exists
+     */
+    public boolean containsKey(long key)
+    {
+        if (key == EMPTY) return this.hasEmptyKey;
+        return this.indexOf(key) != -1;
+    }
+
+    /**
+     * Gets the value associated with a key.
+     *
+     * @param key Key to find
+     * @return Value associated with key, or null if it doesn't exist
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key)
+    {
+        if (key == EMPTY) return this.emptyKeyValue;
+        int index = this.indexOf(key);
+        if (index == -1) return null;
+        return (V) this.values[index];
+    }
+
+    /**
+     * Associates a value with a key, replacing any existing value.
+     *
+     * @param key   Key to set
+     * @param value Value to associate with key
+     * @return Previous value associated with key, or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value)
+    {
+        if (key == EMPTY)
+        {
+            V previous = this.emptyKeyValue;
+            if (!this.hasEmptyKey) this.size++;
+            this.hasEmptyKey = true;
+            this.emptyKeyValue = value;
+            return previous;
+        }
+
+        int index = LongMap.hash(key) & this.mask;
+        while (true)
+        {
+            long slot = this.keys[index];
+            if (slot == EMPTY) break;
+            if (slot == key)
+            {
+                V previous = (V) this.values[index];
+                this.values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & this.mask;
+        }
+
+        this.keys[index] = key;
+        this.values[index] = value;
+        if (++this.size > this.threshold)
+            this.rehash(this.keys.length << 1);
+
+        return null;
+    }
+
+    /**
+     * Removes a key from the map.
+     *
+     * @param key Key to remove
+     * @return Value that was associated with key, or null if it didn't exist
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key)
+    {
+        if (key == EMPTY)
+        {
+            if (!this.hasEmptyKey) return null;
+            V previous = this.emptyKeyValue;
+            this.hasEmptyKey = false;
+            this.emptyKeyValue = null;
+            this.size--;
+            return previous;
+        }
+
+        int index = this.indexOf(key);
+        if (index == -1) return null;
+
+        V previous = (V) this.values[index];
+        this.size--;
+
+        // Shift back any entries in the probe chain so lookups
+        // don't stop early at the newly freed slot.
+        int free = index;
+        int next = (free + 1) & this.mask;
+        while (this.keys[next] != EMPTY)
+        {
+            int ideal = LongMap.hash(this.keys[next]) & this.mask;
+            if (((next - ideal) & this.mask) >= ((next - free) & this.mask))
+            {
+                this.keys[free] = this.keys[next];
+                this.values[free] = this.values[next];
+                free = next;
+            }
+            next = (next + 1) & this.mask;
+        }
+
+        this.keys[free] = EMPTY;
+        this.values[free] = null;
+
+        return previous;
+    }
+
+    private void rehash(int tableSize)
+    {
+        long[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+
+        this.allocate(tableSize);
+        for (int i = 0; i < oldKeys.length; ++i)
+        {
+            long key = oldKeys[i];
+            if (key == EMPTY) continue;
+            int index = LongMap.hash(key) & this.mask;
+            while (this.keys[index] != EMPTY)
+                index = (index + 1) & this.mask;
+            this.keys[index] = key;
+            this.values[index] = oldValues[i];
+        }
+    }
+
+    /**
+     * Removes all entries from the map.
+     */
+    public void clear()
+    {
+        Arrays.fill(this.keys, EMPTY);
+        Arrays.fill(this.values, null);
+        this.hasEmptyKey = false;
+        this.emptyKeyValue = null;
+        this.size = 0;
+    }
+
+    /**
+     * Gets the number of entries in the map.
+     *
+     * @return Number of entries
+     */
+    public int size()
+    {
+        return this.size;
+    }
+
+    public boolean isEmpty()
+    {
+        return this.size == 0;
+    }
+
+    /**
+     * Gets all keys currently in the map, in no particular order.
+     *
+     * @return Array of keys
+     */
+    public long[] keys()
+    {
+        long[] keys = new long[this.size];
+        int index = 0;
+        if (this.hasEmptyKey) keys[index++] = EMPTY;
+        for (long key : this.keys)
+            if (key != EMPTY)
+                keys[index++] = key;
+        return keys;
+    }
+
+    /**
+     * Iterates over all key/value pairs in the map, in no particular order.
+     *
+     * @param consumer Callback for each entry
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> consumer)
+    {
+        if (this.hasEmptyKey) consumer.accept(EMPTY, this.emptyKeyValue);
+        for (int i = 0; i < this.keys.length; ++i)
+            if (this.keys[i] != EMPTY)
+                consumer.accept(this.keys[i], (V) this.values[i]);
+    }
+
+    /**
+     * Iterates over all values in the map, in no particular order.
+     *
+     * @return Value iterator
+     */
+    @Override
+    public Iterator<V> iterator()
+    {
+        return new Iterator<>()
+        {
+            private int index = LongMap.this.hasEmptyKey ? -1 : this.advance(0);
+
+            private int advance(int from)
+            {
+                while (from < keys.length && keys[from] == EMPTY) from++;
+                return from;
+            }
+
+            @Override
+            public boolean hasNext()
+            {
+                return this.index < keys.length;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public V next()
+            {
+                if (!this.hasNext()) throw new NoSuchElementException();
+                V value = (this.index == -1) ? emptyKeyValue : (V) values[this.index];
+                this.index = this.advance(this.index + 1);
+                return value;
+            }
+        };
+    }
+}
@@ -26,6 +26,7 @@ public class Config
     public boolean displayWarningOnZeroEntry = true;
     public boolean addToArchiveOnCopy = true;
     public boolean enable3D = false;
+    public boolean useSnapshots = true;
 
     public static Profile newProfile()
     {
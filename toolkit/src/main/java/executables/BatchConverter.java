@@ -0,0 +1,244 @@
+package executables;
+
+import cwlib.types.archives.Fat;
+import cwlib.types.archives.FileArchive;
+import cwlib.types.data.SHA1;
+import cwlib.types.databases.FileDB;
+import cwlib.types.databases.FileDBRow;
+import cwlib.util.FileIO;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Shared batch mode for the resource conversion tools, runs a conversion over
+ * every resource in a directory, FARC, or FileDB and writes the results into a new FARC.
+ */
+public class BatchConverter
+{
+    /**
+     * Converts a single resource.
+     */
+    @FunctionalInterface
+    public interface Converter
+    {
+        /**
+         * Converts a resource.
+         *
+         * @param data Resource data
+         * @return Converted resource data, or null if the resource isn't handled by this converter
+         * @throws Exception If the resource couldn't be converted, the message is used as the
+         *                   failure reason
+         */
+        byte[] convert(byte[] data) throws Exception;
+    }
+
+    /**
+     * Flush the output archive after this many bytes have been queued.
+     */
+    private static final long CACHE_SIZE = 268_435_456L;
+
+    /**
+     * A resource to be converted, either from a file or an archive entry.
+     */
+    private static class Source
+    {
+        private final String name;
+        private final File file;
+        private final Fat fat;
+        private final FileDBRow row;
+
+        private Source(String name, File file, Fat fat, FileDBRow row)
+        {
+            this.name = name;
+            this.file = file;
+            this.fat = fat;
+            this.row = row;
+        }
+
+        private byte[] read()
+        {
+            if (this.fat != null) return this.fat.extract();
+            if (this.file == null || !this.file.exists()) return null;
+            return FileIO.read(this.file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Runs a batch conversion.
+     *
+     * @param input     Directory, FARC, or FileDB containing the resources to convert.
+     *                  Rows in a FileDB are read from the files they refer to, relative
+     *                  to either the folder of the FileDB or its parent.
+     * @param output    FARC to write converted resources to, a report is written next to it,
+     *                  and if the input is a FileDB, a copy of it updated with the new hashes
+     * @param converter Conversion to run on each resource
+     * @return Whether the batch could be run, individual failures don't affect this
+     */
+    public static boolean run(File input, File output, Converter converter)
+    {
+        if (!input.exists())
+        {
+            System.err.println("Input doesn't exist!");
+            return false;
+        }
+
+        FileDB database = null;
+        ArrayList<Source> sources = new ArrayList<>();
+        try
+        {
+            if (input.isDirectory())
+            {
+                Path root = input.toPath();
+                try (Stream<Path> paths = Files.walk(root))
+                {
+                    paths.filter(Files::isRegularFile).sorted().forEach(path ->
+                        sources.add(new Source(root.relativize(path).toString().replace('\\',
+                            '/'), path.toFile(), null, null)));
+                }
+            }
+            else if (input.getName().toLowerCase().endsWith(".farc"))
+            {
+                FileArchive archive = new FileArchive(input);
+                for (Fat fat : archive)
+                    sources.add(new Source(fat.getSHA1().toString(), null, fat, null));
+            }
+            else
+            {
+                database = new FileDB(input);
+                File folder = input.getAbsoluteFile().getParentFile();
+                for (FileDBRow row : database)
+                {
+                    File file = new File(folder, row.getPath());
+                    if (!file.exists() && folder.getParentFile() != null)
+                        file = new File(folder.getParentFile(), row.getPath());
+                    sources.add(new Source(row.getPath(), file, null, row));
+                }
+            }
+        }
+        catch (Exception ex)
+        {
+            System.err.println("Failed to read input: " + ex.getMessage());
+            return false;
+        }
+
+        // Start from an empty archive, same as a freshly created FARC.
+        if (!FileIO.write(new byte[] { 0, 0, 0, 0, 0x46, 0x41, 0x52, 0x43 },
+            output.getAbsolutePath()))
+        {
+            System.err.println("Failed to create output archive!");
+            return false;
+        }
+        FileArchive archive = new FileArchive(output);
+
+        String[] results = new String[sources.size()];
+        SHA1[] hashes = new SHA1[sources.size()];
+        long[] sizes = new long[sources.size()];
+        AtomicInteger converted = new AtomicInteger(), failed = new AtomicInteger(),
+            skipped = new AtomicInteger(), progress = new AtomicInteger();
+        boolean[] writeFailed = { false };
+
+        IntStream.range(0, sources.size()).parallel().forEach(i ->
+        {
+            Source source = sources.get(i);
+            try
+            {
+                byte[] data = source.read();
+                if (data == null)
+                    throw new IOException("Resource data could not be read");
+
+                byte[] result = converter.convert(data);
+                if (result == null)
+                {
+                    skipped.incrementAndGet();
+                    return;
+                }
+
+                SHA1 sha1 = SHA1.fromBuffer(result);
+                synchronized (archive)
+                {
+                    archive.add(sha1, result);
+                    if (archive.getQueueSize() >= CACHE_SIZE && !archive.save())
+                        writeFailed[0] = true;
+                }
+
+                hashes[i] = sha1;
+                sizes[i] = result.length;
+                results[i] = String.format("[OK] %s -> %s", source.name, sha1);
+                converted.incrementAndGet();
+            }
+            catch (Exception ex)
+            {
+                String reason = ex.getMessage();
+                if (reason == null) reason = ex.getClass().getSimpleName();
+                results[i] = String.format("[FAILED] %s: %s", source.name, reason);
+                failed.incrementAndGet();
+            }
+
+            int count = progress.incrementAndGet();
+            if (count % 1000 == 0)
+                System.out.printf("[BatchConverter] Processed %d/%d resources%n", count,
+                    sources.size());
+        });
+
+        if (writeFailed[0] || !archive.save())
+        {
+            System.err.println("An error occurred while writing the output archive!");
+            return false;
+        }
+
+        if (database != null)
+        {
+            for (int i = 0; i < sources.size(); ++i)
+            {
+                if (hashes[i] == null) continue;
+                FileDBRow row = sources.get(i).row;
+                row.setSHA1(hashes[i]);
+                row.setSize(sizes[i]);
+            }
+
+            File map = BatchConverter.getSibling(output, ".map");
+            if (!database.save(map))
+                System.err.println("An error occurred while writing the updated database!");
+        }
+
+        File report = BatchConverter.getSibling(output, ".txt");
+        try (PrintWriter writer = new PrintWriter(report, "UTF-8"))
+        {
+            writer.printf("Input: %s%n", input.getAbsolutePath());
+            writer.printf("Converted: %d, Failed: %d, Skipped: %d, Total: %d%n%n",
+                converted.get(), failed.get(), skipped.get(), sources.size());
+            for (String result : results)
+            {
+                if (result != null)
+                    writer.println(result);
+            }
+        }
+        catch (IOException ex)
+        {
+            System.err.println("An error occurred while writing the report!");
+        }
+
+        System.out.printf("[BatchConverter] Converted %d, failed %d, skipped %d of %d " +
+                          "resources%n", converted.get(), failed.get(), skipped.get(),
+            sources.size());
+        System.out.println("Wrote report to " + report.getAbsolutePath());
+
+        return true;
+    }
+
+    private static File getSibling(File file, String extension)
+    {
+        String name = file.getName();
+        int index = name.lastIndexOf('.');
+        if (index != -1) name = name.substring(0, index);
+        return new File(file.getAbsoluteFile().getParentFile(), name + extension);
+    }
+}
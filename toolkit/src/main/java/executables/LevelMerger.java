@@ -1,18 +1,44 @@
 package executables;
 
 import cwlib.enums.Part;
+import cwlib.ex.SerializationException;
 import cwlib.resources.RLevel;
 import cwlib.structs.things.Thing;
+import cwlib.structs.things.parts.PCreature;
 import cwlib.structs.things.parts.PWorld;
 import cwlib.types.SerializedResource;
 import cwlib.types.data.Revision;
 import cwlib.util.FileIO;
+import cwlib.util.LongMap;
 
 import java.io.File;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class LevelMerger
 {
+    /**
+     * A parsed input level, along with the revision it was serialized with.
+     */
+    private static class Input
+    {
+        private final RLevel level;
+        private final Revision revision;
+        private final byte compressionFlags;
+
+        private Input(RLevel level, Revision revision, byte compressionFlags)
+        {
+            this.level = level;
+            this.revision = revision;
+            this.compressionFlags = compressionFlags;
+        }
+    }
+
     public static void main(String[] args)
     {
         if (args.length < 4)
@@ -22,11 +48,7 @@ public class LevelMerger
         }
 
         File output = null;
-
-        Revision revision = null;
-        byte compressionFlags = (byte) 0;
-
-        ArrayList<RLevel> levels = new ArrayList<>();
+        ArrayList<File> files = new ArrayList<>();
         for (int i = 0; i < args.length; ++i)
         {
 
@@ -43,30 +65,10 @@ public class LevelMerger
                 return;
             }
 
-            RLevel level = null;
-            try
-            {
-                SerializedResource resource = new SerializedResource(args[i]);
-
-                if (revision == null)
-                {
-                    revision = resource.getRevision();
-                    compressionFlags = resource.getCompressionFlags();
-                }
-
-                level = new SerializedResource(args[i]).loadResource(RLevel.class);
-            }
-            catch (Exception ex)
-            {
-                System.err.println("There was an error processing this resource");
-                System.err.println(ex.getMessage());
-                return;
-            }
-
-            levels.add(level);
+            files.add(file);
         }
 
-        if (levels.size() == 0)
+        if (files.size() == 0)
         {
             System.err.println("Requires at least two input files!");
             return;
@@ -78,28 +80,90 @@ public class LevelMerger
             return;
         }
 
-        RLevel level = levels.get(0);
+        // Levels are parsed concurrently, but only a bounded window of them is held
+        // at once, each source level is dropped as soon as its Things are merged.
+        int threads = Math.max(1, Math.min(files.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ArrayDeque<Future<Input>> window = new ArrayDeque<>();
+        int next = 0;
 
-        ArrayList<Thing> things = ((PWorld) level.worldThing.getPart(Part.WORLD)).things;
-        int uid = ((PWorld) level.worldThing.getPart(Part.WORLD)).thingUIDCounter;
+        RLevel level = null;
+        Revision revision = null;
+        byte compressionFlags = (byte) 0;
+        PWorld target = null;
+        int uid = 0;
+        LongMap<Integer> uids = new LongMap<>();
 
-        for (int i = 1; i < levels.size(); ++i)
+        try
         {
-            PWorld world = levels.get(i).worldThing.getPart(Part.WORLD);
-            for (Thing thing : world.things)
+            for (; next < threads; ++next)
+                window.add(pool.submit(LevelMerger.load(files.get(next))));
+
+            while (!window.isEmpty())
             {
-                if (thing == null) continue;
+                Input input;
+                try { input = window.poll().get(); }
+                catch (ExecutionException ex)
+                {
+                    System.err.println("There was an error processing this resource");
+                    System.err.println(ex.getCause().getMessage());
+                    return;
+                }
 
-                if (thing.hasPart(Part.WORLD) || thing.hasPart(Part.LEVEL_SETTINGS))
+                if (next < files.size())
+                    window.add(pool.submit(LevelMerger.load(files.get(next++))));
+
+                if (level == null)
+                {
+                    level = input.level;
+                    revision = input.revision;
+                    compressionFlags = input.compressionFlags;
+                    target = level.worldThing.getPart(Part.WORLD);
+                    uid = target.thingUIDCounter;
                     continue;
+                }
+
+                PWorld world = input.level.worldThing.getPart(Part.WORLD);
+                int start = target.things.size();
+                uids.clear();
+                for (Thing thing : world.things)
+                {
+                    if (thing == null) continue;
+
+                    if (thing.hasPart(Part.WORLD) || thing.hasPart(Part.LEVEL_SETTINGS))
+                        continue;
+
+                    if (thing == world.backdrop) continue;
+                    if (thing.parent != null && thing.parent == world.backdrop) continue;
+
+                    // Don't keep the source world alive through the merged Things.
+                    if (thing.world == input.level.worldThing)
+                        thing.world = level.worldThing;
 
-                if (thing == world.backdrop) continue;
-                if (thing.parent != null && thing.parent == world.backdrop) continue;
+                    uids.put(thing.UID, ++uid);
+                    thing.UID = uid;
+                    target.things.add(thing);
+                }
 
-                thing.UID = ++uid;
-                things.add(thing);
+                // Most references between Things are serialized as object references,
+                // only the few stored as raw UIDs need to be remapped.
+                for (int i = start; i < target.things.size(); ++i)
+                {
+                    PCreature creature = target.things.get(i).getPart(Part.CREATURE);
+                    if (creature == null || creature.lastGunTriggerUID == 0) continue;
+                    Integer remapped = uids.get(creature.lastGunTriggerUID);
+                    creature.lastGunTriggerUID = (remapped != null) ? remapped : 0;
+                }
             }
         }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        finally { pool.shutdownNow(); }
+
+        target.thingUIDCounter = uid;
 
         byte[] data = null;
         try { data = SerializedResource.compress(level, revision, compressionFlags); }
@@ -116,4 +180,22 @@ public class LevelMerger
         else System.err.println("An error occurred while writing file!");
 
     }
+
+    /**
+     * Creates a task that parses a level.
+     *
+     * @param file Level file
+     * @return Task returning the parsed level
+     */
+    private static Callable<Input> load(File file)
+    {
+        return () ->
+        {
+            SerializedResource resource = new SerializedResource(file.getAbsolutePath());
+            RLevel level = resource.loadResource(RLevel.class);
+            if (level == null || level.worldThing == null || !level.worldThing.hasPart(Part.WORLD))
+                throw new SerializationException(file.getName() + " doesn't contain a world!");
+            return new Input(level, resource.getRevision(), resource.getCompressionFlags());
+        };
+    }
 }
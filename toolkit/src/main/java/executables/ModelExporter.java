@@ -0,0 +1,261 @@
+package executables;
+
+import cwlib.io.exports.MeshExporter;
+import cwlib.resources.RMesh;
+import cwlib.singleton.ResourceSystem;
+import cwlib.types.SerializedResource;
+import cwlib.types.archives.FileArchive;
+import cwlib.types.data.SHA1;
+import cwlib.types.databases.FileDB;
+import cwlib.types.databases.FileDBRow;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exports every model in a FileDB to GLB or OBJ.
+ * <p>
+ * Rows that share the same hash are only exported once, and the results are
+ * recorded in a manifest in the output folder, so an interrupted export
+ * can be resumed by running it again.
+ */
+public class ModelExporter
+{
+    private static final String MANIFEST = "manifest.txt";
+
+    public static void main(String[] args)
+    {
+        if (args.length < 2)
+        {
+            System.out.println("java -jar modelexporter.jar <database.map> <output> [--obj] " +
+                               "[--threads <count>] [...archives.farc]");
+            return;
+        }
+
+        File input = new File(args[0]);
+        File output = new File(args[1]);
+        boolean obj = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 2; i < args.length; ++i)
+        {
+            if (args[i].equals("--obj"))
+            {
+                obj = true;
+                continue;
+            }
+
+            if (args[i].equals("--threads") && i + 1 < args.length)
+            {
+                try { threads = Math.max(1, Integer.parseInt(args[++i])); }
+                catch (NumberFormatException ex)
+                {
+                    System.err.println("Thread count must be a number!");
+                    return;
+                }
+                continue;
+            }
+
+            File file = new File(args[i]);
+            if (!file.exists())
+            {
+                System.err.printf("%s does not exist!%n", file.getAbsolutePath());
+                return;
+            }
+            ResourceSystem.getArchives().add(new FileArchive(file));
+        }
+
+        if (!input.exists())
+        {
+            System.err.printf("%s does not exist!%n", input.getAbsolutePath());
+            return;
+        }
+
+        if (!ModelExporter.run(input, output, obj, threads))
+            System.exit(1);
+    }
+
+    /**
+     * Exports every model in a database.
+     *
+     * @param input   FileDB containing the models, their data is read from the loaded archives,
+     *                or the files they refer to on disk
+     * @param output  Folder to export the models to
+     * @param obj     Whether to export OBJ instead of GLB
+     * @param threads Number of models to export at once
+     * @return Whether the export could be run, individual failures don't affect this
+     */
+    public static boolean run(File input, File output, boolean obj, int threads)
+    {
+        FileDB database;
+        try { database = new FileDB(input); }
+        catch (Exception ex)
+        {
+            System.err.println("Failed to read database: " + ex.getMessage());
+            return false;
+        }
+        ResourceSystem.getDatabases().add(database);
+
+        // Identical models are only exported once, under the path of the first row.
+        LinkedHashMap<SHA1, ArrayList<FileDBRow>> models = new LinkedHashMap<>();
+        for (FileDBRow row : database)
+        {
+            if (!row.getPath().toLowerCase().endsWith(".mol")) continue;
+            models.computeIfAbsent(row.getSHA1(), k -> new ArrayList<>()).add(row);
+        }
+
+        if (!output.exists() && !output.mkdirs())
+        {
+            System.err.println("Failed to create output folder!");
+            return false;
+        }
+
+        String extension = obj ? ".obj" : ".glb";
+        File manifest = new File(output, MANIFEST);
+        HashSet<SHA1> completed = ModelExporter.getCompleted(manifest, output);
+        completed.retainAll(models.keySet());
+
+        PrintWriter writer;
+        try
+        {
+            writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(manifest, true),
+                StandardCharsets.UTF_8));
+        }
+        catch (IOException ex)
+        {
+            System.err.println("Failed to open manifest: " + ex.getMessage());
+            return false;
+        }
+
+        int total = models.size();
+        AtomicInteger exported = new AtomicInteger(), failed = new AtomicInteger(),
+            progress = new AtomicInteger(completed.size());
+        MeshExporter.ResourceCache cache = new MeshExporter.ResourceCache();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (SHA1 sha1 : models.keySet())
+        {
+            if (completed.contains(sha1)) continue;
+            ArrayList<FileDBRow> rows = models.get(sha1);
+            String path = rows.get(0).getPath().replaceFirst("[.][^./]+$", "") + extension;
+            executor.submit(() ->
+            {
+                String result = "OK";
+                try
+                {
+                    byte[] data = ResourceSystem.extract(rows.get(0));
+                    if (data == null)
+                        throw new IOException("Resource data could not be read");
+                    RMesh mesh = new SerializedResource(data).loadResource(RMesh.class);
+
+                    File file = new File(output, path);
+                    File parent = file.getParentFile();
+                    if (!parent.exists() && !parent.mkdirs())
+                        throw new IOException("Failed to create " + parent.getPath());
+
+                    if (obj)
+                    {
+                        MeshExporter.OBJ.export(file.getAbsolutePath(), mesh);
+                        if (!file.exists())
+                            throw new IOException("Failed to write " + file.getPath());
+                    }
+                    else
+                    {
+                        MeshExporter.GLB glb = MeshExporter.GLB.FromMesh(mesh, cache);
+                        try (FileChannel channel = FileChannel.open(file.toPath(),
+                            StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                            StandardOpenOption.TRUNCATE_EXISTING))
+                        {
+                            glb.write(channel);
+                        }
+                    }
+                    exported.incrementAndGet();
+                }
+                catch (Exception ex)
+                {
+                    String reason = ex.getMessage();
+                    if (reason == null) reason = ex.getClass().getSimpleName();
+                    result = "FAILED " + reason.replaceAll("\\s+", " ");
+                    failed.incrementAndGet();
+                }
+
+                StringBuilder line = new StringBuilder();
+                line.append(sha1).append('\t').append(path).append('\t').append(result);
+                for (FileDBRow row : rows)
+                    line.append('\t').append(row.getPath());
+                synchronized (writer)
+                {
+                    writer.println(line);
+                    writer.flush();
+                }
+
+                int count = progress.incrementAndGet();
+                if (count % 100 == 0 || count == total)
+                    System.out.printf("[ModelExporter] Processed %d/%d models%n", count, total);
+            });
+        }
+
+        executor.shutdown();
+        try
+        {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) ;
+        }
+        catch (InterruptedException ex)
+        {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        writer.close();
+
+        System.out.printf("[ModelExporter] Exported %d, failed %d, skipped %d of %d models%n",
+            exported.get(), failed.get(), completed.size(), total);
+        System.out.println("Wrote manifest to " + manifest.getAbsolutePath());
+
+        return true;
+    }
+
+    /**
+     * Gets the models that were already exported by a previous run.
+     *
+     * @param manifest Manifest of the previous run
+     * @param output   Folder the models were exported to
+     * @return Hashes of the models that don't need to be exported again
+     */
+    private static HashSet<SHA1> getCompleted(File manifest, File output)
+    {
+        HashSet<SHA1> completed = new HashSet<>();
+        if (!manifest.exists()) return completed;
+        try (BufferedReader reader = Files.newBufferedReader(manifest.toPath(),
+            StandardCharsets.UTF_8))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                String[] columns = line.split("\t");
+                if (columns.length < 3 || !columns[2].equals("OK")) continue;
+                if (!new File(output, columns[1]).exists()) continue;
+                try { completed.add(new SHA1(columns[0])); }
+                catch (IllegalArgumentException ex) { continue; }
+            }
+        }
+        catch (IOException ex)
+        {
+            System.err.println("Failed to read previous manifest, exporting everything!");
+            completed.clear();
+        }
+        return completed;
+    }
+}
@@ -1,23 +1,32 @@
 package executables;
 
 import cwlib.enums.CompressionFlags;
+import cwlib.enums.ResourceType;
+import cwlib.ex.SerializationException;
 import cwlib.resources.RPlan;
 import cwlib.structs.things.Thing;
 import cwlib.types.SerializedResource;
 import cwlib.types.data.Revision;
 import cwlib.util.FileIO;
+import cwlib.util.Resources;
 import cwlib.util.Strings;
 
 import java.io.File;
+import java.util.Arrays;
 
 public class PlanBackporter
 {
     public static void main(String[] args)
     {
+        boolean batch = args.length != 0 && args[0].equals("--batch");
+        if (batch) args = Arrays.copyOfRange(args, 1, args.length);
+
         if (args.length < 3 || args.length > 4)
         {
             System.out.println("java -jar planbackporter.java <plan> <output> <revision> " +
                                "<descriptor?>");
+            System.out.println("java -jar planbackporter.java --batch <folder|*.farc|*.map> " +
+                               "<output.farc> <revision> <descriptor?>");
             return;
         }
 
@@ -31,39 +40,63 @@ public class PlanBackporter
             compressionFlags = CompressionFlags.USE_ALL_COMPRESSION;
 
         Revision revision = new Revision(head, branchDescriptor);
+        final byte flags = compressionFlags;
 
-        if (!new File(args[0]).exists())
+        if (batch)
         {
-            System.err.println("File doesn't exist!");
+            BatchConverter.run(new File(args[0]), new File(args[1]), data ->
+            {
+                // Skip everything that isn't a plan without parsing it.
+                if (data.length < 0xB || Resources.getResourceType(data) != ResourceType.PLAN)
+                    return null;
+                return PlanBackporter.convert(new SerializedResource(data), revision, flags);
+            });
             return;
         }
 
-
-        SerializedResource resource = null;
-        RPlan plan = null;
-        try
+        if (!new File(args[0]).exists())
         {
-            resource = new SerializedResource(args[0]);
-            plan = resource.loadResource(RPlan.class);
+            System.err.println("File doesn't exist!");
+            return;
         }
+
+        byte[] data = null;
+        try { data = PlanBackporter.convert(new SerializedResource(args[0]), revision, flags); }
         catch (Exception ex)
         {
             System.out.println("There was an error processing this resource!");
             System.out.println(ex.getMessage());
+            return;
         }
 
+        FileIO.write(data, args[1]);
+    }
+
+    /**
+     * Re-serializes a plan and its thing data at another revision.
+     *
+     * @param resource         Plan resource to convert
+     * @param revision         Revision to convert to
+     * @param compressionFlags Compression flags to use for the new revision
+     * @return Converted plan data
+     */
+    public static byte[] convert(SerializedResource resource, Revision revision,
+                                 byte compressionFlags)
+    {
+        RPlan plan = resource.loadResource(RPlan.class);
+
         Thing[] things = null;
         try { things = plan.getThings(); }
         catch (Exception ex)
         {
-            System.out.println("There was an error processing the thing data of this RPlan!");
-            System.out.println(ex.getMessage());
+            throw new SerializationException("There was an error processing the thing data " +
+                                             "of this RPlan! " + ex.getMessage());
         }
 
         plan.revision = revision;
         plan.compressionFlags = compressionFlags;
         plan.setThings(things);
 
-        FileIO.write(SerializedResource.compress(plan.build()), args[1]);
+        return SerializedResource.compress(plan.build());
     }
 }
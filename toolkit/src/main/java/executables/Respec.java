@@ -1,6 +1,8 @@
 package executables;
 
 import cwlib.enums.CompressionFlags;
+import cwlib.enums.SerializationType;
+import cwlib.ex.SerializationException;
 import cwlib.io.Resource;
 import cwlib.io.serializer.Serializer;
 import cwlib.resources.RPlan;
@@ -8,18 +10,26 @@ import cwlib.structs.things.Thing;
 import cwlib.types.SerializedResource;
 import cwlib.types.data.Revision;
 import cwlib.util.FileIO;
+import cwlib.util.Resources;
 import cwlib.util.Strings;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 public class Respec
 {
     public static void main(String[] args)
     {
+        boolean batch = args.length != 0 && args[0].equals("--batch");
+        if (batch) args = Arrays.copyOfRange(args, 1, args.length);
+
         if (args.length < 3 || args.length > 4)
         {
             System.out.println("java -jar reroller.java <resource> <output> <revision> " +
                                "<descriptor?>");
+            System.out.println("java -jar reroller.java --batch <folder|*.farc|*.map> " +
+                               "<output.farc> <revision> <descriptor?>");
             return;
         }
 
@@ -33,45 +43,72 @@ public class Respec
             compressionFlags = CompressionFlags.USE_ALL_COMPRESSION;
 
         Revision revision = new Revision(head, branchDescriptor);
+        final byte flags = compressionFlags;
 
-        if (!new File(args[0]).exists())
+        if (batch)
         {
-            System.err.println("File doesn't exist!");
+            BatchConverter.run(new File(args[0]), new File(args[1]), data ->
+            {
+                // Files that aren't binary resources are skipped rather than
+                // reported as failures, they'd only fail to parse.
+                if (data.length < 0xB) return null;
+                if (Resources.getResourceType(data).getCompressable() == null) return null;
+                SerializationType method =
+                    SerializationType.fromValue(new String(data, 3, 1, StandardCharsets.US_ASCII));
+                if (method != SerializationType.BINARY &&
+                    method != SerializationType.ENCRYPTED_BINARY) return null;
+                return Respec.convert(new SerializedResource(data), revision, flags);
+            });
             return;
         }
 
-        Resource compressable = null;
-        try
+        if (!new File(args[0]).exists())
         {
-            SerializedResource resource = new SerializedResource(args[0]);
-            Serializer serializer = resource.getSerializer();
-            Object struct = serializer.struct(null,
-                resource.getResourceType().getCompressable());
-            if (struct instanceof RPlan plan)
-            {
-                Thing[] things = null;
-                try { things = plan.getThings(); }
-                catch (Exception ex)
-                {
-                    System.out.println("There was an error processing the thing data of" +
-                                       " this " +
-                                       "RPlan!");
-                    System.out.println(ex.getMessage());
-                    return;
-                }
-                plan.revision = revision;
-                plan.compressionFlags = compressionFlags;
-                plan.setThings(things);
-            }
-            compressable = (Resource) struct;
+            System.err.println("File doesn't exist!");
+            return;
         }
+
+        byte[] data = null;
+        try { data = Respec.convert(new SerializedResource(args[0]), revision, flags); }
         catch (Exception ex)
         {
             System.out.println("There was an error processing this resource!");
             System.out.println(ex.getMessage());
+            return;
+        }
+
+        FileIO.write(data, args[1]);
+    }
+
+    /**
+     * Re-serializes a resource at another revision.
+     *
+     * @param resource         Resource to convert
+     * @param revision         Revision to convert to
+     * @param compressionFlags Compression flags to use for the new revision
+     * @return Converted resource data
+     */
+    public static byte[] convert(SerializedResource resource, Revision revision,
+                                 byte compressionFlags)
+    {
+        Serializer serializer = resource.getSerializer();
+        Object struct = serializer.struct(null,
+            resource.getResourceType().getCompressable());
+        if (struct instanceof RPlan plan)
+        {
+            Thing[] things = null;
+            try { things = plan.getThings(); }
+            catch (Exception ex)
+            {
+                throw new SerializationException("There was an error processing the thing " +
+                                                 "data of this RPlan! " + ex.getMessage());
+            }
+            plan.revision = revision;
+            plan.compressionFlags = compressionFlags;
+            plan.setThings(things);
         }
 
-        FileIO.write(SerializedResource.compress(compressable.build(revision,
-            compressionFlags)), args[1]);
+        return SerializedResource.compress(((Resource) struct).build(revision,
+            compressionFlags));
     }
 }
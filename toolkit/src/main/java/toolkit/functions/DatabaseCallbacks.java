@@ -8,6 +8,7 @@ import cwlib.types.data.GUID;
 import cwlib.types.data.SHA1;
 import cwlib.types.databases.FileDB;
 import cwlib.types.databases.FileDBRow;
+import cwlib.types.databases.FileDBSnapshot;
 import cwlib.types.databases.FileEntry;
 import cwlib.types.mods.Mod;
 import cwlib.types.swing.FileData;
@@ -37,7 +38,13 @@ public class DatabaseCallbacks
             bar.setIndeterminate(true);
 
             FileDB database = null;
-            try { database = new FileDB(file); }
+            try
+            {
+                if (Config.instance.useSnapshots)
+                    database = new FileDB(file, FileDBSnapshot.open(file));
+                else
+                    database = new FileDB(file);
+            }
             catch (Exception ex)
             {
                 bar.setVisible(false);
@@ -80,7 +80,7 @@ public class ExportCallbacks
 
                     try
                     {
-                        Thing[] things = plan.getThings();
+                        Thing[] things = plan.getSharedThings();
                         for (Thing thing : things)
                         {
                             if (thing == null || !thing.hasPart(Part.STICKERS))
@@ -2,6 +2,7 @@ package toolkit.functions;
 
 import cwlib.singleton.ResourceSystem;
 import cwlib.types.archives.Fart;
+import cwlib.types.databases.FileDB;
 import cwlib.types.swing.FileData;
 import toolkit.utilities.FileChooser;
 import toolkit.windows.Toolkit;
@@ -69,6 +70,10 @@ public class FileCallbacks
             if (result == JOptionPane.YES_OPTION) database.save(database.getFile());
         }
 
+        // Saves over the database only go to its change journal, which the game doesn't read.
+        if (database instanceof FileDB fileDB)
+            fileDB.compactJournal();
+
         ResourceSystem.getDatabases().remove(index);
         Toolkit.INSTANCE.fileDataTabs.removeTabAt(index);
     }
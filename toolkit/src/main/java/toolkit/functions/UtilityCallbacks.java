@@ -8,7 +8,9 @@ import cwlib.types.archives.Fat;
 import cwlib.types.archives.FileArchive;
 import cwlib.types.data.SHA1;
 import cwlib.types.databases.FileDB;
+import cwlib.types.databases.FileDBDiff;
 import cwlib.types.databases.FileDBRow;
+import cwlib.types.databases.FileDBTable;
 import cwlib.types.mods.Mod;
 import cwlib.types.swing.FileData;
 import cwlib.util.FileIO;
@@ -20,6 +22,11 @@ import toolkit.windows.utilities.SlowOpGUI;
 
 import javax.swing.*;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 public class UtilityCallbacks
 {
@@ -122,8 +129,8 @@ public class UtilityCallbacks
         File baseFile = FileChooser.openFile("blurayguids.map", "map", false);
         if (baseFile == null) return;
 
-        FileDB base = null;
-        try { base = new FileDB(baseFile); }
+        FileDBTable base = null;
+        try { base = new FileDBTable(baseFile); }
         catch (Exception ex)
         {
             JOptionPane.showMessageDialog(
@@ -140,8 +147,8 @@ public class UtilityCallbacks
         File updateFile = FileChooser.openFile("blurayguids.map", "map", false);
         if (updateFile == null) return;
 
-        FileDB update = null;
-        try { update = new FileDB(updateFile); }
+        FileDBTable update = null;
+        try { update = new FileDBTable(updateFile); }
         catch (Exception ex)
         {
             JOptionPane.showMessageDialog(
@@ -155,37 +162,15 @@ public class UtilityCallbacks
             return;
         }
 
-        StringBuilder builder = new StringBuilder(update.getEntryCount() * 255);
-        for (FileDBRow row : update)
-        {
-            FileDBRow existing = base.get(row.getGUID());
-            if (existing == null)
-                builder.append(String.format("[+] path=%s size=%s sha1=%s guid=%s\n",
-                    row.getPath(), row.getSize(), row.getSHA1(), row.getGUID()));
-            else
-            {
-
-                if (row.getPath().equals(existing.getPath()))
-                {
-                    if (row.getSHA1().equals(existing.getSHA1())) continue;
-                }
-
-
-                builder.append(String.format(
-                    "[~] path=%s->%s size=%s->%s sha1=%s->%s guid=%s->%s\n",
-                    existing.getPath(), row.getPath(),
-                    existing.getSize(), row.getSize(),
-                    existing.getSHA1(), row.getSHA1(),
-                    existing.getGUID(), row.getGUID()
-                ));
-            }
-        }
-
+        // Both indexes are already sorted by GUID, so the diff is a single
+        // merge pass instead of a lookup per row.
+        FileDBDiff diff = FileDBDiff.compute(base, update);
+        String listing = diff.toString(base);
 
         File destination = FileChooser.openFile("diff.txt", "txt", true);
         if (destination == null) return;
 
-        FileIO.write(builder.toString().getBytes(), destination.getAbsolutePath());
+        FileIO.write(listing.getBytes(), destination.getAbsolutePath());
     }
 
     public static void installMod()
@@ -201,35 +186,137 @@ public class UtilityCallbacks
             if (archives == null) return;
         }
 
-        for (int i = 0; i < files.length; ++i)
-        {
-            Mod mod = ModCallbacks.loadMod(files[i]);
-            if (mod == null) continue;
+        final Fart[] targets = archives;
+        final boolean containsData = database.getType().containsData();
+        final FileDB rows = containsData ? null : new FileDB(((FileDB) database).getRevision());
+        final ArrayList<byte[]> resources = new ArrayList<>();
+        final ArrayList<String> failures = new ArrayList<>();
+        final boolean[] completed = { false };
 
-            if (database.getType().containsData())
+        SlowOpGUI.performSlowOperation(Toolkit.INSTANCE, "Mod Installer", "Installing Mods",
+            -1, new SlowOp()
             {
-                for (FileDBRow row : mod)
+                @Override
+                public int run(SlowOpGUI state)
                 {
-                    byte[] data = mod.extract(row.getSHA1());
-                    if (data != null) database.add(data);
+                    // A mod that fails to load is reported afterwards,
+                    // rather than stopping the others from being installed.
+                    Mod[] loaded = new Mod[files.length];
+                    String[] errors = new String[files.length];
+                    IntStream.range(0, files.length).parallel().forEach(i ->
+                    {
+                        try
+                        {
+                            loaded[i] = ModCallbacks.loadMod(files[i]);
+                            if (loaded[i] == null) errors[i] = "Not a valid mod!";
+                        }
+                        catch (Exception ex)
+                        {
+                            errors[i] = ex.getMessage() != null ? ex.getMessage() :
+                                ex.getClass().getSimpleName();
+                        }
+                    });
+
+                    ArrayList<Mod> mods = new ArrayList<>(files.length);
+                    for (int i = 0; i < files.length; ++i)
+                    {
+                        if (errors[i] == null) mods.add(loaded[i]);
+                        else failures.add(files[i].getName() + ": " + errors[i]);
+                    }
+
+                    if (mods.isEmpty())
+                    {
+                        state.setErrorMessage("Failed to load mods!\n" +
+                                              String.join("\n", failures));
+                        return -1;
+                    }
+
+                    // Merge every mod into a single set of rows and resources first,
+                    // later mods take priority, same as installing them one by one.
+                    HashMap<SHA1, Mod> sources = new HashMap<>();
+                    for (Mod mod : mods)
+                    {
+                        for (FileDBRow row : mod)
+                        {
+                            if (rows != null)
+                            {
+                                if (rows.exists(row.getGUID()))
+                                    rows.get(row.getGUID()).setDetails(row);
+                                else
+                                    rows.newFileDBRow(row);
+                            }
+                            sources.put(row.getSHA1(), mod);
+                        }
+                    }
+
+                    // Anything every target cache already has doesn't need to be extracted.
+                    if (targets != null)
+                    {
+                        sources.keySet().removeIf(sha1 ->
+                            Arrays.stream(targets).allMatch(archive -> archive.exists(sha1)));
+                    }
+
+                    SHA1[] hashes = sources.keySet().toArray(SHA1[]::new);
+                    byte[][] buffers = new byte[hashes.length][];
+                    SHA1[] actual = new SHA1[hashes.length];
+                    state.setMaxProgress(hashes.length);
+
+                    AtomicInteger progress = new AtomicInteger();
+                    IntStream.range(0, hashes.length).parallel().forEach(i ->
+                    {
+                        byte[] data = sources.get(hashes[i]).extract(hashes[i]);
+                        if (data != null)
+                        {
+                            buffers[i] = data;
+                            actual[i] = SHA1.fromBuffer(data);
+                        }
+                        state.setProgress(progress.incrementAndGet());
+                    });
+
+                    for (int i = 0; i < hashes.length; ++i)
+                    {
+                        if (buffers[i] == null) continue;
+                        if (targets == null)
+                        {
+                            resources.add(buffers[i]);
+                            continue;
+                        }
+
+                        // Everything gets queued, so it's appended to
+                        // each cache in a single batch when it's saved.
+                        for (Fart archive : targets)
+                        {
+                            if (!archive.exists(actual[i]))
+                                archive.add(actual[i], buffers[i]);
+                        }
+                    }
+
+                    completed[0] = true;
+                    return 0;
                 }
-                continue;
-            }
+            });
 
-            FileDB gameDB = (FileDB) database;
-            for (FileDBRow row : mod)
-            {
-                if (gameDB.exists(row.getGUID()))
-                    gameDB.get(row.getGUID()).setDetails(row);
-                else
-                    gameDB.newFileDBRow(row);
+        if (!completed[0]) return;
 
-                byte[] data = mod.extract(row.getSHA1());
-                if (data == null) continue;
+        if (!failures.isEmpty())
+        {
+            JOptionPane.showMessageDialog(
+                Toolkit.INSTANCE,
+                String.format("%d of %d mods failed to load and weren't installed:\n%s",
+                    failures.size(), files.length, String.join("\n", failures)),
+                "Mod Installer",
+                JOptionPane.WARNING_MESSAGE
+            );
+        }
 
-                ResourceSystem.add(data, archives);
-            }
+        // Databases are updated on the UI thread, since they
+        // own tree nodes and may prompt while adding data.
+        if (containsData)
+        {
+            for (byte[] data : resources)
+                database.add(data);
         }
+        else ((FileDB) database).patch(rows);
 
         database.setHasChanges();
         ResourceSystem.reloadModel(database);
@@ -65,7 +65,6 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.regex.Pattern;
 
 public class Toolkit extends javax.swing.JFrame
@@ -278,6 +277,10 @@ public class Toolkit extends javax.swing.JFrame
                 if (result == JOptionPane.YES_OPTION)
                     data.save();
             }
+
+            // The game doesn't read change journals.
+            if (data instanceof FileDB database)
+                database.compactJournal();
         }
 
         for (Fart archive : ResourceSystem.getArchives())
@@ -446,7 +449,7 @@ public class Toolkit extends javax.swing.JFrame
                             RPlan plan = info.getResource();
                             if (plan != null)
                             {
-                                Thing[] things = plan.getThings();
+                                Thing[] things = plan.getSharedThings();
                                 for (Thing thing : things)
                                 {
                                     if (thing == null)
@@ -3058,52 +3061,24 @@ public class Toolkit extends javax.swing.JFrame
         }
 
 
-        SaveArchive[] archives = new SaveArchive[fragments.length];
-        HashMap<Integer, SaveArchive> archiveIDs = new HashMap<>(fragments.length);
+        // Fragments are read concurrently, and their entries are linked
+        // to the master archive rather than copied into it.
         SaveArchive master = null;
-
-        for (int i = 0; i < fragments.length; ++i)
+        try
         {
-            File fragment = fragments[i];
-            SaveArchive archive = null;
-            try
-            {
-                archive = new SaveArchive(fragment);
-
-                // Not entirely sure how Vita decides which profile gets the root resource,
-                // so we'll just go based on biggest ID that actually has a root resource.
-                if (archive.getKey().getRootType() == ResourceType.BIG_PROFILE)
-                {
-                    if (master != null)
-                    {
-                        if (archive.getID() > master.getID())
-                            master = archive;
-                    }
-                    else master = archive;
-                }
-
-            }
-            catch (Exception ex)
-            {
-                JOptionPane.showMessageDialog(this, ex.getMessage(), fragment.getName(),
-                    JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-
-            archives[i] = archive;
-            archiveIDs.put(archive.getID(), archive);
+            master = SaveArchive.loadFragments(fragments, ResourceType.BIG_PROFILE);
         }
-
-        if (master == null)
+        catch (Exception ex)
         {
-            JOptionPane.showMessageDialog(this, "No valid RBigProfile found in any archive!", "An error occurred", JOptionPane.ERROR_MESSAGE);
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "An error occurred",
+                JOptionPane.ERROR_MESSAGE);
             return;
         }
 
-        for (SaveArchive archive : archives)
+        if (master == null)
         {
-            if (archive == master) continue;
-            master.add(archive);
+            JOptionPane.showMessageDialog(this, "No valid RBigProfile found in any archive!", "An error occurred", JOptionPane.ERROR_MESSAGE);
+            return;
         }
 
         // Patch all moon level data into master archive
@@ -3135,7 +3110,7 @@ public class Toolkit extends javax.swing.JFrame
                     SaveArchive archive = null;
                     try
                     {
-                        archive = new SaveArchive(file);
+                        archive = new SaveArchive(file, true);
                     }
                     catch (Exception ex)
                     {
@@ -3154,7 +3129,7 @@ public class Toolkit extends javax.swing.JFrame
             SaveArchive archive = null;
             try
             {
-                archive = new SaveArchive(file);
+                archive = new SaveArchive(file, true);
             }
             catch (Exception ex)
             {
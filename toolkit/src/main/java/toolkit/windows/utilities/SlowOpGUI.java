@@ -95,7 +95,8 @@ public class SlowOpGUI extends javax.swing.JDialog
 
     public void setProgress(int progress)
     {
-        this.progressBar.setValue(progress);
+        // Operations may report progress from worker threads.
+        EventQueue.invokeLater(() -> progressBar.setValue(progress));
     }
 
     public boolean wantQuit()
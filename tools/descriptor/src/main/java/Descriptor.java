@@ -9,16 +9,16 @@ import cwlib.singleton.ResourceSystem;
 import cwlib.types.data.GUID;
 import cwlib.types.databases.FileDB;
 import cwlib.types.databases.FileDBRow;
+import cwlib.util.LongMap;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.zip.CRC32;
 
 public class Descriptor
 {
-    private static final HashMap<Long, GUID> CRC_LOOKUP = new HashMap<>();
+    private static final LongMap<GUID> CRC_LOOKUP = new LongMap<>();
 
     public static void main(String[] args)
     {